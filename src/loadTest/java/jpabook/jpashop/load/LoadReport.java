@@ -0,0 +1,133 @@
+package jpabook.jpashop.load;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 작업별 지연 시간 분포를 합쳐서 JSON 리포트로 남긴다.
+ * 지연 시간 단위는 ms, 리포트끼리 비교할 수 있도록 키 이름과 구조를 고정한다.
+ *
+ * {
+ *   "startedAt": ..., "users": 32, "durationSeconds": 30,
+ *   "operations": { "PLACE_ORDER": { "count", "errors", "throughput", "mean", "p50", "p90", "p99", "p999", "max" }, ... },
+ *   "comparison": { "PLACE_ORDER": { "baselineP99", "p99", "p99ChangePercent" }, ... }   // baseline 이 있을 때
+ * }
+ */
+public class LoadReport {
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<Map<String, Object>>() {};
+
+    private final LoadTestConfig config;
+    private final LocalDateTime startedAt;
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+    public LoadReport(LoadTestConfig config, LocalDateTime startedAt) {
+        this.config = config;
+        this.startedAt = startedAt;
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new Histogram(3));
+            errors.put(operation, 0L);
+        }
+    }
+
+    public void add(VirtualUser user) {
+        user.getHistograms().forEach((operation, histogram) -> histograms.get(operation).add(histogram));
+        user.getErrors().forEach((operation, count) -> errors.merge(operation, count, Long::sum));
+    }
+
+    public long totalCount() {
+        return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    public long totalErrors() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Histogram h = histograms.get(operation);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("count", h.getTotalCount());
+            row.put("errors", errors.get(operation));
+            row.put("throughput", (double) h.getTotalCount() / config.getDurationSeconds());
+            row.put("mean", h.getMean() / 1000.0);
+            row.put("p50", millis(h, 50));
+            row.put("p90", millis(h, 90));
+            row.put("p99", millis(h, 99));
+            row.put("p999", millis(h, 99.9));
+            row.put("max", h.getMaxValue() / 1000.0);
+            operations.put(operation.name(), row);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("users", config.getUsers());
+        report.put("warmupSeconds", config.getWarmupSeconds());
+        report.put("durationSeconds", config.getDurationSeconds());
+        report.put("thinkTimeMillis", config.getThinkTimeMillis());
+        report.put("latencyUnit", "ms");
+        report.put("operations", operations);
+        return report;
+    }
+
+    /**
+     * reportDir 에 load-<시각>.json 과 latest.json 을 쓴다.
+     * @return 쓴 리포트
+     */
+    public Map<String, Object> write(ObjectMapper objectMapper) throws IOException {
+        Map<String, Object> report = toMap();
+        if (config.getBaseline() != null) {
+            report.put("comparison", compare(report, objectMapper.readValue(new File(config.getBaseline()), JSON_OBJECT)));
+        }
+
+        File dir = new File(config.getReportDir());
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        String name = "load-" + startedAt.format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(dir, name), report);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(dir, "latest.json"), report);
+        return report;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> compare(Map<String, Object> current, Map<String, Object> baseline) {
+        Map<String, Object> currentOperations = (Map<String, Object>) current.get("operations");
+        Map<String, Object> baselineOperations = (Map<String, Object>) baseline.get("operations");
+        Map<String, Object> comparison = new LinkedHashMap<>();
+        for (String operation : currentOperations.keySet()) {
+            if (baselineOperations == null || !baselineOperations.containsKey(operation)) {
+                continue;
+            }
+            double before = ((Number) ((Map<String, Object>) baselineOperations.get(operation)).get("p99")).doubleValue();
+            double after = ((Number) ((Map<String, Object>) currentOperations.get(operation)).get("p99")).doubleValue();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("baselineP99", before);
+            row.put("p99", after);
+            row.put("p99ChangePercent", before == 0 ? null : (after - before) * 100 / before);
+            comparison.put(operation, row);
+        }
+        return comparison;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public static LoadReport of(LoadTestConfig config, LocalDateTime startedAt, List<VirtualUser> users) {
+        LoadReport report = new LoadReport(config, startedAt);
+        users.forEach(report::add);
+        return report;
+    }
+}
@@ -0,0 +1,22 @@
+package jpabook.jpashop.load;
+
+import lombok.Getter;
+
+/**
+ * 부하 테스트 설정, 시스템 프로퍼티 loadtest.* 로 바꿀 수 있다.
+ */
+@Getter
+public class LoadTestConfig {
+    private final int users = intProperty("loadtest.users", 32);
+    private final int warmupSeconds = intProperty("loadtest.warmup-seconds", 5);
+    private final int durationSeconds = intProperty("loadtest.duration-seconds", 30);
+    private final int thinkTimeMillis = intProperty("loadtest.think-time-ms", 0);
+    private final int members = intProperty("loadtest.members", 100);
+    private final int items = intProperty("loadtest.items", 200);
+    private final String reportDir = System.getProperty("loadtest.report-dir", "build/reports/load");
+    private final String baseline = System.getProperty("loadtest.baseline");
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.load;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 부하 테스트용 회원, 상품 데이터
+ * 재고 부족으로 주문이 실패하지 않도록 재고를 넉넉히 둔다.
+ */
+@RequiredArgsConstructor
+public class LoadTestSeeder {
+    private static final int STOCK = 1_000_000;
+
+    private final MemberService memberService;
+    private final ItemService itemService;
+
+    private final List<Long> memberIds = new ArrayList<>();
+    private final List<Long> itemIds = new ArrayList<>();
+
+    public static String memberName(int index) {
+        return "loaduser-" + index;
+    }
+
+    public void seed(LoadTestConfig config) {
+        for (int i = 0; i < config.getMembers(); i++) {
+            Member member = new Member();
+            member.setName(memberName(i));
+            member.setAddress(new Address("서울", "부하로 " + i, "00000"));
+            memberIds.add(memberService.join(member));
+        }
+        for (int i = 0; i < config.getItems(); i++) {
+            Book book = new Book();
+            book.setName("부하책-" + i);
+            book.setPrice(1000 + i * 10);
+            book.setStockQuantity(STOCK);
+            itemIds.add(itemService.saveItem(book));
+        }
+    }
+
+    public List<Long> getMemberIds() {
+        return memberIds;
+    }
+
+    public List<Long> getItemIds() {
+        return itemIds;
+    }
+}
@@ -0,0 +1,31 @@
+package jpabook.jpashop.load;
+
+/**
+ * 가상 사용자가 수행하는 작업과 비중
+ */
+public enum Operation {
+    BROWSE_CATALOG(40),  // GET /items
+    PLACE_ORDER(25),     // POST /order
+    CANCEL_ORDER(10),    // POST /orders/{orderId}/cancel
+    SEARCH_ORDERS(25);   // GET /api/v5/simple-orders?memberName=
+
+    private final int weight;
+
+    Operation(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @param roll 0 이상 100 미만
+     */
+    public static Operation pick(int roll) {
+        int acc = 0;
+        for (Operation operation : values()) {
+            acc += operation.weight;
+            if (roll < acc) {
+                return operation;
+            }
+        }
+        return BROWSE_CATALOG;
+    }
+}
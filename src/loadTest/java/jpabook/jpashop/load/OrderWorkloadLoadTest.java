@@ -0,0 +1,110 @@
+package jpabook.jpashop.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 혼합 작업(카탈로그 조회, 주문, 취소, 주문 검색) 부하 테스트
+ * ./gradlew loadTest 로만 실행된다.
+ *
+ * 유입 제한과 SQL 로그는 측정을 왜곡하므로 끄고, 메모리 H2 에 직접 만든 데이터만 사용한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=warn",
+        "logging.level.org.hibernate.type=warn",
+        "jpashop.init-db.mode=none",
+        "jpashop.admission.enabled=false",
+        "jpashop.slow-query.explain=false",
+        "jpashop.archive.enabled=false"
+})
+@Slf4j
+public class OrderWorkloadLoadTest {
+
+    @LocalServerPort int port;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired ObjectMapper objectMapper;
+
+    @Test
+    public void 혼합_작업_부하() throws Exception {
+        // given
+        LoadTestConfig config = new LoadTestConfig();
+        LoadTestSeeder seeder = new LoadTestSeeder(memberService, itemService);
+        seeder.seed(config);
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        Queue<Long> cancelableOrderIds = new ConcurrentLinkedQueue<>();
+        Set<Long> claimedOrderIds = ConcurrentHashMap.newKeySet();
+
+        // when: 워밍업 결과는 버리고, 측정 구간만 리포트에 남긴다.
+        run(config, config.getWarmupSeconds(), client, seeder, cancelableOrderIds, claimedOrderIds);
+        LocalDateTime startedAt = LocalDateTime.now();
+        List<VirtualUser> users = run(config, config.getDurationSeconds(), client, seeder, cancelableOrderIds, claimedOrderIds);
+
+        // then
+        LoadReport report = LoadReport.of(config, startedAt, users);
+        Map<String, Object> written = report.write(objectMapper);
+        log.info("load test report: {}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(written));
+
+        assertTrue("요청이 하나도 성공하지 않았다.", report.totalCount() > 0);
+        assertTrue("오류 비율이 1% 를 넘었다.", report.totalErrors() * 100 <= report.totalCount());
+    }
+
+    private List<VirtualUser> run(LoadTestConfig config, int seconds, HttpClient client, LoadTestSeeder seeder,
+                                  Queue<Long> cancelableOrderIds, Set<Long> claimedOrderIds) throws Exception {
+        long stopAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        String baseUrl = "http://localhost:" + port;
+
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 0; i < config.getUsers(); i++) {
+            users.add(new VirtualUser(baseUrl, client, objectMapper, config,
+                    seeder.getMemberIds(), seeder.getItemIds(), cancelableOrderIds, claimedOrderIds, stopAt));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.getUsers());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (VirtualUser user : users) {
+                futures.add(executor.submit(user));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return users;
+    }
+}
@@ -0,0 +1,205 @@
+package jpabook.jpashop.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 재고 갱신 방식별 처리량 비교
+ * 64 스레드가 같은 상품 하나에 차감(주문) 과 원복(취소) 을 섞어서 보낸다.
+ *
+ *  - UNLOCKED: 잠금 없이 읽고-바꾸고-쓰기 (기존 방식), lost update 가 생긴다.
+ *  - PESSIMISTIC_LOCK: select ... for update 후 엔티티 변경
+ *  - CONDITIONAL_UPDATE: update ... where stock >= :quantity 한 문장
+ *  - ORDER_SERVICE: OrderService.order / cancelOrder 전체 (주문, 배송, 주문상품 저장 포함)
+ *
+ * 결과는 build/reports/load/stock-throughput.json, 방식별 초당 주문 수와 재고 오차(drift) 를 남긴다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock-benchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.hikari.maximum-pool-size=16",
+        "decorator.datasource.p6spy.enable-logging=false",
+        "logging.level.org.hibernate.SQL=warn",
+        "logging.level.org.hibernate.type=warn",
+        "jpashop.init-db.mode=none",
+        "jpashop.slow-query.explain=false"
+})
+@Slf4j
+public class StockThroughputBenchmark {
+    private static final int THREADS = 64;
+    private static final int OPERATIONS_PER_THREAD = Integer.getInteger("loadtest.stock.operations", 200);
+    private static final int STOCK = 1_000_000;
+
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired ItemRepository itemRepository;
+    @Autowired OrderService orderService;
+    @Autowired ObjectMapper objectMapper;
+
+    private interface Strategy {
+        /**
+         * @return 취소할 때 넘길 값 (주문 id 등), 재고 부족이면 null
+         */
+        Long decrease(Long memberId, Long itemId, int quantity);
+
+        void increase(Long token, Long itemId, int quantity);
+    }
+
+    @Test
+    public void 재고_갱신_방식별_처리량() throws Exception {
+        Map<String, Strategy> strategies = new LinkedHashMap<>();
+        strategies.put("UNLOCKED", new Strategy() {
+            public Long decrease(Long memberId, Long itemId, int quantity) {
+                return transactionTemplate.execute(status -> {
+                    em.find(Item.class, itemId).removeStock(quantity);
+                    return 0L;
+                });
+            }
+
+            public void increase(Long token, Long itemId, int quantity) {
+                transactionTemplate.execute(status -> {
+                    em.find(Item.class, itemId).addStock(quantity);
+                    return null;
+                });
+            }
+        });
+        strategies.put("PESSIMISTIC_LOCK", new Strategy() {
+            public Long decrease(Long memberId, Long itemId, int quantity) {
+                return transactionTemplate.execute(status -> {
+                    itemRepository.findOneForUpdate(itemId).removeStock(quantity);
+                    return 0L;
+                });
+            }
+
+            public void increase(Long token, Long itemId, int quantity) {
+                transactionTemplate.execute(status -> {
+                    itemRepository.findOneForUpdate(itemId).addStock(quantity);
+                    return null;
+                });
+            }
+        });
+        strategies.put("CONDITIONAL_UPDATE", new Strategy() {
+            public Long decrease(Long memberId, Long itemId, int quantity) {
+                return transactionTemplate.execute(status -> itemRepository.decreaseStock(itemId, quantity) == 1 ? 0L : null);
+            }
+
+            public void increase(Long token, Long itemId, int quantity) {
+                transactionTemplate.execute(status -> itemRepository.increaseStock(itemId, quantity));
+            }
+        });
+        strategies.put("ORDER_SERVICE", new Strategy() {
+            public Long decrease(Long memberId, Long itemId, int quantity) {
+                return orderService.order(memberId, itemId, quantity);
+            }
+
+            public void increase(Long token, Long itemId, int quantity) {
+                orderService.cancelOrder(token);
+            }
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("threads", THREADS);
+        report.put("operationsPerThread", OPERATIONS_PER_THREAD);
+        for (Map.Entry<String, Strategy> entry : strategies.entrySet()) {
+            report.put(entry.getKey(), run(entry.getValue()));
+        }
+
+        File dir = new File(System.getProperty("loadtest.report-dir", "build/reports/load"));
+        dir.mkdirs();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(dir, "stock-throughput.json"), report);
+        log.info("stock throughput: {}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+    }
+
+    private Map<String, Object> run(Strategy strategy) throws Exception {
+        Long[] ids = transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("벤치회원");
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+            Book book = new Book();
+            book.setName("벤치책");
+            book.setPrice(1000);
+            book.setStockQuantity(STOCK);
+            em.persist(book);
+            return new Long[]{member.getId(), book.getId()};
+        });
+        Long memberId = ids[0];
+        Long itemId = ids[1];
+
+        AtomicLong netUnits = new AtomicLong();
+        AtomicInteger orders = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    int quantity = 1 + random.nextInt(3);
+                    try {
+                        Long token = strategy.decrease(memberId, itemId, quantity);
+                        if (token == null) {
+                            continue;
+                        }
+                        orders.incrementAndGet();
+                        netUnits.addAndGet(quantity);
+                        // 네 번에 한 번은 취소
+                        if (random.nextInt(4) == 0) {
+                            strategy.increase(token, itemId, quantity);
+                            netUnits.addAndGet(-quantity);
+                        }
+                    } catch (NotEnoughStockException e) {
+                        // 재고 부족, 다음 작업
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet(); // 잠금 대기 시간 초과 등
+                    }
+                }
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        executor.shutdown();
+
+        int stock = transactionTemplate.execute(status -> em.find(Item.class, itemId).getStockQuantity());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ordersPerSecond", orders.get() / seconds);
+        result.put("orders", orders.get());
+        result.put("failures", failures.get());
+        result.put("seconds", seconds);
+        result.put("expectedStock", STOCK - netUnits.get());
+        result.put("actualStock", stock);
+        result.put("drift", stock - (STOCK - netUnits.get())); // 0 이 아니면 lost update
+        return result;
+    }
+}
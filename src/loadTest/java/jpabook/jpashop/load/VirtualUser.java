@@ -0,0 +1,179 @@
+package jpabook.jpashop.load;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 가상 사용자 한 명
+ * 작업을 고르고, 요청을 보내고, 작업별 지연 시간(us) 을 자기 히스토그램에 기록한다.
+ * 히스토그램은 사용자마다 따로 두고 끝난 뒤에 합친다. (기록 중에는 동기화가 필요 없다.)
+ *
+ * 응답을 받은 뒤 다음 요청을 보내는 closed model 이라, 서버가 느려지면 보내는 요청도 줄어든다. (coordinated omission)
+ * think-time 을 주면 그 간격을 기대 간격으로 보고 빠진 요청을 보정해서 기록한다.
+ */
+public class VirtualUser implements Runnable {
+    private static final TypeReference<List<Map<String, Object>>> ORDER_LIST = new TypeReference<List<Map<String, Object>>>() {};
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final LoadTestConfig config;
+    private final List<Long> memberIds;
+    private final List<Long> itemIds;
+    private final Queue<Long> cancelableOrderIds;
+    private final Set<Long> claimedOrderIds;
+    private final long stopAt;
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+
+    public VirtualUser(String baseUrl, HttpClient client, ObjectMapper objectMapper, LoadTestConfig config,
+                       List<Long> memberIds, List<Long> itemIds,
+                       Queue<Long> cancelableOrderIds, Set<Long> claimedOrderIds, long stopAt) {
+        this.baseUrl = baseUrl;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.config = config;
+        this.memberIds = memberIds;
+        this.itemIds = itemIds;
+        this.cancelableOrderIds = cancelableOrderIds;
+        this.claimedOrderIds = claimedOrderIds;
+        this.stopAt = stopAt;
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new Histogram(3));
+            errors.put(operation, 0L);
+        }
+    }
+
+    @Override
+    public void run() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < stopAt && !Thread.currentThread().isInterrupted()) {
+            Operation operation = Operation.pick(random.nextInt(100));
+            Long orderId = null;
+            if (operation == Operation.CANCEL_ORDER) {
+                orderId = claimOrder();
+                if (orderId == null) {
+                    operation = Operation.PLACE_ORDER;
+                }
+            }
+
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = execute(operation, orderId, random);
+            } catch (Exception e) {
+                ok = false;
+            }
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+            if (ok) {
+                Histogram histogram = histograms.get(operation);
+                if (config.getThinkTimeMillis() > 0) {
+                    histogram.recordValueWithExpectedInterval(micros, TimeUnit.MILLISECONDS.toMicros(config.getThinkTimeMillis()));
+                } else {
+                    histogram.recordValue(micros);
+                }
+            } else {
+                errors.merge(operation, 1L, Long::sum);
+            }
+            think();
+        }
+    }
+
+    public Map<Operation, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    public Map<Operation, Long> getErrors() {
+        return errors;
+    }
+
+    private boolean execute(Operation operation, Long orderId, ThreadLocalRandom random) throws Exception {
+        switch (operation) {
+            case BROWSE_CATALOG:
+                return isSuccess(send(HttpRequest.newBuilder(uri("/items")).GET()));
+            case PLACE_ORDER:
+                String form = "memberId=" + pick(memberIds, random) + "&itemId=" + pick(itemIds, random) + "&count=1";
+                return isSuccess(send(HttpRequest.newBuilder(uri("/order"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))));
+            case CANCEL_ORDER:
+                return isSuccess(send(HttpRequest.newBuilder(uri("/orders/" + orderId + "/cancel"))
+                        .POST(HttpRequest.BodyPublishers.noBody())));
+            case SEARCH_ORDERS:
+                HttpResponse<String> response = send(HttpRequest.newBuilder(
+                        uri("/api/v5/simple-orders?memberName=" + LoadTestSeeder.memberName(random.nextInt(memberIds.size())))).GET());
+                if (!isSuccess(response)) {
+                    return false;
+                }
+                collectCancelable(response.body());
+                return true;
+            default:
+                throw new IllegalStateException(operation.name());
+        }
+    }
+
+    /**
+     * 검색 결과에서 아직 취소되지 않은 주문을 취소 대상으로 모은다.
+     */
+    private void collectCancelable(String body) throws Exception {
+        for (Map<String, Object> order : objectMapper.readValue(body, ORDER_LIST)) {
+            if ("ORDER".equals(order.get("orderStatus")) && cancelableOrderIds.size() < 10_000) {
+                cancelableOrderIds.offer(((Number) order.get("orderId")).longValue());
+            }
+        }
+    }
+
+    private Long claimOrder() {
+        Long orderId;
+        while ((orderId = cancelableOrderIds.poll()) != null) {
+            if (claimedOrderIds.add(orderId)) {
+                return orderId;
+            }
+        }
+        return null;
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // POST 후 redirect(302) 도 성공
+    private static boolean isSuccess(HttpResponse<String> response) {
+        return response.statusCode() < 400;
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static Long pick(List<Long> ids, ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private void think() {
+        if (config.getThinkTimeMillis() <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(config.getThinkTimeMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,11 +3,16 @@ package jpabook.jpashop;
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Book;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 총 2주문 2개
@@ -17,17 +22,42 @@ import javax.persistence.EntityManager;
  * userB
  *     Spring1 BOOK
  *     Spring2 BOOK
+ *
+ * jpashop.init-db.mode
+ *  startup: 빈 초기화 시점(@PostConstruct) 에 넣는다. 기본값
+ *  background: 애플리케이션이 뜬 뒤 별도 스레드에서, 회원이 하나도 없을 때만 넣는다. (fast 프로파일)
+ *  none: 넣지 않는다.
  */
 @Component
+@Slf4j
 @RequiredArgsConstructor
 public class InitDB {
 
     private  final InitService initService;
 
+    @Value("${jpashop.init-db.mode:startup}")
+    private String mode;
+
     @PostConstruct
     public void init() {
-        initService.dbInit1();
-        initService.dbInit2();
+        if ("startup".equals(mode)) {
+            initService.dbInit1();
+            initService.dbInit2();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initInBackground() {
+        if (!"background".equals(mode)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            if (initService.isEmpty()) {
+                initService.dbInit1();
+                initService.dbInit2();
+                log.info("init db: seeded in background");
+            }
+        });
     }
 
     @Component
@@ -35,6 +65,11 @@ public class InitDB {
     @RequiredArgsConstructor
     static class InitService {
         private final EntityManager em;
+
+        public boolean isEmpty() {
+            return em.createQuery("select count(m) from Member m", Long.class).getSingleResult() == 0;
+        }
+
         public void dbInit1() {
             Member member = createMember("userA", "서울", "1", "1111");
             em.persist(member);
@@ -48,8 +83,7 @@ public class InitDB {
             OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
             OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
 
-            Delivery delivery = new Delivery();
-            delivery.setAddress(member.getAddress());
+            Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
         }
@@ -76,6 +110,7 @@ public class InitDB {
     private static Delivery createDelivery(Member member) {
         Delivery delivery = new Delivery();
         delivery.setAddress(member.getAddress());
+        delivery.setStatus(DeliveryStatus.READY);
         return delivery;
     }
 
@@ -1,11 +1,15 @@
 package jpabook.jpashop;
 
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class JpashopApplication {
 
 	public static void main(String[] args) {
@@ -22,4 +26,12 @@ public class JpashopApplication {
 //		 hibernate5Module.configure(Hibernate5Module.Feature.FORCE_LAZY_LOADING, true);
 		 return hibernate5Module;
 	}
+
+	/**
+	 * 서비스 메서드의 @Timed 를 처리해서, 메서드별 timer(jpashop.service) 를 남긴다.
+	 */
+	@Bean
+	TimedAspect timedAspect(MeterRegistry registry) {
+		return new TimedAspect(registry);
+	}
 }
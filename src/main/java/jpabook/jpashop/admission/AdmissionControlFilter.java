@@ -0,0 +1,162 @@
+package jpabook.jpashop.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 엔드포인트 별 유입 제한
+ *
+ * 순간적으로 요청이 몰리면 POST /order 와 무거운 조회(/api/v1/orders, /api/v3/orders) 가 같은 Hikari 풀을 두고 경쟁해서 전부 느려진다.
+ * 풀에서 줄을 서게 두지 않고, 한도를 넘는 요청은 바로 거절한다.
+ *  - 토큰 버킷(초당 요청 수) 초과: 429, Retry-After 는 다음 토큰까지 남은 시간
+ *  - 동시 처리 수 초과 (maxWaitMs 만큼 기다린 뒤): 503, Retry-After 는 설정값
+ *
+ * 메트릭
+ *  - jpashop.admission.rejected{endpoint, reason=rate|concurrency}
+ *  - jpashop.admission.queued{endpoint}: 동시 처리 자리를 기다린 요청 수
+ *  - jpashop.admission.waiting{endpoint}, jpashop.admission.in-flight{endpoint}
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<Limiter> limiters = new ArrayList<>();
+
+    public AdmissionControlFilter(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (Map.Entry<String, AdmissionProperties.Endpoint> entry : properties.getEndpoints().entrySet()) {
+            limiters.add(new Limiter(entry.getKey(), entry.getValue(), meterRegistry));
+            log.info("admission control: {} {} {}", entry.getKey(), entry.getValue().getMethod(), entry.getValue().getPath());
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Limiter limiter = find(request);
+        if (limiter == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (limiter.bucket != null) {
+            long waitNanos = limiter.bucket.tryAcquire();
+            if (waitNanos > 0) {
+                limiter.rateRejected.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+                return;
+            }
+        }
+
+        if (limiter.semaphore == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!acquire(limiter)) {
+            limiter.concurrencyRejected.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, limiter.config.getRetryAfterSeconds());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limiter.semaphore.release();
+        }
+    }
+
+    private boolean acquire(Limiter limiter) {
+        if (limiter.semaphore.tryAcquire()) {
+            return true;
+        }
+        if (limiter.config.getMaxWaitMs() <= 0) {
+            return false;
+        }
+        limiter.queued.increment();
+        limiter.waiting.incrementAndGet();
+        try {
+            return limiter.semaphore.tryAcquire(limiter.config.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            limiter.waiting.decrementAndGet();
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+
+    private Limiter find(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Limiter limiter : limiters) {
+            String method = limiter.config.getMethod();
+            if ((method == null || method.equalsIgnoreCase(request.getMethod()))
+                    && pathMatcher.match(limiter.config.getPath(), path)) {
+                return limiter;
+            }
+        }
+        return null;
+    }
+
+    private static class Limiter {
+        private final AdmissionProperties.Endpoint config;
+        private final TokenBucket bucket;
+        private final Semaphore semaphore;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Counter rateRejected;
+        private final Counter concurrencyRejected;
+        private final Counter queued;
+
+        Limiter(String name, AdmissionProperties.Endpoint config, MeterRegistry meterRegistry) {
+            this.config = config;
+            this.bucket = config.getRatePerSecond() > 0
+                    ? new TokenBucket(config.getRatePerSecond(), config.getBurst() > 0 ? config.getBurst() : (int) Math.ceil(config.getRatePerSecond()))
+                    : null;
+            this.semaphore = config.getMaxConcurrent() > 0 ? new Semaphore(config.getMaxConcurrent(), true) : null;
+
+            this.rateRejected = Counter.builder("jpashop.admission.rejected")
+                    .tag("endpoint", name).tag("reason", "rate")
+                    .register(meterRegistry);
+            this.concurrencyRejected = Counter.builder("jpashop.admission.rejected")
+                    .tag("endpoint", name).tag("reason", "concurrency")
+                    .register(meterRegistry);
+            this.queued = Counter.builder("jpashop.admission.queued")
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+            Gauge.builder("jpashop.admission.waiting", waiting, AtomicInteger::get)
+                    .tag("endpoint", name)
+                    .register(meterRegistry);
+            if (semaphore != null) {
+                Gauge.builder("jpashop.admission.in-flight", semaphore, s -> config.getMaxConcurrent() - s.availablePermits())
+                        .tag("endpoint", name)
+                        .register(meterRegistry);
+            }
+        }
+    }
+}
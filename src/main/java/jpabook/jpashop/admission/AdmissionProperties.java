@@ -0,0 +1,32 @@
+package jpabook.jpashop.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * jpashop.admission.*
+ * 엔드포인트 별 유입 제한 설정
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.admission")
+@Getter @Setter
+public class AdmissionProperties {
+    private boolean enabled = true;
+    private Map<String, Endpoint> endpoints = new LinkedHashMap<>(); // key 는 메트릭 태그로 쓰인다.
+
+    @Getter @Setter
+    public static class Endpoint {
+        private String method;          // null 이면 모든 메서드
+        private String path;            // Ant 패턴
+        private double ratePerSecond;   // 초당 토큰 충전량, 0 이하면 토큰 버킷을 쓰지 않는다.
+        private int burst;              // 버킷 크기, 0 이하면 ratePerSecond 와 같게
+        private int maxConcurrent;      // 동시 처리 수, 0 이하면 제한하지 않는다.
+        private long maxWaitMs;         // 동시 처리 자리가 날 때까지 기다리는 최대 시간
+        private int retryAfterSeconds = 1; // 동시 처리 수 초과(503) 시 Retry-After
+    }
+}
@@ -0,0 +1,44 @@
+package jpabook.jpashop.admission;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 토큰 버킷
+ * 요청마다 토큰 하나를 쓰고, 토큰은 초당 ratePerSecond 개씩 capacity 까지 충전된다.
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final double ratePerSecond;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, int capacity) {
+        this(ratePerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double ratePerSecond, int capacity, LongSupplier nanoTime) {
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = capacity;
+        this.nanoTime = nanoTime;
+        this.tokens = capacity;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /**
+     * @return 토큰을 얻었으면 0, 아니면 다음 토큰까지 남은 시간(ns)
+     */
+    public synchronized long tryAcquire() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerSecond / NANOS_PER_SECOND);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / ratePerSecond);
+    }
+}
@@ -0,0 +1,204 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 주문 라인(order_item + orders) 을 컬럼별 primitive 배열로 들고 있는 불변 스냅샷
+ *
+ * OrderItem 엔티티 하나는 객체 헤더, boxing 된 id, 프록시 참조까지 수백 byte 를 쓰지만,
+ * 여기서는 한 라인이 long 2개 + int 3개 + byte 1개 = 29 byte 다. (백만 라인당 약 29MB)
+ * 실제 사용량은 배열 용량 기준으로 memoryBytes() 로 잰다. (남는 용량 포함)
+ * 필터와 집계는 인덱스 범위에 대한 parallel stream 으로 수행한다.
+ */
+public final class OrderLineColumns {
+
+    /** 한 라인이 차지하는 byte 수 */
+    public static final int BYTES_PER_LINE = Long.BYTES * 2 + Integer.BYTES * 3 + Byte.BYTES;
+
+    private final long[] orderIds;
+    private final long[] itemIds;
+    private final int[] prices;
+    private final int[] counts;
+    private final int[] epochDays;
+    private final byte[] statuses; // OrderStatus.ordinal()
+    private final int size;
+
+    private OrderLineColumns(long[] orderIds, long[] itemIds, int[] prices, int[] counts, int[] epochDays, byte[] statuses, int size) {
+        this.orderIds = orderIds;
+        this.itemIds = itemIds;
+        this.prices = prices;
+        this.counts = counts;
+        this.epochDays = epochDays;
+        this.statuses = statuses;
+        this.size = size;
+    }
+
+    public static OrderLineColumns empty() {
+        return new Builder(0).build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 배열이 실제로 차지하는 byte 수, 남는 용량 포함 (배열 헤더 제외)
+     */
+    public long memoryBytes() {
+        return capacityBytes(orderIds, itemIds, prices, counts, epochDays, statuses);
+    }
+
+    private static long capacityBytes(long[] orderIds, long[] itemIds, int[] prices, int[] counts, int[] epochDays, byte[] statuses) {
+        return (long) orderIds.length * Long.BYTES + (long) itemIds.length * Long.BYTES
+                + (long) prices.length * Integer.BYTES + (long) counts.length * Integer.BYTES + (long) epochDays.length * Integer.BYTES
+                + statuses.length;
+    }
+
+    /**
+     * 조건에 맞는 라인의 매출 합계
+     * @param fromDay 포함, epoch day
+     * @param toDay 포함, epoch day
+     * @param status null 이면 상태 무시
+     */
+    public long sumRevenue(int fromDay, int toDay, OrderStatus status) {
+        int statusCode = status == null ? -1 : status.ordinal();
+        return IntStream.range(0, size).parallel()
+                .filter(i -> matches(i, fromDay, toDay, statusCode))
+                .mapToLong(i -> (long) prices[i] * counts[i])
+                .sum();
+    }
+
+    /**
+     * 조건에 맞는 라인의 수량 합계
+     */
+    public long sumUnits(int fromDay, int toDay, OrderStatus status) {
+        int statusCode = status == null ? -1 : status.ordinal();
+        return IntStream.range(0, size).parallel()
+                .filter(i -> matches(i, fromDay, toDay, statusCode))
+                .mapToLong(i -> counts[i])
+                .sum();
+    }
+
+    /**
+     * 조건에 맞는 서로 다른 주문 수
+     */
+    public long countOrders(int fromDay, int toDay, OrderStatus status) {
+        int statusCode = status == null ? -1 : status.ordinal();
+        return IntStream.range(0, size).parallel()
+                .filter(i -> matches(i, fromDay, toDay, statusCode))
+                .mapToLong(i -> orderIds[i])
+                .distinct()
+                .count();
+    }
+
+    /**
+     * 상품별 {수량, 매출} 합계
+     * 각 스레드가 자기 map 에 모은 뒤 합치므로 공유 map 에 대한 경합이 없다.
+     */
+    public Map<Long, long[]> sumByItem(int fromDay, int toDay, OrderStatus status) {
+        int statusCode = status == null ? -1 : status.ordinal();
+        return IntStream.range(0, size).parallel()
+                .filter(i -> matches(i, fromDay, toDay, statusCode))
+                .collect(HashMap::new,
+                        (Map<Long, long[]> map, int i) -> {
+                            long[] sums = map.computeIfAbsent(itemIds[i], k -> new long[2]);
+                            sums[0] += counts[i];
+                            sums[1] += (long) prices[i] * counts[i];
+                        },
+                        (left, right) -> right.forEach((itemId, sums) -> left.merge(itemId, sums, (a, b) -> {
+                            a[0] += b[0];
+                            a[1] += b[1];
+                            return a;
+                        })));
+    }
+
+    private boolean matches(int i, int fromDay, int toDay, int statusCode) {
+        return epochDays[i] >= fromDay && epochDays[i] <= toDay
+                && (statusCode < 0 || statuses[i] == statusCode);
+    }
+
+    /**
+     * 라인을 하나씩 추가하면서 배열을 키워가는 builder, 단일 스레드에서만 사용한다.
+     * 배열을 키우거나 잘라내는 동안은 이전 배열과 새 배열이 같이 살아 있으므로, 그때의 크기를 peakBytes 로 남긴다.
+     * build 한 뒤에는 배열을 스냅샷에 넘기므로 다시 쓰지 않는다.
+     */
+    public static final class Builder {
+        private long[] orderIds;
+        private long[] itemIds;
+        private int[] prices;
+        private int[] counts;
+        private int[] epochDays;
+        private byte[] statuses;
+        private int size;
+        private long peakBytes;
+
+        public Builder(int initialCapacity) {
+            int capacity = Math.max(initialCapacity, 16);
+            orderIds = new long[capacity];
+            itemIds = new long[capacity];
+            prices = new int[capacity];
+            counts = new int[capacity];
+            epochDays = new int[capacity];
+            statuses = new byte[capacity];
+            peakBytes = capacityBytes();
+        }
+
+        public Builder add(long orderId, long itemId, int price, int count, LocalDateTime orderDate, OrderStatus status) {
+            if (size == orderIds.length) {
+                grow();
+            }
+            orderIds[size] = orderId;
+            itemIds[size] = itemId;
+            prices[size] = price;
+            counts[size] = count;
+            epochDays[size] = (int) orderDate.toLocalDate().toEpochDay();
+            statuses[size] = (byte) status.ordinal();
+            size++;
+            return this;
+        }
+
+        private void grow() {
+            int capacity = orderIds.length + (orderIds.length >> 1);
+            peakBytes = Math.max(peakBytes, capacityBytes() + (long) capacity * BYTES_PER_LINE);
+            orderIds = Arrays.copyOf(orderIds, capacity);
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+
+        /**
+         * 불변 스냅샷을 만든다. 남는 용량이 1/16 을 넘을 때만 잘라낸다. (복사하는 동안 두 벌이 필요하므로)
+         */
+        public OrderLineColumns build() {
+            if (orderIds.length - size > orderIds.length >> 4) {
+                peakBytes = Math.max(peakBytes, capacityBytes() + (long) size * BYTES_PER_LINE);
+                orderIds = Arrays.copyOf(orderIds, size);
+                itemIds = Arrays.copyOf(itemIds, size);
+                prices = Arrays.copyOf(prices, size);
+                counts = Arrays.copyOf(counts, size);
+                epochDays = Arrays.copyOf(epochDays, size);
+                statuses = Arrays.copyOf(statuses, size);
+            }
+            return new OrderLineColumns(orderIds, itemIds, prices, counts, epochDays, statuses, size);
+        }
+
+        /**
+         * 지금까지 가장 많이 잡았던 배열 크기 (byte)
+         */
+        public long peakBytes() {
+            return peakBytes;
+        }
+
+        private long capacityBytes() {
+            return OrderLineColumns.capacityBytes(orderIds, itemIds, prices, counts, epochDays, statuses);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.shard.Shards;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 라인 컬럼 스냅샷을 주기적으로 다시 만들고, 현재 스냅샷을 제공하는 서비스
+ *
+ * 엔티티를 거치지 않고 JDBC 로 스트리밍하면서 바로 primitive 배열에 채운다.
+ * 새 스냅샷이 다 만들어진 뒤에 참조만 바꾸므로, 조회 중인 요청은 이전 스냅샷을 끝까지 본다.
+ *
+ * 다시 만드는 동안은 이전 스냅샷과 새 배열이 같이 힙에 있다. 배열을 잡기 전에 건수로 (이전 스냅샷 + 새 배열) 크기를 계산해서
+ * jpashop.analytics.max-refresh-bytes 를 넘으면 새로 만들지 않고 이전 스냅샷을 유지한다. (0 이면 제한 없음)
+ * 읽는 동안 라인이 늘어 배열이 커진 경우도, 다 만든 뒤의 최대 크기(refreshPeakBytes) 가 넘으면 버린다.
+ * 샤딩을 켜면 샤드마다 차례로 읽어서 한 스냅샷에 채운다.
+ */
+@Service
+@Slf4j
+public class OrderLineSnapshotService {
+
+    private static final String SELECT_ORDER_LINES =
+            "select oi.order_id, oi.item_id, oi.order_price, oi.count, o.order_date, o.status" +
+                    " from order_item oi" +
+                    " join orders o on o.order_id = oi.order_id";
+
+    private static final String COUNT_ORDER_LINES = "select count(*) from order_item";
+    private static final long MILLION = 1_000_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Shards shards;
+    @Getter
+    private final long maxRefreshBytes;
+
+    private volatile Snapshot snapshot = new Snapshot(OrderLineColumns.empty(), null, 0, 0);
+    @Getter
+    private volatile LocalDateTime lastRejectedAt;
+
+    public OrderLineSnapshotService(DataSource dataSource,
+                                    Shards shards,
+                                    @Value("${jpashop.analytics.max-refresh-bytes:268435456}") long maxRefreshBytes) {
+        // 공용 JdbcTemplate 의 설정을 바꾸지 않도록 전용 인스턴스를 사용
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(10_000);
+        this.shards = shards;
+        this.maxRefreshBytes = maxRefreshBytes;
+    }
+
+    @Scheduled(initialDelayString = "${jpashop.analytics.snapshot-initial-delay-ms:10000}",
+            fixedDelayString = "${jpashop.analytics.snapshot-delay-ms:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * @return 새 스냅샷으로 바꿨으면 true, 메모리 제한을 넘어서 이전 스냅샷을 유지하면 false
+     */
+    public boolean refresh() {
+        long start = System.currentTimeMillis();
+        Snapshot previous = snapshot;
+        long previousBytes = previous.getColumns().memoryBytes();
+        // 건수만큼 미리 잡아서 배열을 키우는 복사가 없게 한다. 그 사이 추가된 라인을 위해 조금 더 잡는다.
+        int expected = shards.sumOverShards(() -> jdbcTemplate.queryForObject(COUNT_ORDER_LINES, Integer.class));
+        int capacity = expected + (expected >> 6);
+        long projectedBytes = previousBytes + (long) capacity * OrderLineColumns.BYTES_PER_LINE;
+        if (overLimit(projectedBytes)) {
+            return reject(expected, projectedBytes);
+        }
+        OrderLineColumns.Builder builder = new OrderLineColumns.Builder(capacity);
+
+        shards.forEachShard(() -> jdbcTemplate.query(SELECT_ORDER_LINES, rs -> {
+            builder.add(
+                    rs.getLong(1),
+                    rs.getLong(2),
+                    rs.getInt(3),
+                    rs.getInt(4),
+                    rs.getTimestamp(5).toLocalDateTime(),
+                    OrderStatus.valueOf(rs.getString(6)));
+        }));
+
+        OrderLineColumns columns = builder.build();
+        long loadMillis = System.currentTimeMillis() - start;
+        long peakBytes = previousBytes + builder.peakBytes();
+        if (overLimit(peakBytes)) {
+            return reject(columns.size(), peakBytes);
+        }
+        snapshot = new Snapshot(columns, LocalDateTime.now(), loadMillis, peakBytes);
+        log.info("order line snapshot: {} lines, {} bytes (peak {}), loaded in {} ms", columns.size(), columns.memoryBytes(), peakBytes, loadMillis);
+        return true;
+    }
+
+    private boolean overLimit(long bytes) {
+        return maxRefreshBytes > 0 && bytes > maxRefreshBytes;
+    }
+
+    private boolean reject(int lines, long bytes) {
+        lastRejectedAt = LocalDateTime.now();
+        log.warn("order line snapshot: {} lines need {} bytes while refreshing, over limit {} bytes, keeping previous snapshot",
+                lines, bytes, maxRefreshBytes);
+        return false;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Snapshot {
+        private final OrderLineColumns columns;
+        private final LocalDateTime loadedAt;
+        private final long loadMillis;
+        private final long refreshPeakBytes; // 만드는 동안 이전 스냅샷 + 새 배열의 최대 크기
+
+        /**
+         * 백만 라인당 실제 메모리 사용량 (byte), 라인이 없으면 0
+         */
+        public long getBytesPerMillionLines() {
+            int lines = columns.size();
+            return lines == 0 ? 0 : columns.memoryBytes() * MILLION / lines;
+        }
+    }
+}
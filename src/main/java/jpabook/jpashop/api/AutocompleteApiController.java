@@ -0,0 +1,34 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.repository.NameMatch;
+import jpabook.jpashop.service.AutocompleteIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 회원/상품 이름 자동완성 API, 주문 화면에서 전체 목록 대신 사용한다.
+ * DB 를 거치지 않고 메모리 색인에서 접두사로 찾는다. (대소문자, 전각/반각, 공백 무시)
+ */
+@RestController
+@RequiredArgsConstructor
+public class AutocompleteApiController {
+    private static final int MAX_LIMIT = 50;
+
+    private final AutocompleteIndex autocompleteIndex;
+
+    @GetMapping("/api/members/autocomplete")
+    public List<NameMatch> members(@RequestParam("q") String prefix,
+                                   @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return autocompleteIndex.members().search(prefix, Math.min(limit, MAX_LIMIT));
+    }
+
+    @GetMapping("/api/items/autocomplete")
+    public List<NameMatch> items(@RequestParam("q") String prefix,
+                                 @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return autocompleteIndex.items().search(prefix, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,148 @@
+package jpabook.jpashop.api;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.hibernate.type.OneToOneType;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * DTO 변환용 배치 로더 (요청 범위)
+ *
+ * DTO 를 만들면서 지연 로딩 연관관계를 바로 건드리지 않고, load/loadMany 로 키(id)만 모아둔다.
+ * dispatch 하면 모인 키를 엔티티 타입(컬렉션은 owner 타입 + 필드) 별로 in 쿼리 한 번에 읽고, 등록된 resolver 를 실행한다.
+ * resolver 안에서 다시 load 하면 다음 차례(tick) 에 모아서 읽는다. (예: 주문 -> 주문상품 -> 상품)
+ * 그래서 쿼리 수는 페이지 크기와 상관없이 DTO 의 연관관계 깊이만큼으로 고정된다. (in 절은 IN_LIMIT 개씩 나눈다)
+ *
+ * 이미 초기화된 연관관계(fetch join, 엔티티 그래프) 는 쿼리 없이 바로 resolver 를 실행한다.
+ * 영속성 컨텍스트가 살아 있어야 하므로 OSIV 를 켜거나 트랜잭션 안에서 사용한다. 스레드 간에 공유하지 않는다.
+ */
+@Component
+@RequestScope
+public class DataLoader {
+    static final int IN_LIMIT = 1000;
+
+    private final EntityManager em;
+    // 쿼리(타입) 별로 id -> resolver 목록, 등록 순서대로 실행한다.
+    private Map<String, Map<Object, List<Runnable>>> pending = new LinkedHashMap<>();
+
+    public DataLoader(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * 엔티티 하나를 읽어서 resolver 에 넘긴다. reference 가 null 이면 resolver 를 실행하지 않는다.
+     * @param reference 지연 로딩 프록시 또는 엔티티 (예: order.getMember())
+     */
+    public <E> void load(E reference, Consumer<? super E> resolver) {
+        if (reference == null) {
+            return;
+        }
+        LazyInitializer proxy = uninitializedProxy(reference);
+        if (proxy == null) {
+            resolver.accept(reference);
+            return;
+        }
+        Class<?> entityClass = proxy.getPersistentClass();
+        String jpql = "select e from " + entityName(entityClass) + " e" + inverseOneToOneFetches(entityClass) + " where e.id in :ids";
+        enqueue(jpql, proxy.getIdentifier(), () -> resolver.accept(reference));
+    }
+
+    /**
+     * owner 의 컬렉션을 읽어서 resolver 에 넘긴다. 같은 차례의 owner 들은 fetch join 한 번으로 초기화한다.
+     * @param attribute 컬렉션 필드 이름 (예: "orderItems")
+     * @param getter 컬렉션 getter (예: Order::getOrderItems)
+     */
+    public <O, C extends Collection<?>> void loadMany(O owner, String attribute, Function<O, C> getter, Consumer<? super C> resolver) {
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        if (util.isLoaded(owner, attribute)) {
+            resolver.accept(getter.apply(owner));
+            return;
+        }
+        Class<?> ownerClass = owner instanceof HibernateProxy
+                ? ((HibernateProxy) owner).getHibernateLazyInitializer().getPersistentClass()
+                : owner.getClass();
+        String jpql = "select distinct o from " + entityName(ownerClass) + " o left join fetch o." + attribute + " where o.id in :ids";
+        enqueue(jpql, util.getIdentifier(owner), () -> resolver.accept(getter.apply(owner)));
+    }
+
+    /**
+     * 모인 키가 없어질 때까지 차례대로 읽고 resolver 를 실행한다.
+     */
+    public void dispatch() {
+        while (!pending.isEmpty()) {
+            Map<String, Map<Object, List<Runnable>>> tick = pending;
+            pending = new LinkedHashMap<>();
+
+            tick.forEach((jpql, resolvers) -> {
+                List<Object> ids = new ArrayList<>(resolvers.keySet());
+                for (int from = 0; from < ids.size(); from += IN_LIMIT) {
+                    em.createQuery(jpql)
+                            .setParameter("ids", ids.subList(from, Math.min(from + IN_LIMIT, ids.size())))
+                            .getResultList();
+                }
+            });
+            tick.values().forEach(resolvers -> resolvers.values().forEach(list -> list.forEach(Runnable::run)));
+        }
+    }
+
+    /**
+     * sources 를 DTO 로 바꾸고 dispatch 까지 마친 결과
+     * 예) dataLoader.map(orders, OrderDto::new)
+     */
+    public <T, R> List<R> map(List<T> sources, BiFunction<T, DataLoader, R> mapper) {
+        List<R> result = new ArrayList<>(sources.size());
+        for (T source : sources) {
+            result.add(mapper.apply(source, this));
+        }
+        dispatch();
+        return result;
+    }
+
+    private void enqueue(String jpql, Object id, Runnable resolver) {
+        pending.computeIfAbsent(jpql, q -> new LinkedHashMap<>())
+                .computeIfAbsent(id, key -> new ArrayList<>())
+                .add(resolver);
+    }
+
+    private String entityName(Class<?> entityClass) {
+        return em.getMetamodel().entity(entityClass).getName();
+    }
+
+    /**
+     * mappedBy 쪽 @OneToOne (예: Delivery.order) 은 프록시를 만들 수 없어서, 엔티티를 읽을 때 건마다 따로 조회한다.
+     * 같은 쿼리에서 fetch join 해서 건별 조회를 막는다.
+     */
+    private String inverseOneToOneFetches(Class<?> entityClass) {
+        EntityPersister persister = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getMetamodel().entityPersister(entityClass);
+        StringBuilder fetches = new StringBuilder();
+        Type[] types = persister.getPropertyTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] instanceof OneToOneType) {
+                fetches.append(" left join fetch e.").append(persister.getPropertyNames()[i]);
+            }
+        }
+        return fetches.toString();
+    }
+
+    private static LazyInitializer uninitializedProxy(Object reference) {
+        if (reference instanceof HibernateProxy) {
+            LazyInitializer initializer = ((HibernateProxy) reference).getHibernateLazyInitializer();
+            if (initializer.isUninitialized()) {
+                return initializer;
+            }
+        }
+        return null;
+    }
+}
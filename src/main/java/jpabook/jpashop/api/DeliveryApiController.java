@@ -0,0 +1,111 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.DeliveryJobStatus;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.DeliveryStatusJob;
+import jpabook.jpashop.repository.DeliverySearch;
+import jpabook.jpashop.service.DeliveryService;
+import jpabook.jpashop.shard.Shards;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 배송 상태 변경 API
+ * 택배사 일일 manifest 처럼 많은 배송을 한 번에 처리할 때 사용한다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class DeliveryApiController {
+    private final DeliveryService deliveryService;
+    private final Shards shards;
+
+    /**
+     * 배송 id 목록의 상태를 즉시 변경
+     * 취소된 주문의 배송과, 이미 해당 상태인 배송은 건너뛴다.
+     * 샤딩을 켜면 배송 id 를 샤드별로 나눠서 샤드마다 따로 변경한다. 샤드 간에는 원자적이지 않다.
+     * @param request
+     * @return
+     */
+    @PutMapping("/api/deliveries/status")
+    public UpdateDeliveryStatusResponse updateStatus(@RequestBody @Valid UpdateDeliveryStatusRequest request) {
+        Map<Integer, List<Long>> byShard = request.getDeliveryIds().stream()
+                .collect(Collectors.groupingBy(shards::shardForOrder, TreeMap::new, Collectors.toList()));
+        int updated = 0;
+        for (Map.Entry<Integer, List<Long>> entry : byShard.entrySet()) {
+            updated += shards.on(entry.getKey(), () -> deliveryService.updateStatus(entry.getValue(), request.getStatus()));
+        }
+        return new UpdateDeliveryStatusResponse(request.getDeliveryIds().size(), updated);
+    }
+
+    /**
+     * 조건(주문 일시 범위) 에 맞는 배송의 상태 변경 작업을 등록
+     * 예) /api/delivery-jobs?targetStatus=COMP&orderDateTo=2021-01-01T00:00:00
+     * @param search
+     * @return
+     */
+    @PostMapping("/api/delivery-jobs")
+    public DeliveryJobDto submitJob(DeliverySearch search) {
+        Long jobId = deliveryService.submitJob(search);
+        return new DeliveryJobDto(deliveryService.findJob(jobId));
+    }
+
+    /**
+     * 작업의 진행 상황과 처리량 조회
+     * @param jobId
+     * @return
+     */
+    @GetMapping("/api/delivery-jobs/{jobId}")
+    public DeliveryJobDto job(@PathVariable("jobId") Long jobId) {
+        return new DeliveryJobDto(deliveryService.findJob(jobId));
+    }
+
+    @Data
+    static class UpdateDeliveryStatusRequest {
+        @NotEmpty
+        private List<Long> deliveryIds;
+        @NotNull
+        private DeliveryStatus status;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class UpdateDeliveryStatusResponse {
+        private int requested;
+        private int updated;
+    }
+
+    @Data
+    static class DeliveryJobDto {
+        private Long jobId;
+        private DeliveryJobStatus status;
+        private DeliveryStatus targetStatus;
+        private Long lastDeliveryId;
+        private long processedCount;
+        private int chunkCount;
+        private long elapsedMillis;
+        private double throughputPerSecond;
+        private String failureMessage;
+
+        public DeliveryJobDto(DeliveryStatusJob job) {
+            jobId = job.getId();
+            status = job.getStatus();
+            targetStatus = job.getTargetStatus();
+            lastDeliveryId = job.getLastDeliveryId();
+            processedCount = job.getProcessedCount();
+            chunkCount = job.getChunkCount();
+            elapsedMillis = job.getElapsedMillis();
+            throughputPerSecond = job.getThroughputPerSecond();
+            failureMessage = job.getFailureMessage();
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package jpabook.jpashop.api;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.MemberOrderHistoryService;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,6 +19,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MemberApiController {
     private final MemberService memberService;
+    private final MemberOrderHistoryService memberOrderHistoryService;
 
     /**
      *  회원 등록 API
@@ -99,6 +103,27 @@ public class MemberApiController {
         return new Result(collect.size(), collect);
     }
 
+    /**
+     * 회원별 주문 내역 API (keyset 페이징)
+     * 첫 페이지: /api/members/1/orders?limit=20
+     * 다음 페이지: 응답의 nextCursorDate, nextCursorId 를 cursorDate, cursorId 로 넘긴다.
+     * limit 은 1 ~ 100 으로 맞춘다. cursorDate, cursorId 중 하나만 넘기면 400
+     * @param id
+     * @param cursorDate
+     * @param cursorId
+     * @param limit
+     * @return
+     */
+    @GetMapping("/api/members/{id}/orders")
+    public MemberOrderHistoryService.MemberOrderPage memberOrders(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "cursorDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorDate,
+            @RequestParam(value = "cursorId", required = false) Long cursorId,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return memberOrderHistoryService.findOrders(id, cursorDate, cursorId, limit);
+    }
+
     /**
      * 회원 조회 API response DTO
      * @param <T>
@@ -4,8 +4,10 @@ import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderFetchPlan;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.order.query.OrderField;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
 import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
@@ -29,6 +31,7 @@ public class OrderApiController {
 
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final DataLoader dataLoader;
 
     @GetMapping("/api/v1/orders")
     public List<Order> ordersV1() {
@@ -69,16 +72,16 @@ public class OrderApiController {
      * 즉, 총 2 * ( 1 + 1 + 2 + 1 ) = 10번 의 쿼리가 나가게 된다. (정답인지는 모름)
      * <p>
      * 이를 fetch join 을 통해 다음에 해결할 것.
+     * <p>
+     * -> DataLoader 로 member, delivery, orderItems, item 을 타입별로 모아서 읽으므로
+     * 주문 수와 상관없이 order 1번 + member, delivery, orderItems 1번씩 + item 1번 = 5번 나간다.
      *
      * @return
      */
     @GetMapping("/api/v2/orders")
     public List<OrderDto> ordersV2() {
         List<Order> orders = orderRepository.findAllByString(new OrderSearch());
-        List<OrderDto> result = orders.stream()
-                .map(o -> new OrderDto(o))
-                .collect(Collectors.toList());
-        return result;
+        return dataLoader.map(orders, OrderDto::new);
     }
 
     @Data
@@ -101,6 +104,20 @@ public class OrderApiController {
                     .map(orderItem -> new OrderItemDto(orderItem))
                     .collect(toList());
         }
+
+        /**
+         * 연관관계를 DataLoader 로 모아서 읽는다. dispatch 가 끝나야 name, address, orderItems 가 채워진다.
+         */
+        public OrderDto(Order order, DataLoader loader) {
+            orderId = order.getId();
+            orderDate = order.getOrderDate();
+            orderStatus = order.getStatus();
+            loader.load(order.getMember(), member -> name = member.getName());
+            loader.load(order.getDelivery(), delivery -> address = delivery.getAddress());
+            loader.loadMany(order, "orderItems", Order::getOrderItems, items -> orderItems = items.stream()
+                    .map(orderItem -> new OrderItemDto(orderItem, loader))
+                    .collect(toList()));
+        }
     }
 
     @Data
@@ -115,6 +132,12 @@ public class OrderApiController {
             orderPrice = orderItem.getOrderPrice();
             count = orderItem.getCount();
         }
+
+        public OrderItemDto(OrderItem orderItem, DataLoader loader) {
+            orderPrice = orderItem.getOrderPrice();
+            count = orderItem.getCount();
+            loader.load(orderItem.getItem(), item -> itemName = item.getName());
+        }
     }
 
     @GetMapping("/api/v3/orders")
@@ -132,10 +155,7 @@ public class OrderApiController {
             @RequestParam(value = "limit", defaultValue = "100") int limit) {
 
         List<Order> orders = orderRepository.findAllWithMemberDelivery(offset, limit);
-        List<OrderDto> result = orders.stream()
-                .map(o -> new OrderDto(o))
-                .collect(Collectors.toList());
-        return result;
+        return dataLoader.map(orders, OrderDto::new);
     }
 
     @GetMapping("/api/v4/orders")
@@ -144,9 +164,18 @@ public class OrderApiController {
 
     }
 
+    /**
+     * fields 를 주면 요청한 필드만 조회한다. (sparse fieldset)
+     * 예) /api/v5/orders?fields=orderId,orderStatus,orderDate
+     *  -> member, delivery 를 join 하지 않고, orderItems 조회 쿼리도 실행하지 않는다.
+     * 사용할 수 있는 필드: orderId, name, orderDate, orderStatus, address, orderItems
+     */
     @GetMapping("/api/v5/orders")
-    public List<OrderQueryDto> ordersV5() {
-        return orderQueryRepository.findAllByDto_optimization();
+    public List<?> ordersV5(@RequestParam(value = "fields", required = false) String fields) {
+        if (fields == null) {
+            return orderQueryRepository.findAllByDto_optimization();
+        }
+        return orderQueryRepository.findAllByDto_fields(OrderField.parse(fields));
     }
 
     @GetMapping("/api/v6/orders")
@@ -162,5 +191,21 @@ public class OrderApiController {
 //                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
 //                .collect(toList());
     }
-}
 
+    /**
+     * fetch plan 을 지정해서 조회하는 주문 API
+     * 기본값 FULL 은 OrderDto 에 필요한 member, delivery, orderItems.item 을 모두 가져오며,
+     * 컬렉션을 포함하더라도 id 를 먼저 페이징하므로 메모리 페이징이 일어나지 않는다.
+     * plan 에서 빠진 연관관계는 DataLoader 가 타입별로 한 번에 읽는다.
+     * 예) /api/v7/orders?plan=FULL&orderStatus=ORDER&offset=0&limit=20
+     */
+    @GetMapping("/api/v7/orders")
+    public List<OrderDto> ordersV7(
+            OrderSearch orderSearch,
+            @RequestParam(value = "plan", defaultValue = "FULL") OrderFetchPlan plan,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        List<Order> orders = orderRepository.findAll(orderSearch, plan, offset, limit);
+        return dataLoader.map(orders, OrderDto::new);
+    }
+}
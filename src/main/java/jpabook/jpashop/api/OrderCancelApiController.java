@@ -0,0 +1,69 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.service.OrderService.BulkCancelResult;
+import jpabook.jpashop.shard.Shards;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 일괄 취소 API (운영용)
+ * 실패한 배치의 주문처럼 많은 주문을 한 번에 취소할 때 사용한다.
+ * 샤딩을 켜면 주문 id 를 샤드별로 나눠서 샤드마다 따로 취소한다. 샤드 간에는 원자적이지 않다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderCancelApiController {
+    private final OrderService orderService;
+    private final Shards shards;
+
+    /**
+     * 이미 취소된 주문, 배송 완료된 주문, 없는 주문은 건너뛰고 skipped 로 센다.
+     * @param request
+     * @return
+     */
+    @PostMapping("/api/orders/cancel")
+    public BulkCancelResponse cancelOrders(@RequestBody @Valid BulkCancelRequest request) {
+        Map<Integer, List<Long>> byShard = request.getOrderIds().stream()
+                .distinct()
+                .collect(Collectors.groupingBy(shards::shardForOrder, TreeMap::new, Collectors.toList()));
+        BulkCancelResult result = new BulkCancelResult(0, 0, 0, 0, 0);
+        for (Map.Entry<Integer, List<Long>> entry : byShard.entrySet()) {
+            result = result.plus(shards.on(entry.getKey(), () -> orderService.cancelOrders(entry.getValue())));
+        }
+        return new BulkCancelResponse(result);
+    }
+
+    @Data
+    static class BulkCancelRequest {
+        @NotEmpty
+        private List<Long> orderIds;
+    }
+
+    @Data
+    static class BulkCancelResponse {
+        private int requested;
+        private int cancelled;
+        private int skipped;
+        private int restockedItems;
+        private int restockedUnits;
+
+        public BulkCancelResponse(BulkCancelResult result) {
+            requested = result.getRequested();
+            cancelled = result.getCancelled();
+            skipped = result.getSkipped();
+            restockedItems = result.getRestockedItems();
+            restockedUnits = result.getRestockedUnits();
+        }
+    }
+}
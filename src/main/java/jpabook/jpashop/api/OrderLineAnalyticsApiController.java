@@ -0,0 +1,115 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.analytics.OrderLineColumns;
+import jpabook.jpashop.analytics.OrderLineSnapshotService;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 라인 컬럼 스냅샷 위에서 동작하는 ad-hoc 분석 API
+ * DB 를 조회하지 않으며, 결과는 마지막 스냅샷 시점 기준이다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderLineAnalyticsApiController {
+    private final OrderLineSnapshotService orderLineSnapshotService;
+
+    /**
+     * 스냅샷 상태와 메모리 사용량
+     */
+    @GetMapping("/api/analytics/snapshot")
+    public SnapshotDto snapshot() {
+        OrderLineSnapshotService.Snapshot snapshot = orderLineSnapshotService.getSnapshot();
+        return new SnapshotDto(snapshot.getColumns().size(), snapshot.getColumns().memoryBytes(),
+                snapshot.getBytesPerMillionLines(), snapshot.getRefreshPeakBytes(),
+                orderLineSnapshotService.getMaxRefreshBytes(), orderLineSnapshotService.getLastRejectedAt(),
+                snapshot.getLoadedAt(), snapshot.getLoadMillis());
+    }
+
+    /**
+     * 스냅샷을 즉시 다시 만든다. 메모리 제한을 넘으면 이전 스냅샷이 유지되고 lastRejectedAt 이 바뀐다.
+     */
+    @PostMapping("/api/analytics/snapshot")
+    public SnapshotDto refresh() {
+        orderLineSnapshotService.refresh();
+        return snapshot();
+    }
+
+    /**
+     * 기간 [from, to] 의 주문 수, 수량, 매출
+     * 예) /api/analytics/snapshot/summary?from=2021-01-01&to=2021-01-31&status=ORDER
+     */
+    @GetMapping("/api/analytics/snapshot/summary")
+    public SummaryDto summary(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "status", required = false) OrderStatus status) {
+        OrderLineColumns columns = orderLineSnapshotService.getSnapshot().getColumns();
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        return new SummaryDto(
+                columns.countOrders(fromDay, toDay, status),
+                columns.sumUnits(fromDay, toDay, status),
+                columns.sumRevenue(fromDay, toDay, status));
+    }
+
+    /**
+     * 기간 [from, to] 의 상품별 매출 상위 limit 개
+     */
+    @GetMapping("/api/analytics/snapshot/items")
+    public List<ItemRevenueDto> items(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "status", required = false) OrderStatus status,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        Map<Long, long[]> byItem = orderLineSnapshotService.getSnapshot().getColumns()
+                .sumByItem((int) from.toEpochDay(), (int) to.toEpochDay(), status);
+        return byItem.entrySet().stream()
+                .map(e -> new ItemRevenueDto(e.getKey(), e.getValue()[0], e.getValue()[1]))
+                .sorted((a, b) -> Long.compare(b.getRevenue(), a.getRevenue()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class SnapshotDto {
+        private int lines;
+        private long memoryBytes;
+        private long bytesPerMillionLines;
+        private long refreshPeakBytes;
+        private long maxRefreshBytes;
+        private LocalDateTime lastRejectedAt;
+        private LocalDateTime loadedAt;
+        private long loadMillis;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class SummaryDto {
+        private long orders;
+        private long units;
+        private long revenue;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class ItemRevenueDto {
+        private Long itemId;
+        private long units;
+        private long revenue;
+    }
+}
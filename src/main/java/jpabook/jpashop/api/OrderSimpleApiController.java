@@ -6,6 +6,7 @@ import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.OrderSimpleQueryDto;
+import jpabook.jpashop.service.OrderArchiveService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +28,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderSimpleApiController {
     private final OrderRepository orderRepository;
+    private final OrderArchiveService orderArchiveService;
 
     /**
      * 첫 번째 문제
@@ -164,4 +166,16 @@ public class OrderSimpleApiController {
     public List<OrderSimpleQueryDto> ordersV4() {
         return orderRepository.findOrderDtos();
     }
+
+    /**
+     * 검색 조건(회원명, 주문상태, 주문 일시 범위) 으로 주문을 조회하는 API
+     * 범위가 보관 기간 안쪽이면 운영 테이블만 조회하고, 그보다 오래된 범위를 포함하면 아카이브 테이블도 함께 조회한다.
+     * 예) /api/v5/simple-orders?orderDateFrom=2020-01-01T00:00:00&orderDateTo=2021-01-01T00:00:00
+     * @param orderSearch
+     * @return
+     */
+    @GetMapping("api/v5/simple-orders")
+    public List<OrderSimpleQueryDto> ordersV5(OrderSearch orderSearch) {
+        return orderArchiveService.findOrderDtos(orderSearch);
+    }
 }
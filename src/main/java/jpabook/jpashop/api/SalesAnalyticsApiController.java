@@ -0,0 +1,82 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.job.SalesRollupFlushJob;
+import jpabook.jpashop.repository.sales.DailySalesDto;
+import jpabook.jpashop.repository.sales.ItemSalesDto;
+import jpabook.jpashop.service.SalesRollupService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 판매 분석 API
+ * order_item / orders 를 스캔하지 않고, sales_rollup 집계 테이블만 조회한다. (rebuild 제외)
+ * 기간은 [from, to] 로 양 끝 날짜를 포함한다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class SalesAnalyticsApiController {
+    private final SalesRollupService salesRollupService;
+    private final SalesRollupFlushJob salesRollupFlushJob;
+
+    /**
+     * 기간 매출 합계와 일자별 매출
+     * 예) /api/analytics/revenue?from=2021-01-01&to=2021-01-31
+     */
+    @GetMapping("/api/analytics/revenue")
+    public RevenueResult revenue(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        List<DailySalesDto> daily = salesRollupService.findDailySales(from, to);
+        long units = daily.stream().mapToLong(DailySalesDto::getUnits).sum();
+        long revenue = daily.stream().mapToLong(DailySalesDto::getRevenue).sum();
+        return new RevenueResult(units, revenue, daily);
+    }
+
+    /**
+     * 기간 판매 수량 상위 상품
+     * 예) /api/analytics/top-sellers?from=2021-01-01&to=2021-01-31&limit=10
+     */
+    @GetMapping("/api/analytics/top-sellers")
+    public List<ItemSalesDto> topSellers(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return salesRollupService.findTopSellers(from, to, limit);
+    }
+
+    /**
+     * 기간 집계를 주문상품에서 다시 만든다. (집계가 어긋났을 때)
+     * 예) POST /api/analytics/rollup/rebuild?from=2021-01-01&to=2021-01-31
+     */
+    @PostMapping("/api/analytics/rollup/rebuild")
+    public RebuildResult rebuild(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return new RebuildResult(from, to, salesRollupFlushJob.rebuild(from, to));
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class RebuildResult {
+        private LocalDate from;
+        private LocalDate to;
+        private int rows;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class RevenueResult {
+        private long units;
+        private long revenue;
+        private List<DailySalesDto> daily;
+    }
+}
@@ -1,11 +1,8 @@
 package jpabook.jpashop.controller;
 
-import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.OrderSearch;
-import jpabook.jpashop.service.ItemService;
-import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderIdempotencyService;
 import jpabook.jpashop.service.OrderService;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -20,28 +17,17 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService orderService;
-    private final MemberService memberService;
-    private final ItemService itemService;
+    private final OrderIdempotencyService orderIdempotencyService;
 
     /**
      * 주문 버튼을 클릭했을 때, /order 요청을 받아 처리하는 메서드.
-     * 회원, 상품과는 다르게, 다른 기능(회원, 상품)의 serivce 를 호출하여 해당 member, items 를 들고있어야 한다.
-     * 이후, model 에 회원, 상품 정보를 addAttribute 하고 화면 이동
+     * 회원, 상품 목록은 화면에서 자동완성 API (/api/members/autocomplete, /api/items/autocomplete) 로 찾는다.
+     * 전체 회원, 상품을 model 에 담으면 데이터가 많을 때 화면을 그릴 수 없다.
      * order/orderForm.html 화면으로 이동
-     * @param model
      * @return order/orderForm.html
      */
     @GetMapping("/order")
-    public String createForm(Model model) {
-        // members, items 는 각각 모든 데이터를 갖고 있는다.
-        List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
-
-        // models, items 를 바탕으로 화면에 드롭박스에 값을 채운다.
-        model.addAttribute("members", members);
-        model.addAttribute("items", items);
-
-        // 값을 채운 화면을 리턴한다.
+    public String createForm() {
         return "order/orderForm";
     }
 
@@ -50,14 +36,20 @@ public class OrderController {
      * @param memberId
      * @param itemId
      * @param count
+     * @param idempotencyKey 재전송된 요청이면 주문을 새로 만들지 않는다.
      * @return
      */
     @PostMapping("/order")
     // 핵심 비즈니스 로직에 대한 식별자만 넘겨주고, 로직 처리.
     public String order(@RequestParam("memberId") Long memberId,
                         @RequestParam("itemId") Long itemId,
-                        @RequestParam("count") int count){
-        orderService.order(memberId, itemId, count);
+                        @RequestParam("count") int count,
+                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        if (idempotencyKey == null) {
+            orderService.order(memberId, itemId, count);
+        } else {
+            orderIdempotencyService.order(idempotencyKey, memberId, itemId, count);
+        }
         return "redirect:/orders";
 
     }
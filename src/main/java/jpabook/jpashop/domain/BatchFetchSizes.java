@@ -0,0 +1,16 @@
+package jpabook.jpashop.domain;
+
+/**
+ * 연관관계 별 배치 페치 크기
+ *
+ * 전역 설정(hibernate.default_batch_fetch_size) 보다 우선한다.
+ * 값을 바꿀 때는 /actuator/batchfetch 의 제안값을 참고한다.
+ */
+public final class BatchFetchSizes {
+    public static final int ORDER_ITEMS = 100;     // Order.orderItems
+    public static final int ITEM = 100;            // OrderItem.item (Item 프록시)
+    public static final int CATEGORY_ITEMS = 100;  // Category.items
+
+    private BatchFetchSizes() {
+    }
+}
@@ -0,0 +1,5 @@
+package jpabook.jpashop.domain;
+
+public enum DeliveryJobStatus {
+    PENDING, RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,98 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 배송 상태 일괄 변경 작업
+ * 청크를 처리할 때마다 마지막으로 처리한 delivery id 와 처리량을 같은 트랜잭션에서 기록한다.
+ * 따라서 중간에 애플리케이션이 내려가도, 다시 올라왔을 때 lastDeliveryId 다음부터 이어서 처리할 수 있다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class DeliveryStatusJob {
+    static final int FAILURE_MESSAGE_LENGTH = 1000;
+
+    @Id @GeneratedValue
+    @Column(name = "delivery_status_job_id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private DeliveryStatus targetStatus; // 변경할 배송 상태
+
+    // 대상 주문 일시 범위, [orderDateFrom, orderDateTo)
+    private LocalDateTime orderDateFrom;
+    private LocalDateTime orderDateTo;
+
+    @Enumerated(EnumType.STRING)
+    private DeliveryJobStatus status; // PENDING, RUNNING, COMPLETED, FAILED
+
+    private Long lastDeliveryId; // 처리 완료된 마지막 delivery id, 재시작 지점
+    private long processedCount; // 변경된 배송 건수
+    private int chunkCount; // 처리한 청크 수
+    private long elapsedMillis; // 청크 처리에 걸린 누적 시간
+
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    @Column(length = FAILURE_MESSAGE_LENGTH)
+    private String failureMessage; // 길면 앞부분만 남긴다.
+
+    //== 생성 메서드 ==//
+    public static DeliveryStatusJob create(DeliveryStatus targetStatus, LocalDateTime orderDateFrom, LocalDateTime orderDateTo) {
+        DeliveryStatusJob job = new DeliveryStatusJob();
+        job.targetStatus = targetStatus;
+        job.orderDateFrom = orderDateFrom;
+        job.orderDateTo = orderDateTo;
+        job.status = DeliveryJobStatus.PENDING;
+        job.lastDeliveryId = 0L;
+        job.createdAt = LocalDateTime.now();
+        return job;
+    }
+
+    //== 비즈니스 로직 ==//
+
+    /**
+     * 청크 하나의 처리 결과를 기록
+     */
+    public void recordChunk(Long lastDeliveryId, int updated, long millis) {
+        this.status = DeliveryJobStatus.RUNNING;
+        this.lastDeliveryId = lastDeliveryId;
+        this.processedCount += updated;
+        this.chunkCount++;
+        this.elapsedMillis += millis;
+    }
+
+    public void complete() {
+        this.status = DeliveryJobStatus.COMPLETED;
+        this.finishedAt = LocalDateTime.now();
+    }
+
+    public void fail(String message) {
+        this.status = DeliveryJobStatus.FAILED;
+        this.failureMessage = message != null && message.length() > FAILURE_MESSAGE_LENGTH
+                ? message.substring(0, FAILURE_MESSAGE_LENGTH)
+                : message;
+        this.finishedAt = LocalDateTime.now();
+    }
+
+    public boolean isFinished() {
+        return status == DeliveryJobStatus.COMPLETED || status == DeliveryJobStatus.FAILED;
+    }
+
+    // == 조회 로직 == //
+
+    /**
+     * 초당 처리 건수
+     */
+    public double getThroughputPerSecond() {
+        if (elapsedMillis == 0) {
+            return 0;
+        }
+        return processedCount * 1000.0 / elapsedMillis;
+    }
+}
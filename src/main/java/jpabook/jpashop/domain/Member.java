@@ -1,6 +1,7 @@
 package jpabook.jpashop.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import jpabook.jpashop.service.NameIndexListener;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -10,6 +11,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// 회원 이름 검색, 중복 회원 검증
+@Table(indexes = @Index(name = "idx_member_name", columnList = "name"))
+@EntityListeners(NameIndexListener.class)
 @Getter
 @Setter
 public class Member {
@@ -4,6 +4,7 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -13,11 +14,42 @@ import java.util.List;
 import static javax.persistence.FetchType.LAZY;
 
 @Entity
-@Table(name="orders")
+@Table(name="orders", indexes = {
+        // 상태별 검색 (status = ? and order_date 범위), 일괄 취소 대상 조회
+        @Index(name = "idx_orders_status_order_date", columnList = "status, order_date"),
+        // 기간 검색, 최신순 정렬
+        @Index(name = "idx_orders_order_date", columnList = "order_date, order_id"),
+        // 회원별 주문 내역 keyset 페이징 (member_id = ? order by order_date desc, order_id desc)
+        @Index(name = "idx_orders_member_order_date", columnList = "member_id, order_date, order_id"),
+        // 금액순 정렬, 금액/수량 범위 검색
+        @Index(name = "idx_orders_total_price", columnList = "total_price, order_id"),
+        @Index(name = "idx_orders_item_count", columnList = "item_count")
+})
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Order.GRAPH_SUMMARY),
+        @NamedEntityGraph(name = Order.GRAPH_WITH_MEMBER, attributeNodes = @NamedAttributeNode("member")),
+        @NamedEntityGraph(name = Order.GRAPH_WITH_DELIVERY, attributeNodes = @NamedAttributeNode("delivery")),
+        @NamedEntityGraph(name = Order.GRAPH_WITH_ITEMS,
+                attributeNodes = @NamedAttributeNode(value = "orderItems", subgraph = "orderItems"),
+                subgraphs = @NamedSubgraph(name = "orderItems", attributeNodes = @NamedAttributeNode("item"))),
+        @NamedEntityGraph(name = Order.GRAPH_FULL,
+                attributeNodes = {
+                        @NamedAttributeNode("member"),
+                        @NamedAttributeNode("delivery"),
+                        @NamedAttributeNode(value = "orderItems", subgraph = "orderItems")},
+                subgraphs = @NamedSubgraph(name = "orderItems", attributeNodes = @NamedAttributeNode("item")))
+})
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
+    // == 엔티티 그래프 이름, OrderFetchPlan 에서 사용 == //
+    public static final String GRAPH_SUMMARY = "Order.summary";
+    public static final String GRAPH_WITH_MEMBER = "Order.withMember";
+    public static final String GRAPH_WITH_DELIVERY = "Order.withDelivery";
+    public static final String GRAPH_WITH_ITEMS = "Order.withItems";
+    public static final String GRAPH_FULL = "Order.full";
+
     @Id
     @GeneratedValue
     @Column(name="order_id")
@@ -27,6 +59,7 @@ public class Order {
     @JoinColumn(name="member_id")
     private Member member;
 
+    @BatchSize(size = BatchFetchSizes.ORDER_ITEMS)
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
     private List<OrderItem> orderItems = new ArrayList<>();
 
@@ -38,6 +71,16 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; // 주문상태, [ORDER, CANCEL]
 
+    // 주문 금액, 수량 합계. 주문상품을 다 읽지 않고 SQL 에서 정렬/검색할 수 있도록 저장해둔다.
+    // addOrderItem 에서만 바뀐다.
+    @Setter(AccessLevel.NONE)
+    @Column(name = "total_price")
+    private int totalPrice;
+
+    @Setter(AccessLevel.NONE)
+    @Column(name = "item_count")
+    private int itemCount;
+
     // == 연관관계 메서드 == //
     public void setMember(Member member) {
         this.member = member;
@@ -47,6 +90,8 @@ public class Order {
     public void addOrderItem(OrderItem orderItem) {
         orderItems.add(orderItem);
         orderItem.setOrder(this);
+        totalPrice += orderItem.getTotalPrice();
+        itemCount += orderItem.getCount();
     }
 
     public void setDelivery(Delivery delivery) {
@@ -77,37 +122,44 @@ public class Order {
      */
 
     public void cancel() {
+        markCancelled();
+
+        // OrderItem 의 각 Item 들의 상태 또한 취소로 바꿈
+        for (OrderItem orderItem : orderItems) {
+            orderItem.cancel();
+        }
+    }
+
+    /**
+     * 재고는 원복하지 않고 주문만 취소 상태로 바꾼다.
+     * 재고를 write-behind 카운터(StockCounters) 로 관리할 때, 호출한 쪽에서 카운터로 원복한다.
+     */
+    public void cancelWithoutRestock() {
+        markCancelled();
+    }
+
+    private void markCancelled() {
         // 해당 주문이 배송중 상태인 경우, 취소 불가함을 알림.
         if (delivery.getStatus() == DeliveryStatus.COMP) {
             throw new IllegalStateException("이미 배송 완료된 상품은 취소가 불가능합니다");
         }
+        // 이미 취소된 주문을 다시 취소하면 재고가 두 번 원복된다.
+        if (status == OrderStatus.CANCEL) {
+            throw new IllegalStateException("이미 취소된 주문입니다");
+        }
 
         // 그렇지 않은 경우, OrderStatus 를 Cancel로 함
+        // totalPrice, itemCount 는 취소된 주문의 금액으로 그대로 둔다. 취소 여부는 status 로 구분한다.
         this.setStatus(OrderStatus.CANCEL);
-
-        // OrderItem 의 각 Item 들의 상태 또한 취소로 바꿈
-        for (OrderItem orderItem : orderItems) {
-            orderItem.cancel();
-        }
     }
 
     // == 조회 로직 == //
 
     /**
      * 전체 주문 가격 조회
+     * 주문상품을 순회하지 않고, addOrderItem 에서 더해둔 값을 돌려준다.
      */
     public int getTotalPrice() {
-        return orderItems.stream()
-                .mapToInt(OrderItem::getTotalPrice)
-                .sum();
-
-        // 아래 코드를 한줄로 줄인것이 위 코드
-
-        //int totalPrice = 0;
-
-        //for (OrderItem orderItem : orderItems) {
-        //    totalPrice += orderItem.getTotalPrice();
-        //}
-        //return totalPrice;
+        return totalPrice;
     }
 }
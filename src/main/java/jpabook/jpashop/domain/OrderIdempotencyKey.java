@@ -0,0 +1,46 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 요청의 Idempotency-Key 와 그 결과(주문 id)
+ * 키가 PK 라서, 같은 키로 동시에 들어온 요청 중 하나만 주문 트랜잭션을 커밋할 수 있다.
+ */
+@Entity
+@Table(name = "order_idempotency_key", indexes = @Index(name = "idx_order_idempotency_key_created_at", columnList = "created_at"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderIdempotencyKey {
+    public static final int MAX_KEY_LENGTH = 64;
+
+    @Id
+    @Column(name = "idempotency_key", length = MAX_KEY_LENGTH)
+    private String key;
+
+    private Long orderId;
+
+    @Column(length = 64)
+    private String fingerprint; // 요청 내용(회원, 상품, 수량), 같은 키로 다른 요청이 오는지 확인하는 용도
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    //== 생성 메서드 ==//
+    public static OrderIdempotencyKey create(String key, String fingerprint) {
+        OrderIdempotencyKey idempotencyKey = new OrderIdempotencyKey();
+        idempotencyKey.key = key;
+        idempotencyKey.fingerprint = fingerprint;
+        idempotencyKey.createdAt = LocalDateTime.now();
+        return idempotencyKey;
+    }
+
+    //== 비즈니스 로직 ==//
+    public void complete(Long orderId) {
+        this.orderId = orderId;
+    }
+}
@@ -11,6 +11,8 @@ import javax.persistence.*;
 import static javax.persistence.FetchType.LAZY;
 
 @Entity
+// 주문별 주문상품 조회 (order_id = ? / order_id in (...))
+@Table(indexes = @Index(name = "idx_order_item_order", columnList = "order_id"))
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -44,6 +46,17 @@ public class OrderItem {
         return orderItem;
     }
 
+    /**
+     * 재고를 이미 차감한 주문상품 생성 (write-behind 재고), Item 엔티티의 재고는 건드리지 않는다.
+     */
+    public static OrderItem createReservedOrderItem(Item item, int orderPrice, int count) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setItem(item);
+        orderItem.setOrderPrice(orderPrice);
+        orderItem.setCount(count);
+        return orderItem;
+    }
+
     // == 비즈니스 로직 == //
     public void cancel() {
         getItem().addStock(count); // 재고 수량 원복
@@ -0,0 +1,65 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 이벤트 outbox
+ * 주문/취소와 같은 트랜잭션에서 저장되므로, 커밋된 주문에는 반드시 이벤트가 있고 롤백된 주문에는 없다.
+ * 외부 소비자가 orders 테이블을 폴링하지 않도록, 소비자에게 필요한 값만 담는다.
+ * 전달이 끝난 row 는 OrderOutboxRelayJob 이 삭제한다.
+ * jpashop.outbox.max-attempts 번 실패한 row 는 parked 로 바꿔서 (dead letter) 더 전달하지 않고 남겨둔다.
+ */
+@Entity
+@Table(name = "order_outbox", indexes = {
+        @Index(name = "idx_order_outbox_order", columnList = "order_id, parked"),
+        @Index(name = "idx_order_outbox_parked", columnList = "parked, event_id")
+})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderOutboxEvent {
+    @Id @GeneratedValue
+    @Column(name = "event_id")
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private OrderEventType type;
+
+    private int totalPrice;
+
+    private int itemCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    private int attempts; // 전달 실패 횟수
+
+    private boolean parked; // 전달을 멈춘 이벤트, 같은 주문의 뒤 이벤트도 같이 멈춘다.
+
+    //== 생성 메서드 ==//
+    public static OrderOutboxEvent create(OrderEventType type, Long orderId, Long memberId, int totalPrice, int itemCount) {
+        OrderOutboxEvent event = new OrderOutboxEvent();
+        event.type = type;
+        event.orderId = orderId;
+        event.memberId = memberId;
+        event.totalPrice = totalPrice;
+        event.itemCount = itemCount;
+        event.createdAt = LocalDateTime.now();
+        return event;
+    }
+
+    public static OrderOutboxEvent of(OrderEventType type, Order order) {
+        return create(type, order.getId(), order.getMember().getId(), order.getTotalPrice(), order.getItemCount());
+    }
+}
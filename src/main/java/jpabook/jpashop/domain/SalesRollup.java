@@ -0,0 +1,29 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+
+/**
+ * 상품별, 주문 일자별 판매 집계
+ * order_item 과 orders 를 스캔하지 않고 기간 매출을 구하기 위한 테이블로,
+ * SalesRollupService 가 주문/취소 시 쌓인 증감분(delta) 을 upsert 해서 유지한다.
+ *
+ * units, revenue 는 취소분을 뺀 순 판매량/매출이고, 취소된 수량은 cancelledUnits 에 따로 쌓는다.
+ * 취소는 취소한 날이 아니라 원래 주문 일자에 반영한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesRollup {
+
+    @EmbeddedId
+    private SalesRollupId id;
+
+    private long units; // 판매 수량 (취소분 제외)
+    private long revenue; // 매출 (취소분 제외)
+    private long cancelledUnits; // 취소 수량
+}
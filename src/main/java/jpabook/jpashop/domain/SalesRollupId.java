@@ -0,0 +1,28 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Getter
+@EqualsAndHashCode
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesRollupId implements Serializable {
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private LocalDate salesDate; // 주문 일자
+
+    public SalesRollupId(Long itemId, LocalDate salesDate) {
+        this.itemId = itemId;
+        this.salesDate = salesDate;
+    }
+}
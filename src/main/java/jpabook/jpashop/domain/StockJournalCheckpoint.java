@@ -0,0 +1,42 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+/**
+ * item 테이블에 반영된 마지막 재고 journal 세그먼트 번호 (row 는 하나)
+ * 재고 반영과 같은 트랜잭션에서 갱신되므로, 세그먼트 파일을 지우기 전에 죽어도 재기동 시 같은 세그먼트를 두 번 반영하지 않는다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class StockJournalCheckpoint {
+    public static final Long ID = 1L;
+
+    @Id
+    @Column(name = "checkpoint_id")
+    private Long id;
+
+    private long lastSegment;
+
+    private LocalDateTime updatedAt;
+
+    public static StockJournalCheckpoint create() {
+        StockJournalCheckpoint checkpoint = new StockJournalCheckpoint();
+        checkpoint.id = ID;
+        checkpoint.lastSegment = 0;
+        checkpoint.updatedAt = LocalDateTime.now();
+        return checkpoint;
+    }
+
+    public void advance(long segment) {
+        this.lastSegment = Math.max(lastSegment, segment);
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,51 @@
+package jpabook.jpashop.domain.archive;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.persistence.FetchType.LAZY;
+
+/**
+ * 보관 기간이 지난 주문을 옮겨두는 아카이브 테이블
+ * 컬럼 구성은 orders 테이블과 같고, 식별자는 원래 주문의 id 를 그대로 사용한다.
+ * 데이터는 OrderArchiveRepository 의 bulk insert 로만 들어오므로 읽기 전용으로 취급한다.
+ */
+@Entity
+@Table(name = "orders_archive")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderArchive {
+    @Id
+    @Column(name = "order_id")
+    private Long id;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "member_id")
+    private Member member;
+
+    @OneToMany(mappedBy = "order")
+    private List<OrderItemArchive> orderItems = new ArrayList<>();
+
+    @OneToOne(fetch = LAZY)
+    @JoinColumn(name = "delivery_id")
+    private DeliveryArchive delivery;
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Column(name = "total_price")
+    private int totalPrice;
+
+    @Column(name = "item_count")
+    private int itemCount;
+}
@@ -0,0 +1,34 @@
+package jpabook.jpashop.domain.archive;
+
+import jpabook.jpashop.domain.item.Item;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+import static javax.persistence.FetchType.LAZY;
+
+/**
+ * order_item 의 아카이브 테이블
+ */
+@Entity
+@Table(name = "order_item_archive")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderItemArchive {
+    @Id
+    @Column(name = "order_item_id")
+    private Long id;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "order_id")
+    private OrderArchive order;
+
+    private int orderPrice; // 주문 가격
+    private int count; // 주문 수량
+}
@@ -1,15 +1,27 @@
 package jpabook.jpashop.domain.item;
 
+import jpabook.jpashop.domain.BatchFetchSizes;
 import jpabook.jpashop.domain.Category;
 import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.service.NameIndexListener;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+// OrderItem.item 같은 to-one 프록시의 배치 로딩 크기는 대상 엔티티에 지정해야 한다.
 @Entity
+@BatchSize(size = BatchFetchSizes.ITEM)
+// 상품 종류별 이름 검색
+@Table(indexes = @Index(name = "idx_item_dtype_name", columnList = "dtype, name"))
+@EntityListeners(NameIndexListener.class)
+// 바뀐 컬럼만 UPDATE 한다. write-behind 재고에서는 stock_quantity 를 StockCounters.flush 만 바꾸므로,
+// 상품 수정(이름, 가격) 이 트랜잭션 시작 때 읽은 재고로 flush 결과를 덮어쓰지 않게 한다.
+@DynamicUpdate
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
 @Getter @Setter
@@ -0,0 +1,25 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 이미 사용된 Idempotency-Key 로 다른 내용의 주문이 들어온 경우
+ */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyConflictException extends RuntimeException{
+    public IdempotencyKeyConflictException() {
+    }
+
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+
+    public IdempotencyKeyConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public IdempotencyKeyConflictException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,25 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * keyset 페이징 커서(cursorDate, cursorId) 중 하나만 넘어온 경우
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends IllegalArgumentException {
+    public InvalidCursorException() {
+    }
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidCursorException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,25 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Idempotency-Key 가 비어 있거나 너무 긴 경우
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidIdempotencyKeyException extends IllegalArgumentException {
+    public InvalidIdempotencyKeyException() {
+    }
+
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+
+    public InvalidIdempotencyKeyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidIdempotencyKeyException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,25 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 요청한 필드(fields=) 중 지원하지 않는 필드가 있는 경우
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownFieldException extends IllegalArgumentException {
+    public UnknownFieldException() {
+    }
+
+    public UnknownFieldException(String message) {
+        super(message);
+    }
+
+    public UnknownFieldException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public UnknownFieldException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,78 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.domain.DeliveryStatusJob;
+import jpabook.jpashop.service.DeliveryService;
+import jpabook.jpashop.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 등록된 배송 상태 변경 작업을 주기적으로 처리하는 백그라운드 작업
+ * 진행 상황이 청크마다 DB 에 기록되므로, 재시작 후에는 RUNNING 상태인 작업을 이어서 처리한다.
+ * 샤딩을 켜면 작업은 0 번 샤드에 있고, 청크는 모든 샤드의 대상 배송 중 id 가 작은 순서로 chunkSize 개를 모아서 샤드마다 UPDATE 한다.
+ * 이 경우 청크의 UPDATE 와 진행 상황 기록은 트랜잭션이 나뉜다. 중간에 죽으면 같은 청크를 다시 처리하고, 이미 바뀐 배송은 대상에서 빠진다.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DeliveryStatusJobRunner {
+    private final DeliveryService deliveryService;
+    private final Shards shards;
+
+    @Scheduled(fixedDelayString = "${jpashop.delivery.job-delay-ms:5000}")
+    public void run() {
+        for (DeliveryStatusJob job : deliveryService.findUnfinishedJobs()) {
+            Long jobId = job.getId();
+            try {
+                while (shards.isSharded() ? runShardedChunk(jobId) : deliveryService.runChunk(jobId)) {
+                    // 청크마다 트랜잭션이 나뉘어 커밋된다.
+                }
+                DeliveryStatusJob finished = deliveryService.findJob(jobId);
+                log.info("delivery status job {}: {} deliveries -> {} in {} chunks, {} rows/s",
+                        jobId, finished.getProcessedCount(), finished.getTargetStatus(),
+                        finished.getChunkCount(), String.format("%.1f", finished.getThroughputPerSecond()));
+            } catch (RuntimeException e) {
+                log.error("delivery status job {} failed", jobId, e);
+                try {
+                    deliveryService.failJob(jobId, e.getMessage());
+                } catch (RuntimeException failure) {
+                    // 실패 기록도 안 되면 RUNNING 으로 두고 다음 주기에 다시 시도한다. 나머지 작업은 계속 처리한다.
+                    log.error("delivery status job {}: could not record failure", jobId, failure);
+                }
+            }
+        }
+    }
+
+    private boolean runShardedChunk(Long jobId) {
+        DeliveryStatusJob job = deliveryService.findJob(jobId);
+        if (job.isFinished()) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Long> targetIds = shards.scatter(() -> deliveryService.findChunkTargetIds(job),
+                Comparator.naturalOrder(), deliveryService.getChunkSize());
+        if (targetIds.isEmpty()) {
+            deliveryService.completeJob(jobId);
+            return false;
+        }
+
+        // 배송 id 도 주문 id 와 같은 시퀀스 규칙으로 샤드를 알 수 있다.
+        Map<Integer, List<Long>> byShard = targetIds.stream()
+                .collect(Collectors.groupingBy(shards::shardForOrder, TreeMap::new, Collectors.toList()));
+        int updated = 0;
+        for (Map.Entry<Integer, List<Long>> entry : byShard.entrySet()) {
+            updated += shards.on(entry.getKey(), () -> deliveryService.updateStatus(entry.getValue(), job.getTargetStatus()));
+        }
+        deliveryService.recordChunk(jobId, targetIds.get(targetIds.size() - 1), updated, System.currentTimeMillis() - start);
+        return true;
+    }
+}
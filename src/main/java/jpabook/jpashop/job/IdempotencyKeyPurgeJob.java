@@ -0,0 +1,27 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.service.OrderIdempotencyService;
+import jpabook.jpashop.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 보관 기간이 지난 Idempotency-Key 를 주기적으로 삭제하는 작업, 샤딩을 켜면 샤드마다 삭제한다.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class IdempotencyKeyPurgeJob {
+    private final OrderIdempotencyService orderIdempotencyService;
+    private final Shards shards;
+
+    @Scheduled(fixedDelayString = "${jpashop.idempotency.purge-delay-ms:3600000}")
+    public void purge() {
+        int deleted = shards.sumOverShards(orderIdempotencyService::purgeExpired);
+        if (deleted > 0) {
+            log.info("purged {} idempotency keys", deleted);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.service.OrderArchiveService;
+import jpabook.jpashop.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 주기적으로 오래된 주문을 아카이브 테이블로 옮기는 백그라운드 작업
+ * 한 번 실행될 때, 더 옮길 주문이 없을 때까지 청크를 반복한다. 샤딩을 켜면 샤드마다 차례로 옮긴다.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "jpashop.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderArchiveJob {
+    private final OrderArchiveService orderArchiveService;
+    private final Shards shards;
+
+    @Scheduled(initialDelayString = "${jpashop.archive.initial-delay-ms:60000}",
+            fixedDelayString = "${jpashop.archive.fixed-delay-ms:3600000}")
+    public void archive() {
+        long start = System.currentTimeMillis();
+        int total = shards.sumOverShards(this::archiveAll);
+
+        if (total > 0) {
+            log.info("order archive: {} orders moved in {} ms", total, System.currentTimeMillis() - start);
+        }
+    }
+
+    private int archiveAll() {
+        int total = 0;
+        int moved;
+        do {
+            moved = orderArchiveService.archiveChunk();
+            total += moved;
+        } while (moved > 0);
+        return total;
+    }
+}
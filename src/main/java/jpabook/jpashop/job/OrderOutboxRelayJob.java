@@ -0,0 +1,192 @@
+package jpabook.jpashop.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.service.OrderEvent;
+import jpabook.jpashop.service.OrderEventSubscriber;
+import jpabook.jpashop.service.OrderOutboxService;
+import jpabook.jpashop.shard.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * order_outbox 에 쌓인 주문 이벤트를 배치 단위로 읽어서 구독자에게 전달하고 삭제한다.
+ *  - 전달한 뒤에 삭제하므로, 삭제 전에 죽으면 같은 이벤트가 다시 전달된다. (at-least-once)
+ *  - 이벤트는 id 순서로 전달하고, 실패한 이벤트가 있으면 같은 주문의 뒤 이벤트는 이번 주기에 전달하지 않는다.
+ *    실패한 이벤트는 남겨두고 다음 배치로 넘어가므로, 실패하는 이벤트가 배치를 채워도 다른 주문의 이벤트는 전달된다.
+ *  - max-attempts 번 실패한 이벤트는 parked (dead letter) 로 남기고, 같은 주문의 뒤 이벤트와 함께 더 전달하지 않는다.
+ *  - 구독자가 하나도 없으면 전달하지 않고 남겨둔다. (나중에 추가된 구독자가 받을 수 있도록)
+ * 인스턴스마다 relay 가 돌면 주문별 순서가 보장되지 않으므로, 여러 대로 띄울 때는 한 대에서만 켠다. (jpashop.outbox.enabled)
+ * 샤딩을 켜면 이벤트는 주문과 같은 샤드에 있으므로, 샤드마다 차례로 전달한다. 같은 주문의 이벤트는 한 샤드에 있어 순서가 유지된다.
+ */
+@Component
+@Slf4j
+public class OrderOutboxRelayJob {
+    private final OrderOutboxService orderOutboxService;
+    private final Shards shards;
+    private final ObjectProvider<OrderEventSubscriber> subscribers;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final boolean enabled;
+
+    private final Counter delivered;
+    private final Counter parked;
+    private final Timer lag;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong oldestPendingMillis = new AtomicLong();
+    private boolean warnedNoSubscribers; // relay() 안에서만 바뀐다.
+
+    public OrderOutboxRelayJob(OrderOutboxService orderOutboxService,
+                               Shards shards,
+                               ObjectProvider<OrderEventSubscriber> subscribers,
+                               MeterRegistry meterRegistry,
+                               @Value("${jpashop.outbox.batch-size:500}") int batchSize,
+                               @Value("${jpashop.outbox.max-attempts:10}") int maxAttempts,
+                               @Value("${jpashop.outbox.enabled:true}") boolean enabled) {
+        this.orderOutboxService = orderOutboxService;
+        this.shards = shards;
+        this.subscribers = subscribers;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.enabled = enabled;
+
+        this.delivered = Counter.builder("jpashop.outbox.delivered")
+                .description("구독자에게 전달된 주문 이벤트 수")
+                .register(meterRegistry);
+        this.parked = Counter.builder("jpashop.outbox.parked")
+                .description("max-attempts 번 실패해서 전달을 멈춘 주문 이벤트 수")
+                .register(meterRegistry);
+        // 이벤트 저장(주문 트랜잭션) 부터 전달까지 걸린 시간
+        this.lag = Timer.builder("jpashop.outbox.lag")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("jpashop.outbox.pending", pending, AtomicLong::get)
+                .description("마지막 relay 시점에 남아 있던 이벤트 수")
+                .register(meterRegistry);
+        Gauge.builder("jpashop.outbox.oldest-age", oldestPendingMillis, AtomicLong::get)
+                .description("마지막 relay 시점에 가장 오래된 이벤트의 나이(ms)")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.outbox.relay-delay-ms:200}")
+    public void scheduledRelay() {
+        if (enabled) {
+            relay();
+        }
+    }
+
+    /**
+     * 남은 이벤트를 id 순서로 한 번씩 훑으면서 배치 단위로 전달한다.
+     * @return 전달된 이벤트 수
+     */
+    public synchronized int relay() {
+        List<OrderEventSubscriber> targets = subscribers.orderedStream().collect(Collectors.toList());
+        if (targets.isEmpty()) {
+            AtomicLong pendingOnShards = new AtomicLong();
+            shards.forEachShard(() -> pendingOnShards.addAndGet(orderOutboxService.countPending()));
+            long count = pendingOnShards.get();
+            pending.set(count);
+            if (count > 0 && !warnedNoSubscribers) {
+                log.warn("order outbox: no OrderEventSubscriber registered, {} events left pending", count);
+                warnedNoSubscribers = true;
+            }
+            return 0;
+        }
+        warnedNoSubscribers = false;
+
+        // 샤드마다 남은 이벤트 수를 더하고, 가장 오래된 나이는 최댓값을 쓴다.
+        pending.set(0);
+        oldestPendingMillis.set(0);
+        return shards.sumOverShards(() -> relayShard(targets));
+    }
+
+    private int relayShard(List<OrderEventSubscriber> targets) {
+        int total = 0;
+        long afterId = 0;
+        Set<Long> blockedOrderIds = new HashSet<>(); // 이번 주기에 실패한 이벤트가 있는 주문
+        while (true) {
+            List<OrderEvent> batch = orderOutboxService.findPending(afterId, batchSize);
+            if (afterId == 0) {
+                updateBacklog(batch);
+            }
+            if (batch.isEmpty()) {
+                return total;
+            }
+
+            int count = relayBatch(batch, targets, blockedOrderIds);
+            total += count;
+            pending.addAndGet(-count);
+            if (batch.size() < batchSize) {
+                return total;
+            }
+            // 실패한 이벤트는 다음 주기에 다시 시도하고, 이번 주기는 그 뒤 이벤트로 넘어간다.
+            afterId = batch.get(batch.size() - 1).getEventId();
+        }
+    }
+
+    private int relayBatch(List<OrderEvent> batch, List<OrderEventSubscriber> targets, Set<Long> blockedOrderIds) {
+        List<Long> deliveredIds = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+
+        for (OrderEvent event : batch) {
+            if (blockedOrderIds.contains(event.getOrderId())) {
+                continue;
+            }
+            if (dispatch(event, targets)) {
+                deliveredIds.add(event.getEventId());
+                delivered.increment();
+                lag.record(Duration.between(event.getOccurredAt(), LocalDateTime.now()));
+            } else {
+                failedIds.add(event.getEventId());
+                blockedOrderIds.add(event.getOrderId());
+            }
+        }
+        int parkedCount = orderOutboxService.complete(deliveredIds, failedIds, maxAttempts);
+        if (parkedCount > 0) {
+            parked.increment(parkedCount);
+            pending.addAndGet(-parkedCount);
+            log.error("order outbox: {} events failed {} times and were parked with the later events of their orders",
+                    parkedCount, maxAttempts);
+        }
+        return deliveredIds.size();
+    }
+
+    private boolean dispatch(OrderEvent event, List<OrderEventSubscriber> targets) {
+        for (OrderEventSubscriber subscriber : targets) {
+            try {
+                subscriber.onEvent(event);
+            } catch (RuntimeException e) {
+                log.warn("order event {} (order {}, attempt {}) failed in subscriber {}",
+                        event.getEventId(), event.getOrderId(), event.getAttempts() + 1, subscriber.name(), e);
+                Counter.builder("jpashop.outbox.failed")
+                        .tag("subscriber", subscriber.name())
+                        .register(meterRegistry)
+                        .increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void updateBacklog(List<OrderEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        pending.addAndGet(batch.size() < batchSize ? batch.size() : orderOutboxService.countPending());
+        long oldest = Duration.between(batch.get(0).getOccurredAt(), LocalDateTime.now()).toMillis();
+        oldestPendingMillis.accumulateAndGet(oldest, Math::max);
+    }
+}
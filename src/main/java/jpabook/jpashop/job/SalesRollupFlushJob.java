@@ -0,0 +1,84 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.domain.SalesRollupId;
+import jpabook.jpashop.repository.sales.SalesDelta;
+import jpabook.jpashop.service.SalesRollupAccumulator;
+import jpabook.jpashop.service.SalesRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 메모리에 쌓인 판매 집계 증감분을 주기적으로 sales_rollup 에 반영하는 작업
+ * 반영에 실패하면 증감분을 다시 accumulator 에 돌려놓고 다음 주기에 재시도한다.
+ *
+ * 반영 전에 프로세스가 죽으면 그 사이의 증감분은 유실된다.
+ * 기동 시 최근 rebuild-days-on-startup 일의 집계를 주문상품에서 다시 만들고, 더 오래된 기간은 rebuild 를 직접 호출한다.
+ */
+@Component
+@Slf4j
+public class SalesRollupFlushJob implements SmartInitializingSingleton {
+    private final SalesRollupAccumulator salesRollupAccumulator;
+    private final SalesRollupService salesRollupService;
+    private final int rebuildDaysOnStartup;
+
+    public SalesRollupFlushJob(SalesRollupAccumulator salesRollupAccumulator,
+                               SalesRollupService salesRollupService,
+                               @Value("${jpashop.sales-rollup.rebuild-days-on-startup:0}") int rebuildDaysOnStartup) {
+        this.salesRollupAccumulator = salesRollupAccumulator;
+        this.salesRollupService = salesRollupService;
+        this.rebuildDaysOnStartup = rebuildDaysOnStartup;
+    }
+
+    /**
+     * 웹 서버가 요청을 받기 전에 최근 집계를 다시 만든다.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (rebuildDaysOnStartup > 0) {
+            LocalDate today = LocalDate.now();
+            int rows = rebuild(today.minusDays(rebuildDaysOnStartup - 1), today);
+            log.info("sales rollup: rebuilt last {} days, {} rows", rebuildDaysOnStartup, rows);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.sales-rollup.flush-delay-ms:1000}")
+    public synchronized void flush() {
+        Map<SalesRollupId, SalesDelta> deltas = salesRollupAccumulator.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            salesRollupService.apply(deltas);
+        } catch (RuntimeException e) {
+            log.warn("sales rollup flush failed, {} deltas will be retried", deltas.size(), e);
+            salesRollupAccumulator.addAll(deltas);
+        }
+    }
+
+    /**
+     * 기간 [from, to] 의 집계를 주문상품에서 다시 만든다.
+     * 쌓인 증감분을 먼저 반영하고, 그동안 flush 는 멈춘다.
+     * 실행 도중에 커밋된 주문은 다시 만든 집계와 증감분에 모두 들어가 두 번 반영될 수 있으므로,
+     * 기동 시나 주문이 없는 시간에 실행한다.
+     * @return 만들어진 (상품, 일자) row 수
+     */
+    public synchronized int rebuild(LocalDate from, LocalDate to) {
+        flush();
+        return salesRollupService.rebuild(from, to);
+    }
+
+    /**
+     * 종료 시 남은 증감분을 반영
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
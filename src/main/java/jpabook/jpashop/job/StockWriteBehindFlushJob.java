@@ -0,0 +1,31 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.service.StockCounters;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * write-behind 재고 증감분을 주기적으로 item 테이블에 반영하는 작업
+ * 꺼져 있거나 쌓인 증감분이 없으면 아무것도 하지 않는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class StockWriteBehindFlushJob {
+    private final StockCounters stockCounters;
+
+    @Scheduled(fixedDelayString = "${jpashop.stock.write-behind.flush-delay-ms:200}")
+    public void flush() {
+        stockCounters.flush();
+    }
+
+    /**
+     * 종료 시 남은 증감분을 반영
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,85 @@
+package jpabook.jpashop.monitoring;
+
+import jpabook.jpashop.domain.BatchFetchSizes;
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/batchfetch
+ * 지연 로딩 연관관계가 얼마나 자주 초기화되는지 보고, 배치 페치 크기를 제안하는 endpoint
+ *
+ * fetchCount 는 지연 로딩 쿼리가 나간 횟수, loadCount 는 그 쿼리로 읽어온 수다.
+ * 쿼리 한 번에 설정된 크기만큼 꽉 채워 읽어오면 크기를 키우고,
+ * 쿼리 한 번에 하나씩만 읽어오면 배치가 동작하지 않는 N+1 로 본다.
+ * 통계 초기화는 /actuator/hibernate 의 DELETE 를 사용한다.
+ */
+@Component
+@Endpoint(id = "batchfetch")
+@RequiredArgsConstructor
+public class BatchFetchEndpoint {
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @ReadOperation
+    public List<Map<String, Object>> associations() {
+        Statistics s = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        result.add(association("Order.orderItems", BatchFetchSizes.ORDER_ITEMS,
+                s.getCollectionStatistics(Order.class.getName() + ".orderItems").getFetchCount(),
+                s.getCollectionStatistics(Order.class.getName() + ".orderItems").getLoadCount()));
+        // to-one 프록시는 연관관계 단위 통계가 없어서 대상 엔티티(Item)의 통계를 사용한다.
+        result.add(association("OrderItem.item", BatchFetchSizes.ITEM,
+                s.getEntityStatistics(Item.class.getName()).getFetchCount(),
+                s.getEntityStatistics(Item.class.getName()).getLoadCount()));
+        result.add(association("Category.items", BatchFetchSizes.CATEGORY_ITEMS,
+                s.getCollectionStatistics(Category.class.getName() + ".items").getFetchCount(),
+                s.getCollectionStatistics(Category.class.getName() + ".items").getLoadCount()));
+        return result;
+    }
+
+    private Map<String, Object> association(String name, int batchSize, long fetchCount, long loadCount) {
+        double loadsPerFetch = fetchCount == 0 ? 0 : (double) loadCount / fetchCount;
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("association", name);
+        row.put("batchSize", batchSize);
+        row.put("fetchCount", fetchCount);
+        row.put("loadCount", loadCount);
+        row.put("loadsPerFetch", loadsPerFetch);
+        row.put("suggestedBatchSize", suggest(batchSize, fetchCount, loadsPerFetch));
+        row.put("nPlusOneSuspected", fetchCount > 10 && loadsPerFetch <= 1.0);
+        return row;
+    }
+
+    /**
+     * 쿼리 한 번에 배치 크기를 거의 다 채우면 두 배로 늘린다.
+     * 평균이 훨씬 작으면 IN 절 크기를 줄이기 위해 평균 이상의 2의 거듭제곱으로 줄인다.
+     */
+    static int suggest(int batchSize, long fetchCount, double loadsPerFetch) {
+        if (fetchCount == 0) {
+            return batchSize;
+        }
+        if (loadsPerFetch >= batchSize * 0.9) {
+            return Math.min(MAX_BATCH_SIZE, batchSize * 2);
+        }
+        int size = Integer.highestOneBit((int) Math.ceil(loadsPerFetch));
+        if (size < loadsPerFetch) {
+            size <<= 1;
+        }
+        return size * 4 <= batchSize ? Math.max(16, size) : batchSize;
+    }
+}
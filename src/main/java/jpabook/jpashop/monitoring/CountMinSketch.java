@@ -0,0 +1,58 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * count-min sketch
+ * depth 개의 해시 행마다 width 개의 카운터를 두고, 키마다 각 행의 한 칸씩을 더한다.
+ * 추정치는 그 칸들의 최솟값이라 실제보다 작게 나오지 않고, 크게 나오는 정도는 전체 합 / width 수준이다.
+ * 카운터는 AtomicLongArray 라서 add 에 락이 없다.
+ */
+public class CountMinSketch {
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param width 2의 거듭제곱
+     * @param depth 최대 8
+     */
+    public CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1 || depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("width must be a power of two and depth between 1 and " + SEEDS.length);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    public void add(long key, long count) {
+        for (int row = 0; row < depth; row++) {
+            counters.getAndAdd(index(row, key), count);
+        }
+    }
+
+    public long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(row, key)));
+        }
+        return min;
+    }
+
+    private int index(int row, long key) {
+        // murmur3 fmix64
+        long h = key ^ SEEDS[row];
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return row * width + (int) (h & (width - 1));
+    }
+}
@@ -0,0 +1,126 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * /actuator/hibernate
+ * Hibernate Statistics (세션 단위 카운터, JPQL 별 쿼리 통계) 와 Hikari 커넥션 풀 대기 상태를 한 번에 보여주는 endpoint
+ *
+ * 세부 지표는 /actuator/metrics 에도 있지만 (hibernate.*, hikaricp.*, jpashop.service),
+ * JPQL 문자열 단위의 통계는 Micrometer 가 태그로 다루기에 적합하지 않아서 여기서 따로 제공한다.
+ */
+@Component
+@Endpoint(id = "hibernate")
+@RequiredArgsConstructor
+public class HibernateStatisticsEndpoint {
+    private final EntityManagerFactory entityManagerFactory;
+    private final MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public Map<String, Object> statistics() {
+        Statistics statistics = hibernateStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("session", sessionStatistics(statistics));
+        result.put("queries", queryStatistics(statistics));
+        result.put("pool", poolStatistics());
+        return result;
+    }
+
+    /**
+     * 누적된 통계를 초기화
+     */
+    @DeleteOperation
+    public void clear() {
+        hibernateStatistics().clear();
+    }
+
+    private Statistics hibernateStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Map<String, Object> sessionStatistics(Statistics s) {
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("enabled", s.isStatisticsEnabled());
+        session.put("sessionOpenCount", s.getSessionOpenCount());
+        session.put("transactionCount", s.getTransactionCount());
+        session.put("flushCount", s.getFlushCount());
+        session.put("prepareStatementCount", s.getPrepareStatementCount());
+        session.put("entityLoadCount", s.getEntityLoadCount());
+        session.put("entityFetchCount", s.getEntityFetchCount());
+        session.put("entityInsertCount", s.getEntityInsertCount());
+        session.put("entityUpdateCount", s.getEntityUpdateCount());
+        session.put("collectionLoadCount", s.getCollectionLoadCount());
+        session.put("collectionFetchCount", s.getCollectionFetchCount());
+        session.put("queryExecutionCount", s.getQueryExecutionCount());
+        session.put("queryExecutionMaxTime", s.getQueryExecutionMaxTime());
+        session.put("queryExecutionMaxTimeQueryString", s.getQueryExecutionMaxTimeQueryString());
+        session.put("secondLevelCacheHitCount", s.getSecondLevelCacheHitCount());
+        session.put("secondLevelCacheMissCount", s.getSecondLevelCacheMissCount());
+        session.put("queryCacheHitCount", s.getQueryCacheHitCount());
+        session.put("queryCacheMissCount", s.getQueryCacheMissCount());
+        return session;
+    }
+
+    /**
+     * JPQL 별 통계, 총 실행 시간이 큰 순서
+     */
+    private List<Map<String, Object>> queryStatistics(Statistics s) {
+        return Arrays.stream(s.getQueries())
+                .map(query -> {
+                    QueryStatistics q = s.getQueryStatistics(query);
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("query", query);
+                    row.put("executionCount", q.getExecutionCount());
+                    row.put("executionTotalTime", q.getExecutionTotalTime());
+                    row.put("executionAvgTime", q.getExecutionAvgTime());
+                    row.put("executionMaxTime", q.getExecutionMaxTime());
+                    row.put("executionRowCount", q.getExecutionRowCount());
+                    row.put("cacheHitCount", q.getCacheHitCount());
+                    return row;
+                })
+                .sorted(Comparator.comparingLong((Map<String, Object> row) -> (Long) row.get("executionTotalTime")).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Hikari 풀 상태, 커넥션 획득 대기(hikaricp.connections.acquire) 포함
+     */
+    private Map<String, Object> poolStatistics() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("active", gauge("hikaricp.connections.active"));
+        pool.put("idle", gauge("hikaricp.connections.idle"));
+        pool.put("pending", gauge("hikaricp.connections.pending"));
+        pool.put("max", gauge("hikaricp.connections.max"));
+
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").timer();
+        if (acquire != null) {
+            pool.put("acquireCount", acquire.count());
+            pool.put("acquireMeanMs", acquire.mean(TimeUnit.MILLISECONDS));
+            pool.put("acquireMaxMs", acquire.max(TimeUnit.MILLISECONDS));
+        }
+        Counter timeout = meterRegistry.find("hikaricp.connections.timeout").counter();
+        pool.put("timeoutCount", timeout == null ? null : timeout.count());
+        return pool;
+    }
+
+    private Double gauge(String name) {
+        Gauge gauge = meterRegistry.find(name).gauge();
+        return gauge == null ? null : gauge.value();
+    }
+}
@@ -0,0 +1,14 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 구간 동안 많이 주문된 상품, units 는 count-min sketch 추정치라 실제보다 작지 않다.
+ */
+@Data
+@AllArgsConstructor
+public class HotItem {
+    private Long itemId;
+    private long units;
+}
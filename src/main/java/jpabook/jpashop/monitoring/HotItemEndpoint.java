@@ -0,0 +1,28 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/hotitems?limit=10
+ * 최근 1, 5, 60분 동안 주문 수량이 많은 상품 (추정치)
+ */
+@Component
+@Endpoint(id = "hotitems")
+@RequiredArgsConstructor
+public class HotItemEndpoint {
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final HotItemTracker hotItemTracker;
+
+    @ReadOperation
+    public Map<String, List<HotItem>> hotItems(@Nullable Integer limit) {
+        return hotItemTracker.topByWindow(limit == null ? DEFAULT_LIMIT : limit);
+    }
+}
@@ -0,0 +1,189 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 많이 주문되는 상품(heavy hitter) 추적
+ * order_item 을 스캔하지 않고, 주문이 커밋될 때마다 상품별 주문 수량을 분 단위 버킷에 더한다.
+ *
+ * 버킷마다 count-min sketch 와 후보 상품 집합(최대 candidates 개) 을 둔다.
+ *  - 기록: sketch 에 더하고, 후보가 꽉 찼으면 추정치가 후보의 최솟값보다 클 때만 후보에 넣는다. 락이 없다.
+ *  - 후보가 넘치면 기록하던 스레드 하나가 추정치가 낮은 후보를 정리한다. 다른 스레드는 기다리지 않는다.
+ *  - 조회: 구간 안의 버킷 후보를 모아서, 버킷별 추정치의 합으로 top-K 를 heap 으로 고른다.
+ * 버킷은 최근 60분만 유지하고, 분이 바뀌면 해당 칸을 새 버킷으로 CAS 교체한다.
+ */
+@Component
+public class HotItemTracker {
+    public static final int[] WINDOW_MINUTES = {1, 5, 60};
+    private static final int BUCKETS = 60;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private final int sketchWidth;
+    private final int sketchDepth;
+    private final int candidates;
+    private final LongSupplier currentTimeMillis;
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+    @Autowired
+    public HotItemTracker(@Value("${jpashop.hot-items.sketch-width:1024}") int sketchWidth,
+                          @Value("${jpashop.hot-items.sketch-depth:4}") int sketchDepth,
+                          @Value("${jpashop.hot-items.candidates:256}") int candidates) {
+        this(sketchWidth, sketchDepth, candidates, System::currentTimeMillis);
+    }
+
+    HotItemTracker(int sketchWidth, int sketchDepth, int candidates, LongSupplier currentTimeMillis) {
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.candidates = candidates;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    /**
+     * 주문 수량 기록, 트랜잭션 안이면 커밋된 뒤에 더한다.
+     */
+    public void recordOrder(Long itemId, int count) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(itemId, count);
+                }
+            });
+        } else {
+            record(itemId, count);
+        }
+    }
+
+    void record(long itemId, int count) {
+        Bucket bucket = currentBucket(currentMinute());
+        bucket.sketch.add(itemId, count);
+        if (bucket.candidates.contains(itemId)) {
+            return;
+        }
+        if (bucket.candidates.size() < candidates || bucket.sketch.estimate(itemId) > bucket.admissionThreshold) {
+            bucket.candidates.add(itemId);
+            if (bucket.candidates.size() > candidates) {
+                bucket.prune(candidates);
+            }
+        }
+    }
+
+    /**
+     * 최근 windowMinutes 분 (현재 분 포함) 동안 가장 많이 주문된 상품
+     * @param windowMinutes 1 ~ 60
+     * @param limit
+     * @return 추정 수량 내림차순
+     */
+    public List<HotItem> top(int windowMinutes, int limit) {
+        long now = currentMinute();
+        List<Bucket> window = new ArrayList<>();
+        for (int i = 0; i < Math.min(windowMinutes, BUCKETS); i++) {
+            Bucket bucket = buckets.get(slot(now - i));
+            if (bucket != null && bucket.minute == now - i) {
+                window.add(bucket);
+            }
+        }
+
+        Set<Long> itemIds = new HashSet<>();
+        window.forEach(bucket -> itemIds.addAll(bucket.candidates));
+
+        PriorityQueue<HotItem> heap = new PriorityQueue<>(Comparator.comparingLong(HotItem::getUnits));
+        for (Long itemId : itemIds) {
+            long units = 0;
+            for (Bucket bucket : window) {
+                units += bucket.sketch.estimate(itemId);
+            }
+            if (heap.size() < limit) {
+                heap.add(new HotItem(itemId, units));
+            } else if (limit > 0 && heap.peek().getUnits() < units) {
+                heap.poll();
+                heap.add(new HotItem(itemId, units));
+            }
+        }
+
+        List<HotItem> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingLong(HotItem::getUnits).reversed());
+        return result;
+    }
+
+    /**
+     * 1, 5, 60분 구간별 top 상품
+     */
+    public Map<String, List<HotItem>> topByWindow(int limit) {
+        Map<String, List<HotItem>> result = new LinkedHashMap<>();
+        for (int minutes : WINDOW_MINUTES) {
+            result.put(minutes + "m", top(minutes, limit));
+        }
+        return result;
+    }
+
+    private Bucket currentBucket(long minute) {
+        int slot = slot(minute);
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.minute >= minute) {
+                return bucket;
+            }
+            Bucket fresh = new Bucket(minute, sketchWidth, sketchDepth);
+            if (buckets.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private long currentMinute() {
+        return currentTimeMillis.getAsLong() / MILLIS_PER_MINUTE;
+    }
+
+    private static int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) BUCKETS);
+    }
+
+    private static class Bucket {
+        final long minute;
+        final CountMinSketch sketch;
+        final Set<Long> candidates = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean pruning = new AtomicBoolean();
+        volatile long admissionThreshold; // 후보로 남은 상품의 추정치 최솟값
+
+        Bucket(long minute, int sketchWidth, int sketchDepth) {
+            this.minute = minute;
+            this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        }
+
+        /**
+         * 추정치가 낮은 후보를 지워서 capacity 개로 줄인다. 다른 스레드가 정리 중이면 그냥 돌아간다.
+         */
+        void prune(int capacity) {
+            if (!pruning.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                List<long[]> estimates = new ArrayList<>(); // {itemId, estimate}
+                for (Long itemId : candidates) {
+                    estimates.add(new long[]{itemId, sketch.estimate(itemId)});
+                }
+                if (estimates.size() <= capacity) {
+                    return;
+                }
+                estimates.sort(Comparator.comparingLong((long[] e) -> e[1]).reversed());
+                for (long[] evicted : estimates.subList(capacity, estimates.size())) {
+                    candidates.remove(evicted[0]);
+                }
+                admissionThreshold = estimates.get(capacity - 1)[1];
+            } finally {
+                pruning.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 느린 쿼리 한 건
+ * 회원 이름, 주소 같은 바인딩 값은 남기지 않는다. (/actuator/slowqueries 로 그대로 나간다)
+ */
+@Getter
+@RequiredArgsConstructor
+public class SlowQuery {
+    private final LocalDateTime executedAt;
+    private final long elapsedMillis;
+    private final String sql; // 실행한 SQL, 바인딩 값은 ? 로 남는다.
+    private final String shape; // 공백을 정리한 sql, EXPLAIN 캐시의 키
+    private final String caller; // SQL 을 실행한 repository / service 메서드
+    private final String error; // 예외 종류와 SQLState, 메시지에 값이 들어 있을 수 있어서 남기지 않는다.
+}
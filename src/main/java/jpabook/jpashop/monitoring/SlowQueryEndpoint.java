@@ -0,0 +1,35 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/slowqueries
+ * 최근 느린 쿼리 목록(호출 메서드 포함, 바인딩 값 제외) 과 쿼리 모양별 실행 계획
+ */
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueryEndpoint {
+    private final SlowQueryLog slowQueryLog;
+
+    @ReadOperation
+    public Map<String, Object> slowQueries() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalCount", slowQueryLog.totalCount());
+        result.put("recent", slowQueryLog.recent());
+        result.put("explains", slowQueryLog.explains());
+        return result;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowQueryLog.clear();
+    }
+}
@@ -0,0 +1,68 @@
+package jpabook.jpashop.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * p6spy 리스너, 임계값(jpashop.slow-query.threshold-ms) 을 넘긴 문장만 SlowQueryLog 에 남긴다.
+ * p6spy-spring-boot-starter 가 JdbcEventListener 빈을 찾아서 데이터소스에 등록해준다.
+ */
+@Component
+@Slf4j
+public class SlowQueryListener extends SimpleJdbcEventListener {
+    private static final String BASE_PACKAGE = "jpabook.jpashop.";
+    private static final String MONITORING_PACKAGE = "jpabook.jpashop.monitoring.";
+
+    private final SlowQueryLog slowQueryLog;
+    private final long thresholdNanos;
+
+    public SlowQueryListener(SlowQueryLog slowQueryLog,
+                             @Value("${jpashop.slow-query.threshold-ms:200}") long thresholdMillis) {
+        this.slowQueryLog = slowQueryLog;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos < thresholdNanos) {
+            return;
+        }
+        String sql = statementInformation.getSql();
+        if (sql == null || sql.trim().regionMatches(true, 0, SlowQueryLog.EXPLAIN_PREFIX, 0, SlowQueryLog.EXPLAIN_PREFIX.length())) {
+            return;
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos);
+        String caller = findCaller();
+        log.warn("slow query {} ms at {}: {}", elapsedMillis, caller, sql);
+        // 바인딩 값이 채워진 SQL 은 EXPLAIN 에만 쓰고 보관하지 않는다.
+        slowQueryLog.add(new SlowQuery(LocalDateTime.now(), elapsedMillis, sql, normalize(sql), caller,
+                e == null ? null : e.getClass().getSimpleName() + " (" + e.getSQLState() + ")"),
+                statementInformation.getSqlWithValues());
+    }
+
+    /**
+     * 스택에서 애플리케이션 코드의 첫 번째 프레임 (보통 repository 메서드) 을 찾는다.
+     * 스프링 프록시($$) 와 모니터링 패키지는 건너뛴다.
+     */
+    private String findCaller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(BASE_PACKAGE)
+                        && !f.getClassName().startsWith(MONITORING_PACKAGE)
+                        && !f.getClassName().contains("$$"))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + f.getMethodName())
+                .orElse("unknown"));
+    }
+
+    private String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,144 @@
+package jpabook.jpashop.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * 느린 쿼리를 최근 N 건만 보관하는 링 버퍼와, 쿼리 모양(shape) 별 실행 계획 캐시
+ *
+ * 처음 보는 shape 가 들어오면 별도 스레드에서 H2 EXPLAIN 을 실행해서 실행 계획을 남긴다.
+ * SELECT 는 EXPLAIN ANALYZE 로 실제 읽은 row 수까지 남기고,
+ * 데이터를 바꾸는 문장은 실행되지 않도록 EXPLAIN 만 한다.
+ * EXPLAIN 은 바인딩 값이 채워진 SQL 로 실행하지만, 그 SQL 은 보관하지 않고 실행 계획의 문자열 리터럴도 ? 로 가린다.
+ */
+@Component
+@Slf4j
+public class SlowQueryLog {
+    static final String EXPLAIN_PREFIX = "EXPLAIN";
+    private static final int MAX_EXPLAINED_SHAPES = 1000;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private final AtomicReferenceArray<SlowQuery> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, String> explains = new ConcurrentHashMap<>();
+    private final ExecutorService explainExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "slow-query-explain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 데이터소스는 p6spy 리스너(SlowQueryListener) 를 감싸서 만들어지므로, 순환 참조를 피하려고 지연 조회한다.
+    private final ObjectProvider<DataSource> dataSource;
+    private final boolean explainEnabled;
+
+    public SlowQueryLog(ObjectProvider<DataSource> dataSource,
+                        @Value("${jpashop.slow-query.buffer-size:200}") int bufferSize,
+                        @Value("${jpashop.slow-query.explain:true}") boolean explainEnabled) {
+        this.dataSource = dataSource;
+        this.buffer = new AtomicReferenceArray<>(bufferSize);
+        this.explainEnabled = explainEnabled;
+    }
+
+    /**
+     * @param sqlWithValues EXPLAIN 할 때만 쓰는 바인딩 값이 채워진 SQL
+     */
+    public void add(SlowQuery slowQuery, String sqlWithValues) {
+        long seq = sequence.getAndIncrement();
+        buffer.set((int) (seq % buffer.length()), slowQuery);
+
+        if (explainEnabled && slowQuery.getError() == null && explains.size() < MAX_EXPLAINED_SHAPES
+                && explains.putIfAbsent(slowQuery.getShape(), "pending") == null) {
+            try {
+                explainExecutor.execute(() -> explains.put(slowQuery.getShape(), explain(slowQuery.getShape(), sqlWithValues)));
+            } catch (RejectedExecutionException e) {
+                explains.remove(slowQuery.getShape());
+            }
+        }
+    }
+
+    /**
+     * 최근 느린 쿼리, 최신순
+     */
+    public List<SlowQuery> recent() {
+        long end = sequence.get();
+        long start = Math.max(0, end - buffer.length());
+        List<SlowQuery> result = new ArrayList<>();
+        for (long seq = end - 1; seq >= start; seq--) {
+            SlowQuery slowQuery = buffer.get((int) (seq % buffer.length()));
+            if (slowQuery != null) {
+                result.add(slowQuery);
+            }
+        }
+        return result;
+    }
+
+    public long totalCount() {
+        return sequence.get();
+    }
+
+    /**
+     * shape 별 실행 계획
+     */
+    public Map<String, String> explains() {
+        return explains;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.length(); i++) {
+            buffer.set(i, null);
+        }
+        explains.clear();
+    }
+
+    private String explain(String shape, String sqlWithValues) {
+        String explainSql = (isSelect(sqlWithValues) ? EXPLAIN_PREFIX + " ANALYZE " : EXPLAIN_PREFIX + " ") + sqlWithValues;
+        try (Connection connection = dataSource.getObject().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(explainSql)) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                plan.append(rs.getString(1)).append('\n');
+            }
+            return maskLiterals(plan.toString());
+        } catch (Exception e) {
+            log.debug("EXPLAIN failed: {}", shape, e);
+            return "EXPLAIN failed: " + e.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * 실행 계획에 찍힌 문자열 리터럴(이름, 주소, 날짜 등) 을 ? 로 바꾼다.
+     */
+    static String maskLiterals(String plan) {
+        return STRING_LITERAL.matcher(plan).replaceAll("?");
+    }
+
+    private boolean isSelect(String sql) {
+        String trimmed = sql.trim();
+        return trimmed.regionMatches(true, 0, "select", 0, "select".length())
+                || trimmed.regionMatches(true, 0, "with", 0, "with".length());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+}
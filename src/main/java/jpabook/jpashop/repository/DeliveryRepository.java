@@ -0,0 +1,86 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 배송 상태를 엔티티 로딩 없이 bulk UPDATE 로 변경하는 repository
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeliveryRepository {
+    private final EntityManager em;
+
+    public Delivery findOne(Long id) {
+        return em.find(Delivery.class, id);
+    }
+
+    /**
+     * 주어진 id 중, 주문이 취소되지 않았고 아직 status 가 아닌 배송의 id 만 골라낸다.
+     * @param deliveryIds
+     * @param status
+     * @return
+     */
+    public List<Long> findTransitionTargetIds(List<Long> deliveryIds, DeliveryStatus status) {
+        return em.createQuery(
+                "select d.id from Order o" +
+                        " join o.delivery d" +
+                        " where d.id in :deliveryIds" +
+                        " and o.status = :orderStatus" +
+                        " and (d.status is null or d.status <> :status)" +
+                        " order by d.id", Long.class)
+                .setParameter("deliveryIds", deliveryIds)
+                .setParameter("orderStatus", OrderStatus.ORDER)
+                .setParameter("status", status)
+                .getResultList();
+    }
+
+    /**
+     * 조건에 맞는 배송의 id 를 afterId 다음부터 limit 개 조회 (id 기준 keyset)
+     * @param search
+     * @param afterId
+     * @param limit
+     * @return
+     */
+    public List<Long> findTransitionTargetIds(DeliverySearch search, Long afterId, int limit) {
+        return em.createQuery(
+                "select d.id from Order o" +
+                        " join o.delivery d" +
+                        " where d.id > :afterId" +
+                        " and o.status = :orderStatus" +
+                        " and (d.status is null or d.status <> :status)" +
+                        " and (:orderDateFrom is null or o.orderDate >= :orderDateFrom)" +
+                        " and (:orderDateTo is null or o.orderDate < :orderDateTo)" +
+                        " order by d.id", Long.class)
+                .setParameter("afterId", afterId)
+                .setParameter("orderStatus", OrderStatus.ORDER)
+                .setParameter("status", search.getTargetStatus())
+                .setParameter("orderDateFrom", search.getOrderDateFrom())
+                .setParameter("orderDateTo", search.getOrderDateTo())
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * bulk UPDATE, 영속성 컨텍스트를 거치지 않으므로 호출 후에는 이미 로딩된 Delivery 가 stale 할 수 있다.
+     * @param deliveryIds
+     * @param status
+     * @return 변경된 row 수
+     */
+    public int updateStatus(List<Long> deliveryIds, DeliveryStatus status) {
+        if (deliveryIds.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("update Delivery d set d.status = :status where d.id in :deliveryIds")
+                .setParameter("status", status)
+                .setParameter("deliveryIds", deliveryIds)
+                .executeUpdate();
+    }
+}
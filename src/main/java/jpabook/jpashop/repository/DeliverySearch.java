@@ -0,0 +1,24 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * 배송 상태 변경 대상 조건
+ * 취소된 주문의 배송은 항상 대상에서 제외된다.
+ */
+@Getter
+@Setter
+public class DeliverySearch {
+    private DeliveryStatus targetStatus; // 변경할 상태. 이미 이 상태인 배송은 제외
+
+    // 주문 일시 범위, [orderDateFrom, orderDateTo)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime orderDateFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime orderDateTo;
+}
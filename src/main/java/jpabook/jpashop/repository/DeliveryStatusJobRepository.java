@@ -0,0 +1,13 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryJobStatus;
+import jpabook.jpashop.domain.DeliveryStatusJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DeliveryStatusJobRepository extends JpaRepository<DeliveryStatusJob, Long> {
+    // SELECT j FROM DeliveryStatusJob j WHERE j.status IN ? ORDER BY j.id
+    List<DeliveryStatusJob> findByStatusInOrderById(Collection<DeliveryJobStatus> statuses);
+}
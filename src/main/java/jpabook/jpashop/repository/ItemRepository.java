@@ -5,6 +5,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Repository
@@ -36,6 +39,79 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    /**
+     * 상품 row 에 쓰기 잠금을 걸고 조회 (select ... for update)
+     * 재고를 읽고-바꾸고-쓰는 동안 다른 트랜잭션이 같은 재고를 바꾸지 못하게 한다. (lost update 방지)
+     * @param id
+     * @return
+     */
+    public Item findOneForUpdate(Long id) {
+        List<Item> items = findAllForUpdate(Collections.singletonList(id));
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    /**
+     * 여러 상품을 잠금과 함께 조회, 교착을 피하기 위해 항상 id 순서로 잠근다.
+     * 지연 로딩 프록시는 잠긴 row 의 값으로 초기화된다.
+     * (잠금 전에 같은 트랜잭션에서 이미 읽은 상품은 영속성 컨텍스트의 값이 그대로 남는다.)
+     * @param ids
+     * @return
+     */
+    public List<Item> findAllForUpdate(Collection<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids order by i.id", Item.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    /**
+     * 재고 수량만 조회, 엔티티를 영속성 컨텍스트에 올리지 않는다.
+     * @param id
+     * @return
+     */
+    public int findStockQuantity(Long id) {
+        return em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+
+    /**
+     * 재고가 충분할 때만 차감하는 조건부 UPDATE
+     * 영속성 컨텍스트를 거치지 않으므로, 같은 트랜잭션에서 읽은 Item 엔티티의 재고는 갱신되지 않는다.
+     * @param id
+     * @param quantity
+     * @return 차감했으면 1, 재고가 부족하면 0
+     */
+    public int decreaseStock(Long id, int quantity) {
+        return em.createQuery("update Item i set i.stockQuantity = i.stockQuantity - :quantity" +
+                " where i.id = :id and i.stockQuantity >= :quantity")
+                .setParameter("quantity", quantity)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    /**
+     * 재고를 더하는 UPDATE
+     * @param id
+     * @param quantity
+     * @return
+     */
+    public int increaseStock(Long id, int quantity) {
+        return em.createQuery("update Item i set i.stockQuantity = i.stockQuantity + :quantity where i.id = :id")
+                .setParameter("quantity", quantity)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    /**
+     * 자동완성 색인 적재용, 엔티티 대신 (id, 이름) 만 읽는다.
+     * @return
+     */
+    public List<NameMatch> findAllNames() {
+        return em.createQuery("select new jpabook.jpashop.repository.NameMatch(i.id, i.name) from Item i", NameMatch.class)
+                .getResultList();
+    }
+
     /**
      * 상품 모두 조회
      * @return
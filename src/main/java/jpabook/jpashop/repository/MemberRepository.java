@@ -2,6 +2,7 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
@@ -9,4 +10,8 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
     // 다음 쿼리가 나가게 됨
     // SELECT m FROM Member m where m.name = ?
     List<Member> findByName(String name);
+
+    // 자동완성 색인 적재용, 엔티티 대신 (id, 이름) 만 읽는다.
+    @Query("select new jpabook.jpashop.repository.NameMatch(m.id, m.name) from Member m")
+    List<NameMatch> findAllNames();
 }
@@ -0,0 +1,14 @@
+package jpabook.jpashop.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 이름 자동완성 결과 한 건 (id, 이름)
+ */
+@Data
+@AllArgsConstructor
+public class NameMatch {
+    private Long id;
+    private String name;
+}
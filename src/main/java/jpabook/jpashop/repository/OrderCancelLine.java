@@ -0,0 +1,25 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 일괄 취소 대상 주문상품 한 줄
+ * 재고 원복, 판매 집계, 취소 이벤트에 필요한 값만 담는다.
+ */
+@Data
+@AllArgsConstructor
+public class OrderCancelLine {
+    private Long orderId;
+    private Long memberId;
+    private int totalPrice;
+    private int itemCount;
+    private Long itemId;
+    private int count;
+    private int orderPrice;
+    private LocalDateTime orderDate;
+    private DeliveryStatus deliveryStatus;
+}
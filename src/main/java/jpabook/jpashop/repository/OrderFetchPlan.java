@@ -0,0 +1,31 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Order;
+
+/**
+ * 주문 조회 시 함께 가져올 연관관계 (Order 에 정의된 named entity graph)
+ * 컬렉션(orderItems) 을 포함하는 계획은 페이징 시 id 를 먼저 조회하고, 그 id 들에 대해서만 그래프를 적용한다.
+ */
+public enum OrderFetchPlan {
+    SUMMARY(Order.GRAPH_SUMMARY, false),
+    WITH_MEMBER(Order.GRAPH_WITH_MEMBER, false),
+    WITH_DELIVERY(Order.GRAPH_WITH_DELIVERY, false),
+    WITH_ITEMS(Order.GRAPH_WITH_ITEMS, true),
+    FULL(Order.GRAPH_FULL, true);
+
+    private final String graphName;
+    private final boolean fetchesCollection;
+
+    OrderFetchPlan(String graphName, boolean fetchesCollection) {
+        this.graphName = graphName;
+        this.fetchesCollection = fetchesCollection;
+    }
+
+    public String getGraphName() {
+        return graphName;
+    }
+
+    public boolean fetchesCollection() {
+        return fetchesCollection;
+    }
+}
@@ -0,0 +1,39 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderIdempotencyKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderIdempotencyKeyRepository {
+    private final EntityManager em;
+
+    /**
+     * 키를 선점한다.
+     * 바로 flush 해서, 같은 키가 이미 있으면 주문을 만들기 전에 PK 위반으로 실패하게 한다.
+     * @param idempotencyKey
+     */
+    public void save(OrderIdempotencyKey idempotencyKey) {
+        em.persist(idempotencyKey);
+        em.flush();
+    }
+
+    public OrderIdempotencyKey findOne(String key) {
+        return em.find(OrderIdempotencyKey.class, key);
+    }
+
+    /**
+     * 보관 기간이 지난 키를 삭제
+     * @param cutoff
+     * @return 삭제된 키 수
+     */
+    public int deleteCreatedBefore(LocalDateTime cutoff) {
+        return em.createQuery("delete from OrderIdempotencyKey k where k.createdAt < :cutoff")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+    }
+}
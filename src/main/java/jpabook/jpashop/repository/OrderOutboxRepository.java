@@ -0,0 +1,94 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderOutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderOutboxRepository {
+    private final EntityManager em;
+
+    public void save(OrderOutboxEvent event) {
+        em.persist(event);
+    }
+
+    /**
+     * 전달할 이벤트를 저장 순서(id) 대로 afterId 다음부터 조회
+     * parked 이벤트와, 같은 주문에 parked 이벤트가 있는 이벤트는 제외한다. (주문별 순서를 지키기 위해)
+     * @param afterId 직전 배치의 마지막 id, 처음이면 0
+     * @param limit
+     * @return
+     */
+    public List<OrderOutboxEvent> findPending(long afterId, int limit) {
+        return em.createQuery("select e from OrderOutboxEvent e" +
+                " where e.parked = false and e.id > :afterId" +
+                " and not exists (select p.id from OrderOutboxEvent p where p.orderId = e.orderId and p.parked = true)" +
+                " order by e.id", OrderOutboxEvent.class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<OrderOutboxEvent> findByOrderId(Long orderId) {
+        return em.createQuery("select e from OrderOutboxEvent e where e.orderId = :orderId order by e.id", OrderOutboxEvent.class)
+                .setParameter("orderId", orderId)
+                .getResultList();
+    }
+
+    /**
+     * parked 가 아닌 이벤트 수
+     */
+    public long countPending() {
+        return em.createQuery("select count(e) from OrderOutboxEvent e where e.parked = false", Long.class)
+                .getSingleResult();
+    }
+
+    /**
+     * 전달이 끝난 이벤트 삭제
+     * @param ids
+     * @return 삭제된 row 수
+     */
+    public int delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("delete from OrderOutboxEvent e where e.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    /**
+     * 전달에 실패한 이벤트의 실패 횟수 증가
+     * @param ids
+     * @return
+     */
+    public int increaseAttempts(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("update OrderOutboxEvent e set e.attempts = e.attempts + 1 where e.id in :ids")
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    /**
+     * 실패 횟수가 maxAttempts 이상인 이벤트를 parked 로 바꾼다.
+     * @param ids
+     * @param maxAttempts
+     * @return parked 로 바뀐 row 수
+     */
+    public int park(Collection<Long> ids, int maxAttempts) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("update OrderOutboxEvent e set e.parked = true where e.id in :ids and e.attempts >= :maxAttempts")
+                .setParameter("ids", ids)
+                .setParameter("maxAttempts", maxAttempts)
+                .executeUpdate();
+    }
+}
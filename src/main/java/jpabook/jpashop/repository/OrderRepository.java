@@ -1,20 +1,71 @@
 package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.shard.Shards;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * 샤딩을 켜면 검색/목록 조회는 모든 샤드에서 병렬로 조회해서 정렬 순서대로 합친다. (Shards.scatter)
+ * 단건 조회, 잠금, 일괄 변경은 현재 샤드(@RouteToShard 로 정해진 샤드) 에서만 실행한다.
+ */
 @Repository
 @RequiredArgsConstructor
 public class OrderRepository {
+    private static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+    private static final int MAX_RESULTS = 1000;
+
     private final EntityManager em;
+    private final Shards shards;
+
+    /**
+     * 검색 조건 where 절, bindSearch 로 바인딩한다. "join o.member m" 이 필요하다.
+     * "(:x is null or ...)" 처럼 한 문장으로 쓰면 prepared statement 의 실행 계획이 인덱스를 쓰지 못하므로,
+     * 값이 있는 조건만 붙인다.
+     * @param orderSearch
+     * @return 조건이 없으면 빈 문자열
+     */
+    public static String searchCondition(OrderSearch orderSearch) {
+        List<String> conditions = new ArrayList<>();
+        if (orderSearch.getOrderStatus() != null) {
+            conditions.add("o.status = :status");
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            conditions.add("m.name like :name");
+        }
+        if (orderSearch.getOrderDateFrom() != null) {
+            conditions.add("o.orderDate >= :orderDateFrom");
+        }
+        if (orderSearch.getOrderDateTo() != null) {
+            conditions.add("o.orderDate < :orderDateTo");
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            conditions.add("o.totalPrice >= :minTotalPrice");
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            conditions.add("o.totalPrice <= :maxTotalPrice");
+        }
+        if (orderSearch.getMinItemCount() != null) {
+            conditions.add("o.itemCount >= :minItemCount");
+        }
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
 
     /**
      * 인자로 넘겨받은 order 를 추가한다.
@@ -28,6 +79,81 @@ public class OrderRepository {
         return em.find(Order.class, id);
     }
 
+    /**
+     * plan 의 연관관계를 함께 조회
+     * @param id
+     * @param plan
+     * @return
+     */
+    public Order findOne(Long id, OrderFetchPlan plan) {
+        return em.find(Order.class, id, Collections.singletonMap(FETCH_GRAPH_HINT, em.getEntityGraph(plan.getGraphName())));
+    }
+
+    /**
+     * 주문 row 에 쓰기 잠금을 걸고 조회 (select ... for update)
+     * 같은 주문을 동시에 취소해서 재고가 두 번 원복되는 것을 막는다.
+     * @param id
+     * @return
+     */
+    public Order findOneForUpdate(Long id) {
+        // em.find 와 달리 JPQL 은 먼저 flush 하므로, 같은 트랜잭션에서 저장한 주문도 잠글 수 있다.
+        return em.createQuery("select o from Order o where o.id = :id", Order.class)
+                .setParameter("id", id)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * 아직 취소되지 않은 주문 row 를 id 순서로 잠그고, 그 id 를 반환한다.
+     * 엔티티를 로딩하지 않기 위해 native 로 잠근다.
+     * @param ids
+     * @return
+     */
+    public List<Long> lockOrderedIds(Collection<Long> ids) {
+        List<?> rows = em.createNativeQuery(
+                "select order_id from orders where order_id in (:ids) and status = 'ORDER' order by order_id for update")
+                .setParameter("ids", ids)
+                .getResultList();
+        return rows.stream()
+                .map(row -> ((Number) row).longValue())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 주문들의 주문상품을 한 번에 조회
+     * @param orderIds
+     * @return
+     */
+    public List<OrderCancelLine> findCancelLines(Collection<Long> orderIds) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.OrderCancelLine(o.id, o.member.id, o.totalPrice, o.itemCount, oi.item.id, oi.count, oi.orderPrice, o.orderDate, d.status)" +
+                        " from OrderItem oi" +
+                        " join oi.order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds", OrderCancelLine.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * 주문 상태 bulk UPDATE
+     * 영속성 컨텍스트를 거치지 않으므로, 이미 로딩된 Order 엔티티의 상태는 바뀌지 않는다.
+     * @param ids
+     * @param status
+     * @return
+     */
+    public int updateStatus(Collection<Long> ids, OrderStatus status) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery("update Order o set o.status = :status where o.id in :ids")
+                .setParameter("status", status)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
     /**
      * 문자열로 쿼리 조립 및 실행, 권장 XX
      * 너무 어려우므로, 나중에 다시 공부. 동적 쿼리 등을 공부해야 한다.
@@ -35,6 +161,11 @@ public class OrderRepository {
      * @return
      */
     public List<Order> findAllByString(OrderSearch orderSearch) {
+        return shards.scatter(() -> initialized(findAllByStringOnShard(orderSearch)),
+                orderSearch.getSort().getOrderComparator(), MAX_RESULTS);
+    }
+
+    private List<Order> findAllByStringOnShard(OrderSearch orderSearch) {
         //language = JPAQL
         String jpql = "select o From Order o join o.member m";
         boolean isFirstCondition = true;
@@ -58,14 +189,77 @@ public class OrderRepository {
             }
             jpql += " m.name like :name";
         }
+        //주문 일시 검색
+        if (orderSearch.getOrderDateFrom() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.orderDate >= :orderDateFrom";
+        }
+        if (orderSearch.getOrderDateTo() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.orderDate < :orderDateTo";
+        }
+        //주문 금액, 수량 검색
+        if (orderSearch.getMinTotalPrice() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.totalPrice >= :minTotalPrice";
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.totalPrice <= :maxTotalPrice";
+        }
+        if (orderSearch.getMinItemCount() != null) {
+            if (isFirstCondition) {
+                jpql += " where";
+                isFirstCondition = false;
+            } else {
+                jpql += " and";
+            }
+            jpql += " o.itemCount >= :minItemCount";
+        }
+        jpql += orderSearch.getSort().getOrderBy();
 
-        TypedQuery<Order> query = em.createQuery(jpql, Order.class) .setMaxResults(1000); //최대 1000건
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class) .setMaxResults(MAX_RESULTS); //최대 1000건
         if (orderSearch.getOrderStatus() != null) {
             query = query.setParameter("status", orderSearch.getOrderStatus());
         }
         if (StringUtils.hasText(orderSearch.getMemberName())) {
             query = query.setParameter("name", orderSearch.getMemberName());
         }
+        if (orderSearch.getOrderDateFrom() != null) {
+            query = query.setParameter("orderDateFrom", orderSearch.getOrderDateFrom());
+        }
+        if (orderSearch.getOrderDateTo() != null) {
+            query = query.setParameter("orderDateTo", orderSearch.getOrderDateTo());
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            query = query.setParameter("minTotalPrice", orderSearch.getMinTotalPrice());
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            query = query.setParameter("maxTotalPrice", orderSearch.getMaxTotalPrice());
+        }
+        if (orderSearch.getMinItemCount() != null) {
+            query = query.setParameter("minItemCount", orderSearch.getMinItemCount());
+        }
         return query.getResultList();
     }
 
@@ -75,6 +269,11 @@ public class OrderRepository {
      * @return List<Order>
      */
     public List<Order> findAllByCriteria(OrderSearch orderSearch) {
+        return shards.scatter(() -> initialized(findAllByCriteriaOnShard(orderSearch)),
+                OrderSort.LATEST.getOrderComparator(), MAX_RESULTS);
+    }
+
+    private List<Order> findAllByCriteriaOnShard(OrderSearch orderSearch) {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Order> cq = cb.createQuery(Order.class);
         Root<Order> o = cq.from(Order.class);
@@ -95,8 +294,28 @@ public class OrderRepository {
             criteria.add(name);
         }
 
+        // 주문 일시 검색
+        if (orderSearch.getOrderDateFrom() != null) {
+            criteria.add(cb.greaterThanOrEqualTo(o.<LocalDateTime>get("orderDate"), orderSearch.getOrderDateFrom()));
+        }
+        if (orderSearch.getOrderDateTo() != null) {
+            criteria.add(cb.lessThan(o.<LocalDateTime>get("orderDate"), orderSearch.getOrderDateTo()));
+        }
+
+        // 주문 금액, 수량 검색
+        if (orderSearch.getMinTotalPrice() != null) {
+            criteria.add(cb.greaterThanOrEqualTo(o.<Integer>get("totalPrice"), orderSearch.getMinTotalPrice()));
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            criteria.add(cb.lessThanOrEqualTo(o.<Integer>get("totalPrice"), orderSearch.getMaxTotalPrice()));
+        }
+        if (orderSearch.getMinItemCount() != null) {
+            criteria.add(cb.greaterThanOrEqualTo(o.<Integer>get("itemCount"), orderSearch.getMinItemCount()));
+        }
+
         cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
-        TypedQuery<Order> query = em.createQuery(cq).setMaxResults(1000);
+        cq.orderBy(cb.desc(o.get("orderDate")), cb.desc(o.get("id")));
+        TypedQuery<Order> query = em.createQuery(cq).setMaxResults(MAX_RESULTS);
         return query.getResultList();
     }
 
@@ -110,23 +329,78 @@ public class OrderRepository {
      * join fetch 는 깊이가 있는 기술이며, 실무에서 많이 사용하기 때문에 100% 이해할 것.
      *
      * paging 가능
-     * @return
+     * @return 주문 일시 역순
      */
     public List<Order> findAllWithMemberDelivery() {
-        return em.createQuery(
+        return shards.scatter(() -> initialized(em.createQuery(
                 "select o from Order o" +
                         " join fetch o.member m" +
-                        " join fetch o.delivery d", Order.class
-        ).getResultList();
+                        " join fetch o.delivery d" +
+                        OrderSort.LATEST.getOrderBy(), Order.class
+        ).getResultList()), OrderSort.LATEST.getOrderComparator(), Integer.MAX_VALUE);
     }
 
+    /**
+     * @return 주문 일시 역순
+     */
     public List<OrderSimpleQueryDto> findOrderDtos() {
-        return em.createQuery(
+        return shards.scatter(() -> em.createQuery(
                 "select new jpabook.jpashop.repository.OrderSimpleQueryDto(o.id, m.name, o.orderDate, o.status, d.address) " +
                         " from Order o " +
                         " join o.member m" +
-                        " join o.delivery d", OrderSimpleQueryDto.class // <- 이 부분에서, OrderSimpleQueryDto 와 매핑 x
-                ).getResultList();
+                        " join o.delivery d" +
+                        OrderSort.LATEST.getOrderBy(), OrderSimpleQueryDto.class // <- 이 부분에서, OrderSimpleQueryDto 와 매핑 x
+                ).getResultList(), OrderSort.LATEST.getComparator(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 검색 조건을 적용해서 OrderSimpleQueryDto 로 바로 조회하는 메서드
+     * 아카이브 테이블과 결과를 합치기 위해 orderSearch.sort 순서로 가져온다.
+     * @param orderSearch
+     * @return
+     */
+    public List<OrderSimpleQueryDto> findOrderDtos(OrderSearch orderSearch) {
+        return shards.scatter(() -> findOrderDtosOnShard(orderSearch), orderSearch.getSort().getComparator(), MAX_RESULTS);
+    }
+
+    private List<OrderSimpleQueryDto> findOrderDtosOnShard(OrderSearch orderSearch) {
+        TypedQuery<OrderSimpleQueryDto> query = em.createQuery(
+                "select new jpabook.jpashop.repository.OrderSimpleQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        searchCondition(orderSearch) +
+                        orderSearch.getSort().getOrderBy(), OrderSimpleQueryDto.class)
+                .setMaxResults(MAX_RESULTS); //최대 1000건
+        return bindSearch(query, orderSearch).getResultList();
+    }
+
+    /**
+     * searchCondition 으로 만든 조건에 값을 바인딩
+     */
+    public static <T> TypedQuery<T> bindSearch(TypedQuery<T> query, OrderSearch orderSearch) {
+        if (orderSearch.getOrderStatus() != null) {
+            query.setParameter("status", orderSearch.getOrderStatus());
+        }
+        if (StringUtils.hasText(orderSearch.getMemberName())) {
+            query.setParameter("name", orderSearch.getMemberName());
+        }
+        if (orderSearch.getOrderDateFrom() != null) {
+            query.setParameter("orderDateFrom", orderSearch.getOrderDateFrom());
+        }
+        if (orderSearch.getOrderDateTo() != null) {
+            query.setParameter("orderDateTo", orderSearch.getOrderDateTo());
+        }
+        if (orderSearch.getMinTotalPrice() != null) {
+            query.setParameter("minTotalPrice", orderSearch.getMinTotalPrice());
+        }
+        if (orderSearch.getMaxTotalPrice() != null) {
+            query.setParameter("maxTotalPrice", orderSearch.getMaxTotalPrice());
+        }
+        if (orderSearch.getMinItemCount() != null) {
+            query.setParameter("minItemCount", orderSearch.getMinItemCount());
+        }
+        return query;
     }
 
     /**
@@ -161,16 +435,17 @@ public class OrderRepository {
      *
      * 컬렉션 페치 조인은 1개만 사용할 수 있다. 즉, 컬렉션 둘 이상에 fetch join 을 사용하면 안된다
      * 1 * N * M 만큼의 데이터가 부정합하게 조회될 수 있으며, 이는 에러를 야기한다.
-     * @return
+     * @return 주문 일시 역순
      */
     public List<Order> findAllWithItem() {
-        return em.createQuery(
+        return shards.scatter(() -> em.createQuery(
                 "select distinct o from Order o" +
                         " join fetch o.member m" +
                         " join fetch o.delivery d" +
                         " join fetch o.orderItems oi" +
-                        " join fetch oi.item", Order.class)
-                .getResultList();
+                        " join fetch oi.item" +
+                        OrderSort.LATEST.getOrderBy(), Order.class)
+                .getResultList(), OrderSort.LATEST.getOrderComparator(), Integer.MAX_VALUE);
     }
 
     /**
@@ -178,16 +453,89 @@ public class OrderRepository {
      * fetch join + paging 으로 가져오는 메서드
      * @param offset
      * @param limit
-     * @return
+     * @return 주문 일시 역순
      */
     public List<Order> findAllWithMemberDelivery(int offset, int limit) {
-        return em.createQuery(
+        return shards.scatter((shardOffset, shardLimit) -> initialized(em.createQuery(
                 "select o from Order o" +
                         " join fetch o.member m" +
-                        " join fetch o.delivery d", Order.class)
+                        " join fetch o.delivery d" +
+                        OrderSort.LATEST.getOrderBy(), Order.class)
+                .setFirstResult(shardOffset)
+                .setMaxResults(shardLimit)
+                .getResultList()), OrderSort.LATEST.getOrderComparator(), offset, limit);
+    }
+
+    /**
+     * fetch plan(엔티티 그래프) 을 골라서 검색 조건에 맞는 주문을 페이징 조회
+     * 화면마다 fetch join 메서드를 새로 만드는 대신, 필요한 연관관계만 plan 으로 지정한다.
+     *
+     * ToOne 만 가져오는 plan 은 그래프를 건 쿼리 한 번으로 페이징한다.
+     * 컬렉션(orderItems) 을 가져오는 plan 은 컬렉션 fetch join 과 페이징을 같이 쓰면 메모리에서 페이징하게 되므로,
+     *  1. 조건에 맞는 주문 id 를 페이징해서 조회하고
+     *  2. 그 id 들에 대해서만 그래프를 적용해서 한 번에 가져온다.
+     * @param orderSearch
+     * @param plan
+     * @param offset
+     * @param limit
+     * @return orderSearch.sort 순서 (기본 주문 일시 역순)
+     */
+    public List<Order> findAll(OrderSearch orderSearch, OrderFetchPlan plan, int offset, int limit) {
+        return shards.scatter((shardOffset, shardLimit) -> initialized(findAllOnShard(orderSearch, plan, shardOffset, shardLimit)),
+                orderSearch.getSort().getOrderComparator(), offset, limit);
+    }
+
+    private List<Order> findAllOnShard(OrderSearch orderSearch, OrderFetchPlan plan, int offset, int limit) {
+        if (!plan.fetchesCollection()) {
+            TypedQuery<Order> query = em.createQuery(
+                    "select o from Order o" +
+                            " join o.member m" +
+                            searchCondition(orderSearch) +
+                            orderSearch.getSort().getOrderBy(), Order.class)
+                    .setHint(FETCH_GRAPH_HINT, em.getEntityGraph(plan.getGraphName()))
+                    .setFirstResult(offset)
+                    .setMaxResults(limit);
+            return bindSearch(query, orderSearch).getResultList();
+        }
+
+        TypedQuery<Long> idQuery = em.createQuery(
+                "select o.id from Order o" +
+                        " join o.member m" +
+                        searchCondition(orderSearch) +
+                        orderSearch.getSort().getOrderBy(), Long.class)
                 .setFirstResult(offset)
-                .setMaxResults(limit)
+                .setMaxResults(limit);
+        List<Long> orderIds = bindSearch(idQuery, orderSearch).getResultList();
+        if (orderIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Order> orders = em.createQuery(
+                "select distinct o from Order o where o.id in :orderIds", Order.class)
+                .setParameter("orderIds", orderIds)
+                .setHint(FETCH_GRAPH_HINT, em.getEntityGraph(plan.getGraphName()))
                 .getResultList();
+
+        // in 절 조회는 순서를 보장하지 않으므로, id 페이지의 순서대로 다시 정렬
+        Map<Long, Order> orderMap = orders.stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        return orderIds.stream()
+                .map(orderMap::get)
+                .collect(Collectors.toList());
     }
 
-}
\ No newline at end of file
+    /**
+     * 샤드에서 읽은 주문은 샤드 트랜잭션이 끝나면 준영속이 되므로, 응답에서 쓰는 연관관계(회원, 배송, 주문상품, 상품) 를 미리 초기화한다.
+     * default_batch_fetch_size 로 묶어서 읽는다. 샤딩을 끄면 그대로 돌려준다.
+     */
+    private List<Order> initialized(List<Order> orders) {
+        if (shards.isSharded()) {
+            for (Order order : orders) {
+                Hibernate.initialize(order.getMember());
+                Hibernate.initialize(order.getDelivery());
+                order.getOrderItems().forEach(orderItem -> Hibernate.initialize(orderItem.getItem()));
+            }
+        }
+        return orders;
+    }
+}
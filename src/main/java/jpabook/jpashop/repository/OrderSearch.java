@@ -3,6 +3,9 @@ package jpabook.jpashop.repository;
 import jpabook.jpashop.domain.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
 
 @Getter
 @Setter
@@ -10,4 +13,20 @@ public class OrderSearch {
     private String memberName;
     private OrderStatus orderStatus;
 
+    // 주문 일시 검색 범위, [orderDateFrom, orderDateTo)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime orderDateFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime orderDateTo;
+
+    // 주문 금액 범위, [minTotalPrice, maxTotalPrice]
+    private Integer minTotalPrice;
+    private Integer maxTotalPrice;
+    private Integer minItemCount; // 주문 수량 합계 하한
+
+    private OrderSort sort = OrderSort.LATEST;
+
+    public OrderSort getSort() {
+        return sort == null ? OrderSort.LATEST : sort;
+    }
 }
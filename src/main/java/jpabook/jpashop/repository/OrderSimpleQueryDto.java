@@ -14,6 +14,8 @@ public class OrderSimpleQueryDto {
     private LocalDateTime orderDate;
     private OrderStatus orderStatus;
     private Address address; //
+    private int totalPrice;
+    private int itemCount;
 
     public OrderSimpleQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address) {
 
@@ -24,5 +26,12 @@ public class OrderSimpleQueryDto {
         this.orderStatus = orderStatus;
         this.address = address;
     }
+
+    public OrderSimpleQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address,
+                               int totalPrice, int itemCount) {
+        this(orderId, name, orderDate, orderStatus, address);
+        this.totalPrice = totalPrice;
+        this.itemCount = itemCount;
+    }
 }
 
@@ -0,0 +1,48 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Order;
+
+import java.util.Comparator;
+
+/**
+ * 주문 검색 정렬 기준
+ * order by 절과, 운영/아카이브 또는 샤드별 결과를 합칠 때 쓰는 같은 기준의 Comparator 를 함께 가진다.
+ */
+public enum OrderSort {
+    LATEST(" order by o.orderDate desc, o.id desc",
+            Comparator.comparing(OrderSimpleQueryDto::getOrderDate).reversed()
+                    .thenComparing(OrderSimpleQueryDto::getOrderId, Comparator.reverseOrder()),
+            Comparator.comparing(Order::getOrderDate).reversed()
+                    .thenComparing(Order::getId, Comparator.reverseOrder())),
+    // 금액 큰 순서, idx_orders_total_price 를 탄다.
+    TOTAL_PRICE(" order by o.totalPrice desc, o.id desc",
+            Comparator.comparingInt(OrderSimpleQueryDto::getTotalPrice).reversed()
+                    .thenComparing(OrderSimpleQueryDto::getOrderId, Comparator.reverseOrder()),
+            Comparator.comparingInt(Order::getTotalPrice).reversed()
+                    .thenComparing(Order::getId, Comparator.reverseOrder()));
+
+    private final String orderBy;
+    private final Comparator<OrderSimpleQueryDto> comparator;
+    private final Comparator<Order> orderComparator;
+
+    OrderSort(String orderBy, Comparator<OrderSimpleQueryDto> comparator, Comparator<Order> orderComparator) {
+        this.orderBy = orderBy;
+        this.comparator = comparator;
+        this.orderComparator = orderComparator;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public Comparator<OrderSimpleQueryDto> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * 엔티티로 조회한 결과를 합칠 때
+     */
+    public Comparator<Order> getOrderComparator() {
+        return orderComparator;
+    }
+}
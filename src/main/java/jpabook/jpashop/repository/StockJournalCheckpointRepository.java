@@ -0,0 +1,35 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.StockJournalCheckpoint;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+@Repository
+@RequiredArgsConstructor
+public class StockJournalCheckpointRepository {
+    private final EntityManager em;
+
+    /**
+     * 체크포인트 row 를 잠금과 함께 조회, 없으면 만든다.
+     * @return
+     */
+    public StockJournalCheckpoint findForUpdate() {
+        StockJournalCheckpoint checkpoint = em.find(StockJournalCheckpoint.class, StockJournalCheckpoint.ID, LockModeType.PESSIMISTIC_WRITE);
+        if (checkpoint == null) {
+            checkpoint = StockJournalCheckpoint.create();
+            em.persist(checkpoint);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return 반영된 마지막 세그먼트 번호, 체크포인트가 없으면 0
+     */
+    public long findLastSegment() {
+        StockJournalCheckpoint checkpoint = em.find(StockJournalCheckpoint.class, StockJournalCheckpoint.ID);
+        return checkpoint == null ? 0 : checkpoint.getLastSegment();
+    }
+}
@@ -0,0 +1,118 @@
+package jpabook.jpashop.repository.order.archive;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSimpleQueryDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 오래된 주문 중 끝난 주문을 orders / order_item / delivery 에서
+ * orders_archive / order_item_archive / delivery_archive 로 옮기고, 아카이브를 조회하는 repository
+ *
+ * 엔티티를 하나씩 로딩하지 않고, 청크 단위의 insert ... select / delete 로 옮긴다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderArchiveRepository {
+    private final EntityManager em;
+
+    /**
+     * cutoff 이전에 생성되어 끝난(취소 또는 배송 완료) 주문의 id 를 오래된 순으로 limit 개 조회
+     * 진행 중인 주문은 취소/배송 처리가 운영 테이블에서 찾을 수 있도록 남긴다.
+     * @param cutoff
+     * @param limit
+     * @return orderIds
+     */
+    public List<Long> findArchivableOrderIds(LocalDateTime cutoff, int limit) {
+        return em.createQuery(
+                "select o.id from Order o" +
+                        " join o.delivery d" +
+                        " where o.orderDate < :cutoff" +
+                        " and (o.status = :cancel or d.status = :comp)" +
+                        " order by o.orderDate", Long.class)
+                .setParameter("cutoff", cutoff)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 주문들을 아카이브 테이블로 옮긴다.
+     * FK 순서에 맞춰 delivery -> orders -> order_item 순으로 복사하고, 역순으로 삭제한다.
+     * 반드시 트랜잭션 안에서 호출해야 한다.
+     * @param orderIds
+     * @return 옮긴 주문 수
+     */
+    public int moveToArchive(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        // 영속성 컨텍스트에 남아있는 변경분을 먼저 반영
+        em.flush();
+
+        List<Long> deliveryIds = ((List<?>) em.createNativeQuery(
+                "select delivery_id from orders where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .getResultList()).stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toList());
+
+        em.createNativeQuery(
+                "insert into delivery_archive (id, city, street, zipcode, status)" +
+                        " select id, city, street, zipcode, status from delivery where id in (:deliveryIds)")
+                .setParameter("deliveryIds", deliveryIds)
+                .executeUpdate();
+        int moved = em.createNativeQuery(
+                "insert into orders_archive (order_id, member_id, delivery_id, order_date, status, total_price, item_count)" +
+                        " select order_id, member_id, delivery_id, order_date, status, total_price, item_count from orders where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.createNativeQuery(
+                "insert into order_item_archive (order_item_id, order_id, item_id, order_price, count)" +
+                        " select order_item_id, order_id, item_id, order_price, count from order_item where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+
+        em.createNativeQuery("delete from order_item where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.createNativeQuery("delete from orders where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.createNativeQuery("delete from delivery where id in (:deliveryIds)")
+                .setParameter("deliveryIds", deliveryIds)
+                .executeUpdate();
+
+        // 삭제된 주문이 1차 캐시에 남지 않도록 비움
+        em.clear();
+        return moved;
+    }
+
+    /**
+     * 아카이브 테이블에서 검색 조건에 맞는 주문을 조회
+     * OrderRepository.findOrderDtos(OrderSearch) 와 같은 모양의 결과를 돌려준다.
+     * @param orderSearch
+     * @return
+     */
+    public List<OrderSimpleQueryDto> findOrderDtos(OrderSearch orderSearch) {
+        TypedQuery<OrderSimpleQueryDto> query = em.createQuery(
+                "select new jpabook.jpashop.repository.OrderSimpleQueryDto(o.id, m.name, o.orderDate, o.status, d.address, o.totalPrice, o.itemCount)" +
+                        " from OrderArchive o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        OrderRepository.searchCondition(orderSearch) +
+                        orderSearch.getSort().getOrderBy(), OrderSimpleQueryDto.class)
+                .setMaxResults(1000); //최대 1000건
+        return OrderRepository.bindSearch(query, orderSearch).getResultList();
+    }
+}
@@ -0,0 +1,70 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.exception.UnknownFieldException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * sparse fieldset 으로 요청할 수 있는 주문 필드
+ * 필드 이름은 OrderQueryDto 의 JSON 필드 이름과 같다.
+ * join 이 필요한 필드를 요청했을 때만 해당 엔티티를 join 한다.
+ */
+public enum OrderField {
+    ORDER_ID("orderId", "o.id", null),
+    NAME("name", "m.name", " join o.member m"),
+    ORDER_DATE("orderDate", "o.orderDate", null),
+    ORDER_STATUS("orderStatus", "o.status", null),
+    ADDRESS("address", "d.address", " join o.delivery d"),
+    ORDER_ITEMS("orderItems", null, null); // 별도 쿼리(findOrderItemMap) 로 가져옴
+
+    private final String fieldName;
+    private final String selectExpression;
+    private final String join;
+
+    OrderField(String fieldName, String selectExpression, String join) {
+        this.fieldName = fieldName;
+        this.selectExpression = selectExpression;
+        this.join = join;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    String getSelectExpression() {
+        return selectExpression;
+    }
+
+    String getJoin() {
+        return join;
+    }
+
+    /**
+     * "orderId,orderStatus,orderDate" 형태의 문자열을 파싱
+     * orderId 는 orderItems 를 붙이는 키로도 쓰이므로 항상 포함한다.
+     * 모르는 필드가 있으면 UnknownFieldException (400)
+     * @param fields
+     * @return
+     */
+    public static Set<OrderField> parse(String fields) {
+        Set<OrderField> result = EnumSet.of(ORDER_ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            result.add(fromFieldName(trimmed));
+        }
+        return result;
+    }
+
+    private static OrderField fromFieldName(String fieldName) {
+        for (OrderField field : values()) {
+            if (field.fieldName.equals(fieldName)) {
+                return field;
+            }
+        }
+        throw new UnknownFieldException("알 수 없는 필드입니다: " + fieldName);
+    }
+}
@@ -1,12 +1,15 @@
 package jpabook.jpashop.repository.order.query;
 
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.shard.Shards;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
-import java.util.List;
-import java.util.Map;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -16,19 +19,39 @@ import java.util.stream.Collectors;
  * findOrderQueryDtos 메서드를 별도로 만든 이유
  *  orderQueryDto 를 참조하게 되면, repository 가 controller 를 순환참조 하게 됨
  *  OrderQueryDto 를 따라서 같은 패키지에 넣게 되었음1
+ * 샤딩을 켜면 주문 목록 조회는 모든 샤드에서 병렬로 조회해서 주문 일시 역순으로 합친다. (Shards.scatter)
+ * 회원 주문 내역은 회원의 샤드에서만 조회한다. (MemberOrderHistoryService)
  */
 @Repository
 @RequiredArgsConstructor
 public class OrderQueryRepository {
+    // 목록 조회의 정렬, 샤드별 결과를 합치는 순서와 같다.
+    private static final String LATEST = " order by o.orderDate desc, o.id desc";
+    private static final Comparator<OrderQueryDto> LATEST_ORDER = Comparator.comparing(OrderQueryDto::getOrderDate).reversed()
+            .thenComparing(OrderQueryDto::getOrderId, Comparator.reverseOrder());
+    private static final Comparator<OrderFlatDto> LATEST_FLAT = Comparator.comparing(OrderFlatDto::getOrderDate).reversed()
+            .thenComparing(OrderFlatDto::getOrderId, Comparator.reverseOrder());
+    private static final Comparator<Map<String, Object>> LATEST_FIELDS =
+            Comparator.comparing((Map<String, Object> o) -> (LocalDateTime) o.get(OrderField.ORDER_DATE.getFieldName())).reversed()
+                    .thenComparing(o -> (Long) o.get(OrderField.ORDER_ID.getFieldName()), Comparator.reverseOrder());
+
     private final EntityManager em;
+    private final Shards shards;
+
+    // sparse fieldset 조회에서 필드 조합별로 만든 JPQL
+    private final Map<Set<OrderField>, String> fieldQueryCache = new ConcurrentHashMap<>();
 
     /**
      * OrderQueryDto 의 배열을 리턴하는 메서드
      * findOrders 메서드를 통해 Order 객체와, ToOne 관계인 엔티티를 먼저 조회
      * 이후, findOrderItems() 메서드를 통해 연관된 OrderItems 객체들을 조회
-     * @return
+     * @return 주문 일시 역순
      */
     public List<OrderQueryDto> findOrderQueryDtos() {
+        return shards.scatter(this::findOrderQueryDtosOnShard, LATEST_ORDER, Integer.MAX_VALUE);
+    }
+
+    private List<OrderQueryDto> findOrderQueryDtosOnShard() {
         List<OrderQueryDto> result = findOrders();
 
         // result 는 연관 관계가 있는 orderItems 를 아직 불러오지 않은 order 들의 컬렉션
@@ -68,7 +91,8 @@ public class OrderQueryRepository {
                         "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
                                 " from Order o" +
                                 " join o.member m" +
-                                " join o.delivery d", OrderQueryDto.class
+                                " join o.delivery d" +
+                                LATEST, OrderQueryDto.class
                 ).getResultList();
     }
 
@@ -77,9 +101,13 @@ public class OrderQueryRepository {
      * 이후, result 의 orderId 를 가져옴 (쿼리 X)
      * 해당 orderId 를 JPQL 의 IN 키워드에 바인딩 해줌으로써, 컬렉션 조회를 단 한번의 쿼리만 나가게 함
      *
-     * @return
+     * @return 주문 일시 역순
      */
     public List<OrderQueryDto> findAllByDto_optimization() {
+        return shards.scatter(this::findAllByDto_optimizationOnShard, LATEST_ORDER, Integer.MAX_VALUE);
+    }
+
+    private List<OrderQueryDto> findAllByDto_optimizationOnShard() {
         List<OrderQueryDto> result = findOrders(); // root 쿼리 1번
 
         // 주문 ID 를 조회해 옴
@@ -127,16 +155,133 @@ public class OrderQueryRepository {
     }
 
     /**
-     * @return
+     * @return 주문 일시 역순, 같은 주문의 row 는 붙어 있다.
      */
     public List<OrderFlatDto> findAllByDto_flat() {
-        return em.createQuery(
+        return shards.scatter(() -> em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i ", OrderFlatDto.class)
-                .getResultList();
+                        " join oi.item i " +
+                        LATEST, OrderFlatDto.class)
+                .getResultList(), LATEST_FLAT, Integer.MAX_VALUE);
+    }
+
+    /**
+     * sparse fieldset 조회
+     * 요청한 필드만 select 하고, 그 필드에 필요한 join 만 건다. (name -> member, address -> delivery)
+     * orderItems 를 요청하지 않으면 findOrderItemMap 쿼리를 아예 실행하지 않는다.
+     * 필드 조합별로 만든 JPQL 은 캐시해서 재사용한다.
+     * 샤딩을 켜면 합치는 데 필요한 orderId, orderDate 를 함께 읽고, 요청하지 않았으면 합친 뒤에 뺀다.
+     * @param fields
+     * @return 필드 이름 -> 값, 요청한 필드만 들어있다. 주문 일시 역순
+     */
+    public List<Map<String, Object>> findAllByDto_fields(Set<OrderField> fields) {
+        if (!shards.isSharded()) {
+            return findAllByDto_fieldsOnShard(fields);
+        }
+        Set<OrderField> withSortKeys = EnumSet.copyOf(fields);
+        withSortKeys.add(OrderField.ORDER_ID);
+        withSortKeys.add(OrderField.ORDER_DATE);
+        List<Map<String, Object>> result = shards.scatter(() -> findAllByDto_fieldsOnShard(withSortKeys), LATEST_FIELDS, Integer.MAX_VALUE);
+        for (OrderField sortKey : EnumSet.of(OrderField.ORDER_ID, OrderField.ORDER_DATE)) {
+            if (!fields.contains(sortKey)) {
+                result.forEach(o -> o.remove(sortKey.getFieldName()));
+            }
+        }
+        return result;
+    }
+
+    private List<Map<String, Object>> findAllByDto_fieldsOnShard(Set<OrderField> fields) {
+        List<OrderField> columns = fields.stream()
+                .filter(f -> f.getSelectExpression() != null)
+                .collect(Collectors.toList());
+        String jpql = fieldQueryCache.computeIfAbsent(EnumSet.copyOf(fields), k -> buildFieldQuery(columns));
+
+        List<?> rows = em.createQuery(jpql).getResultList();
+        List<Map<String, Object>> result = rows.stream()
+                .map(r -> {
+                    // select 항목이 하나면 Object[] 가 아니라 값 자체가 넘어온다.
+                    Object[] row = r instanceof Object[] ? (Object[]) r : new Object[]{r};
+                    Map<String, Object> order = new LinkedHashMap<>();
+                    for (int i = 0; i < columns.size(); i++) {
+                        order.put(columns.get(i).getFieldName(), row[i]);
+                    }
+                    return order;
+                })
+                .collect(Collectors.toList());
+
+        if (fields.contains(OrderField.ORDER_ITEMS) && !result.isEmpty()) {
+            List<Long> orderIds = result.stream()
+                    .map(o -> (Long) o.get(OrderField.ORDER_ID.getFieldName()))
+                    .collect(Collectors.toList());
+            Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(orderIds);
+            result.forEach(o -> o.put(OrderField.ORDER_ITEMS.getFieldName(),
+                    orderItemMap.getOrDefault((Long) o.get(OrderField.ORDER_ID.getFieldName()), Collections.emptyList())));
+        }
+        return result;
+    }
+
+    /**
+     * columns 순서대로 select 절을 만들고, 필요한 join 만 붙인다.
+     */
+    private String buildFieldQuery(List<OrderField> columns) {
+        String select = columns.stream()
+                .map(OrderField::getSelectExpression)
+                .collect(Collectors.joining(", "));
+        String joins = columns.stream()
+                .map(OrderField::getJoin)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining());
+        return "select " + select + " from Order o" + joins + LATEST;
+    }
+
+    /**
+     * 회원의 주문 내역을 keyset 방식으로 페이징 조회
+     * offset 대신 직전 페이지의 마지막 (orderDate, orderId) 다음부터 읽으므로, 뒤 페이지로 가도 비용이 늘지 않는다.
+     * (member_id, order_date, order_id) 인덱스를 탄다.
+     * 주문 상품은 페이지 단위로 findOrderItemMap 한 번에 가져온다.
+     * @param memberId
+     * @param cursorDate 직전 페이지 마지막 주문의 일시, 첫 페이지면 null
+     * @param cursorId 직전 페이지 마지막 주문의 id
+     * @param limit
+     * @return 주문 일시 역순
+     */
+    public List<OrderQueryDto> findMemberOrders(Long memberId, LocalDateTime cursorDate, Long cursorId, int limit) {
+        String jpql = "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
+                " from Order o" +
+                " join o.member m" +
+                " join o.delivery d" +
+                " where o.member.id = :memberId";
+        if (cursorDate != null) {
+            jpql += " and (o.orderDate < :cursorDate or (o.orderDate = :cursorDate and o.id < :cursorId))";
+        }
+        jpql += " order by o.orderDate desc, o.id desc";
+
+        TypedQuery<OrderQueryDto> query = em.createQuery(jpql, OrderQueryDto.class)
+                .setParameter("memberId", memberId)
+                .setMaxResults(limit);
+        if (cursorDate != null) {
+            query.setParameter("cursorDate", cursorDate)
+                    .setParameter("cursorId", cursorId);
+        }
+        List<OrderQueryDto> result = query.getResultList();
+
+        if (!result.isEmpty()) {
+            Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
+            result.forEach(o -> o.setOrderItems(orderItemMap.getOrDefault(o.getOrderId(), Collections.emptyList())));
+        }
+        return result;
+    }
+
+    /**
+     * 회원의 전체 주문 수
+     */
+    public long countMemberOrders(Long memberId) {
+        return em.createQuery("select count(o) from Order o where o.member.id = :memberId", Long.class)
+                .setParameter("memberId", memberId)
+                .getSingleResult();
     }
 }
@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository.sales;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class DailySalesDto {
+    private LocalDate salesDate;
+    private long units;
+    private long revenue;
+    private long cancelledUnits;
+
+    public DailySalesDto(LocalDate salesDate, long units, long revenue, long cancelledUnits) {
+        this.salesDate = salesDate;
+        this.units = units;
+        this.revenue = revenue;
+        this.cancelledUnits = cancelledUnits;
+    }
+}
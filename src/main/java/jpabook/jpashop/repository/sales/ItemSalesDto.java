@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository.sales;
+
+import lombok.Data;
+
+@Data
+public class ItemSalesDto {
+    private Long itemId;
+    private String itemName;
+    private long units;
+    private long revenue;
+    private long cancelledUnits;
+
+    public ItemSalesDto(Long itemId, String itemName, long units, long revenue, long cancelledUnits) {
+        this.itemId = itemId;
+        this.itemName = itemName;
+        this.units = units;
+        this.revenue = revenue;
+        this.cancelledUnits = cancelledUnits;
+    }
+}
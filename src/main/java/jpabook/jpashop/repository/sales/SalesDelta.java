@@ -0,0 +1,24 @@
+package jpabook.jpashop.repository.sales;
+
+import lombok.Getter;
+
+/**
+ * 판매 집계의 증감분, 불변 객체
+ * 같은 (상품, 일자) 의 증감분은 plus 로 합쳐서 한 번의 upsert 로 반영한다.
+ */
+@Getter
+public class SalesDelta {
+    private final long units;
+    private final long revenue;
+    private final long cancelledUnits;
+
+    public SalesDelta(long units, long revenue, long cancelledUnits) {
+        this.units = units;
+        this.revenue = revenue;
+        this.cancelledUnits = cancelledUnits;
+    }
+
+    public SalesDelta plus(SalesDelta other) {
+        return new SalesDelta(units + other.units, revenue + other.revenue, cancelledUnits + other.cancelledUnits);
+    }
+}
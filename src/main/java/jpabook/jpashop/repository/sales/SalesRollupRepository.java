@@ -0,0 +1,152 @@
+package jpabook.jpashop.repository.sales;
+
+import jpabook.jpashop.domain.SalesRollupId;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sales_rollup 테이블에 증감분을 upsert 하고, 기간 집계를 조회하는 repository
+ */
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupRepository {
+    private final EntityManager em;
+
+    /**
+     * (상품, 일자) row 에 증감분을 더한다. row 가 없으면 새로 만든다.
+     * SalesRollupFlushJob.flush 한 곳에서만 호출되므로, 같은 키로 동시에 insert 되는 경우는 없다.
+     * @param id
+     * @param delta
+     */
+    public void upsert(SalesRollupId id, SalesDelta delta) {
+        int updated = em.createNativeQuery(
+                "update sales_rollup" +
+                        " set units = units + :units, revenue = revenue + :revenue, cancelled_units = cancelled_units + :cancelledUnits" +
+                        " where item_id = :itemId and sales_date = :salesDate")
+                .setParameter("units", delta.getUnits())
+                .setParameter("revenue", delta.getRevenue())
+                .setParameter("cancelledUnits", delta.getCancelledUnits())
+                .setParameter("itemId", id.getItemId())
+                .setParameter("salesDate", id.getSalesDate())
+                .executeUpdate();
+        if (updated == 0) {
+            em.createNativeQuery(
+                    "insert into sales_rollup (item_id, sales_date, units, revenue, cancelled_units)" +
+                            " values (:itemId, :salesDate, :units, :revenue, :cancelledUnits)")
+                    .setParameter("itemId", id.getItemId())
+                    .setParameter("salesDate", id.getSalesDate())
+                    .setParameter("units", delta.getUnits())
+                    .setParameter("revenue", delta.getRevenue())
+                    .setParameter("cancelledUnits", delta.getCancelledUnits())
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * 기간 [from, to] 의 집계를 지우고, 주문상품(운영 + 아카이브 테이블) 에서 다시 만든다.
+     * @return 만들어진 row 수
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        delete(from, to);
+        return em.createNativeQuery(
+                "insert into sales_rollup (item_id, sales_date, units, revenue, cancelled_units)" +
+                        " select item_id, sales_date, sum(units), sum(revenue), sum(cancelled_units) from (" +
+                        orderLines("orders", "order_item") +
+                        " union all " +
+                        orderLines("orders_archive", "order_item_archive") +
+                        " ) lines group by item_id, sales_date")
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.plusDays(1).atStartOfDay())
+                .executeUpdate();
+    }
+
+    /**
+     * 기간 [from, to] 의 집계를 지우고 rows 로 바꾼다. 주문상품을 샤드마다 합친 경우에 쓴다. (샤딩)
+     * @return 만들어진 row 수
+     */
+    public int replace(LocalDate from, LocalDate to, Map<SalesRollupId, SalesDelta> rows) {
+        delete(from, to);
+        rows.forEach(this::upsert);
+        return rows.size();
+    }
+
+    /**
+     * 기간 [from, to] 의 주문상품(운영 + 아카이브 테이블) 을 (상품, 일자) 별로 합친다.
+     */
+    public Map<SalesRollupId, SalesDelta> sumOrderLines(LocalDate from, LocalDate to) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery(
+                "select item_id, sales_date, sum(units), sum(revenue), sum(cancelled_units) from (" +
+                        orderLines("orders", "order_item") +
+                        " union all " +
+                        orderLines("orders_archive", "order_item_archive") +
+                        " ) lines group by item_id, sales_date")
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.plusDays(1).atStartOfDay())
+                .getResultList();
+        Map<SalesRollupId, SalesDelta> sums = new HashMap<>();
+        for (Object[] row : rows) {
+            sums.put(new SalesRollupId(((Number) row[0]).longValue(), ((Date) row[1]).toLocalDate()),
+                    new SalesDelta(((Number) row[2]).longValue(), ((Number) row[3]).longValue(), ((Number) row[4]).longValue()));
+        }
+        return sums;
+    }
+
+    private void delete(LocalDate from, LocalDate to) {
+        em.createNativeQuery("delete from sales_rollup where sales_date between :from and :to")
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .executeUpdate();
+    }
+
+    /**
+     * 주문상품 한 건의 증감분, SalesRollupAccumulator 와 같은 규칙이다. (취소된 주문은 순 판매 0, 취소 수량만 남는다)
+     */
+    private static String orderLines(String ordersTable, String orderItemTable) {
+        return "select oi.item_id, cast(o.order_date as date) sales_date," +
+                " case when o.status = 'ORDER' then oi.count else 0 end units," +
+                " case when o.status = 'ORDER' then oi.order_price * oi.count else 0 end revenue," +
+                " case when o.status = 'CANCEL' then oi.count else 0 end cancelled_units" +
+                " from " + orderItemTable + " oi join " + ordersTable + " o on o.order_id = oi.order_id" +
+                " where o.order_date >= :from and o.order_date < :to";
+    }
+
+    /**
+     * 기간 [from, to] 의 일자별 합계
+     */
+    public List<DailySalesDto> findDailySales(LocalDate from, LocalDate to) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.sales.DailySalesDto(r.id.salesDate, sum(r.units), sum(r.revenue), sum(r.cancelledUnits))" +
+                        " from SalesRollup r" +
+                        " where r.id.salesDate between :from and :to" +
+                        " group by r.id.salesDate" +
+                        " order by r.id.salesDate", DailySalesDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    /**
+     * 기간 [from, to] 동안 판매 수량이 많은 상품 limit 개
+     */
+    public List<ItemSalesDto> findTopSellers(LocalDate from, LocalDate to, int limit) {
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.sales.ItemSalesDto(i.id, i.name, sum(r.units), sum(r.revenue), sum(r.cancelledUnits))" +
+                        " from SalesRollup r, Item i" +
+                        " where i.id = r.id.itemId" +
+                        " and r.id.salesDate between :from and :to" +
+                        " group by i.id, i.name" +
+                        " order by sum(r.units) desc, sum(r.revenue) desc", ItemSalesDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 회원 이름, 상품 이름 자동완성 색인
+ * 기동 시 AutocompleteIndexLoader 가 채우고, 이후에는 NameIndexListener 가 커밋된 저장/수정을 반영한다.
+ */
+@Component
+public class AutocompleteIndex {
+    private final NameIndex members = new NameIndex();
+    private final NameIndex items = new NameIndex();
+
+    public NameIndex members() {
+        return members;
+    }
+
+    public NameIndex items() {
+        return items;
+    }
+}
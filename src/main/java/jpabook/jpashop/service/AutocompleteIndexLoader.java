@@ -0,0 +1,30 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.MemberRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+/**
+ * 기동 시 (웹 서버가 요청을 받기 전) 회원/상품 이름을 자동완성 색인에 적재한다.
+ * 그 사이 NameIndexListener 가 넣은 값이 더 최신이므로 덮어쓰지 않는다.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AutocompleteIndexLoader implements SmartInitializingSingleton {
+    private final AutocompleteIndex autocompleteIndex;
+    private final MemberRepository memberRepository;
+    private final ItemRepository itemRepository;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        memberRepository.findAllNames().forEach(m -> autocompleteIndex.members().putIfAbsent(m.getId(), m.getName()));
+        itemRepository.findAllNames().forEach(i -> autocompleteIndex.items().putIfAbsent(i.getId(), i.getName()));
+        log.info("autocomplete index: {} members, {} items in {} ms",
+                autocompleteIndex.members().size(), autocompleteIndex.items().size(), System.currentTimeMillis() - start);
+    }
+}
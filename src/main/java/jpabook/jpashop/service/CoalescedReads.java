@@ -0,0 +1,102 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.MemberRepositoryOld;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 몰리는 조회 (상품 단건, 회원 목록) 를 SingleFlight 로 합친다. (jpashop.single-flight.*)
+ *
+ * 합친 결과는 여러 요청 스레드가 같이 쓰므로, 호출한 쪽 영속성 컨텍스트가 아닌 전용 EntityManager 로 읽고 바로 닫는다.
+ * 즉 결과는 준영속 엔티티이고, 화면/응답에 읽기 용도로만 쓴다. (지연 로딩 연관관계는 읽을 수 없다)
+ * 쓰기 트랜잭션 안에서 부르면 커밋 전 변경이 보여야 하므로 합치지 않고 fallback 을 실행한다.
+ * 상품/회원이 바뀌면 커밋 후에 남아 있는 결과를 버린다. 다른 인스턴스의 변경이나 주문으로 인한 재고 변경은 staleness-ms 만큼 늦게 보일 수 있다.
+ */
+@Component
+public class CoalescedReads {
+    private static final String ALL = "all";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean enabled;
+    private final SingleFlight<Long, Item> items;
+    private final SingleFlight<String, List<Member>> members;
+
+    public CoalescedReads(EntityManagerFactory entityManagerFactory,
+                          MeterRegistry meterRegistry,
+                          @Value("${jpashop.single-flight.enabled:true}") boolean enabled,
+                          @Value("${jpashop.single-flight.staleness-ms:0}") long stalenessMillis) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.enabled = enabled;
+        this.items = new SingleFlight<>("item", Duration.ofMillis(stalenessMillis), meterRegistry);
+        this.members = new SingleFlight<>("members", Duration.ofMillis(stalenessMillis), meterRegistry);
+    }
+
+    /**
+     * @param fallback 합치지 않을 때 실행할 조회 (호출한 쪽 영속성 컨텍스트 사용)
+     */
+    public Item findItem(Long itemId, Supplier<Item> fallback) {
+        if (!coalescing()) {
+            return fallback.get();
+        }
+        return items.get(itemId, () -> read(em -> new ItemRepository(em).findOne(itemId)));
+    }
+
+    /**
+     * 호출마다 새 리스트로 돌려준다. (엔티티는 공유)
+     */
+    public List<Member> findMembers(Supplier<List<Member>> fallback) {
+        if (!coalescing()) {
+            return fallback.get();
+        }
+        return new ArrayList<>(members.get(ALL, () -> read(em -> new MemberRepositoryOld(em).findAll())));
+    }
+
+    public void itemChanged(Long itemId) {
+        afterCommit(() -> items.invalidate(itemId));
+    }
+
+    public void membersChanged() {
+        afterCommit(members::invalidateAll);
+    }
+
+    private boolean coalescing() {
+        return enabled && !(TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    private <T> T read(Function<EntityManager, T> query) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return query.apply(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
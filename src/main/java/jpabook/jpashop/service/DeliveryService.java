@@ -0,0 +1,133 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.DeliveryJobStatus;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.DeliveryStatusJob;
+import jpabook.jpashop.repository.DeliveryRepository;
+import jpabook.jpashop.repository.DeliverySearch;
+import jpabook.jpashop.repository.DeliveryStatusJobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 배송 상태 변경 서비스
+ * Order / Delivery 엔티티를 하나씩 로딩하지 않고, 청크 단위 bulk UPDATE 로 처리한다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class DeliveryService {
+    private final DeliveryRepository deliveryRepository;
+    private final DeliveryStatusJobRepository deliveryStatusJobRepository;
+
+    @Value("${jpashop.delivery.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * 배송 id 목록의 상태를 한 번에 변경
+     * IN 절이 너무 길어지지 않도록 chunkSize 단위로 나눠서 UPDATE 한다.
+     * @param deliveryIds
+     * @param status
+     * @return 변경된 배송 수
+     */
+    @Transactional
+    public int updateStatus(List<Long> deliveryIds, DeliveryStatus status) {
+        int updated = 0;
+        for (int from = 0; from < deliveryIds.size(); from += chunkSize) {
+            List<Long> chunk = deliveryIds.subList(from, Math.min(from + chunkSize, deliveryIds.size()));
+            List<Long> targetIds = deliveryRepository.findTransitionTargetIds(chunk, status);
+            updated += deliveryRepository.updateStatus(targetIds, status);
+        }
+        return updated;
+    }
+
+    /**
+     * 조건에 맞는 배송 상태 변경 작업을 등록. 실제 처리는 DeliveryStatusJobRunner 가 한다.
+     * @param search
+     * @return jobId
+     */
+    @Transactional
+    public Long submitJob(DeliverySearch search) {
+        if (search.getTargetStatus() == null) {
+            throw new IllegalArgumentException("변경할 배송 상태가 필요합니다");
+        }
+        DeliveryStatusJob job = DeliveryStatusJob.create(
+                search.getTargetStatus(), search.getOrderDateFrom(), search.getOrderDateTo());
+        deliveryStatusJobRepository.save(job);
+        return job.getId();
+    }
+
+    /**
+     * 작업의 다음 청크를 처리. 청크의 UPDATE 와 진행 상황 기록이 같은 트랜잭션에 묶인다.
+     * @param jobId
+     * @return 더 처리할 청크가 남아 있으면 true
+     */
+    @Transactional
+    public boolean runChunk(Long jobId) {
+        DeliveryStatusJob job = deliveryStatusJobRepository.findById(jobId).get();
+        if (job.isFinished()) {
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Long> targetIds = findChunkTargetIds(job);
+        if (targetIds.isEmpty()) {
+            job.complete();
+            return false;
+        }
+
+        int updated = deliveryRepository.updateStatus(targetIds, job.getTargetStatus());
+        job.recordChunk(targetIds.get(targetIds.size() - 1), updated, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * 작업의 다음 청크에서 상태를 바꿀 배송 id, id 순서
+     */
+    public List<Long> findChunkTargetIds(DeliveryStatusJob job) {
+        DeliverySearch search = new DeliverySearch();
+        search.setTargetStatus(job.getTargetStatus());
+        search.setOrderDateFrom(job.getOrderDateFrom());
+        search.setOrderDateTo(job.getOrderDateTo());
+        return deliveryRepository.findTransitionTargetIds(search, job.getLastDeliveryId(), chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 다른 트랜잭션에서 처리한 청크의 진행 상황 기록 (샤딩, DeliveryStatusJobRunner)
+     */
+    @Transactional
+    public void recordChunk(Long jobId, Long lastDeliveryId, int updated, long elapsedMillis) {
+        deliveryStatusJobRepository.findById(jobId).get().recordChunk(lastDeliveryId, updated, elapsedMillis);
+    }
+
+    @Transactional
+    public void completeJob(Long jobId) {
+        deliveryStatusJobRepository.findById(jobId).get().complete();
+    }
+
+    @Transactional
+    public void failJob(Long jobId, String message) {
+        deliveryStatusJobRepository.findById(jobId).ifPresent(job -> job.fail(message));
+    }
+
+    /**
+     * 아직 끝나지 않은 작업 (재시작 시 이어서 처리할 작업 포함)
+     */
+    public List<DeliveryStatusJob> findUnfinishedJobs() {
+        return deliveryStatusJobRepository.findByStatusInOrderById(
+                Arrays.asList(DeliveryJobStatus.PENDING, DeliveryJobStatus.RUNNING));
+    }
+
+    public DeliveryStatusJob findJob(Long jobId) {
+        return deliveryStatusJobRepository.findById(jobId).get();
+    }
+}
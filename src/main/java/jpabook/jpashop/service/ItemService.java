@@ -3,8 +3,10 @@ package jpabook.jpashop.service;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.ItemRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -14,15 +16,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemService {
     private final ItemRepository itemRepository;
+    private final StockCounters stockCounters;
+    private final CoalescedReads coalescedReads;
 
     /**
      * Repository 에 해당 item 저장하라고 하는 메소드
      * @param item
      * @return itemId
      */
+    @Timed("jpashop.service")
     @Transactional
     public Long saveItem(Item item) {
         itemRepository.save(item);
+        coalescedReads.itemChanged(item.getId());
         return item.getId();
     }
 
@@ -34,12 +40,19 @@ public class ItemService {
      * @param price
      * @param stockQuantity
      */
+    @Timed("jpashop.service")
     @Transactional
     public void updateItem(Long itemId, String name, int price, int stockQuantity) {
         Item findItem = itemRepository.findOne(itemId);
         findItem.setPrice(price);
         findItem.setName(name);
-        findItem.setStockQuantity(stockQuantity);
+        if (stockCounters.isEnabled()) {
+            // write-behind 재고는 카운터가 기준이므로, 차이를 증감분으로 기록한다.
+            stockCounters.adjustTo(itemId, stockQuantity);
+        } else {
+            findItem.setStockQuantity(stockQuantity);
+        }
+        coalescedReads.itemChanged(itemId);
         // itemRepository.save(findItem);
         // 위 코드를 실행할 필요가 없음
         // 영속성 컨텍스트가 flush 를 날릴 때, 변경된 사항을 감지해서 이를 처리함.
@@ -50,16 +63,21 @@ public class ItemService {
      * 모든 item 을 가져오도록 repository 를 호출하는 메서드
      * @return items
      */
+    @Timed("jpashop.service")
     public List<Item> findItems() {
         return itemRepository.findAll();
     }
 
     /**
      * 해당 itemId 를 갖는 item 을 찾아오도록 repository 를 호출하는 메서드
+     * 같은 상품의 동시 조회는 하나로 합치고, 준영속 엔티티를 돌려준다. (CoalescedReads)
+     * 합친 조회는 전용 커넥션으로 읽으므로, 트랜잭션을 따로 열지 않는다. (커넥션을 두 개 잡지 않도록)
      * @param itemId
      * @return item
      */
+    @Timed("jpashop.service")
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Item findOne(Long itemId) {
-        return itemRepository.findOne(itemId);
+        return coalescedReads.findItem(itemId, () -> itemRepository.findOne(itemId));
     }
 }
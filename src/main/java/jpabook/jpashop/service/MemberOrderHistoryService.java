@@ -0,0 +1,129 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.InvalidCursorException;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.shard.RouteToShard;
+import jpabook.jpashop.shard.ShardKey;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 회원별 주문 내역 ("내 주문") 조회 서비스
+ * 페이지는 keyset 으로 읽고, 전체 주문 수는 회원별로 캐시한다.
+ * 캐시된 수는 해당 회원의 주문이 커밋되면 지워지고, 그 외에는 TTL 이 지나면 다시 센다.
+ * 샤딩을 켜면 회원의 주문은 모두 회원의 샤드에 있으므로 그 샤드에서만 조회한다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class MemberOrderHistoryService {
+    private static final int MAX_CACHED_MEMBERS = 10_000;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final OrderQueryRepository orderQueryRepository;
+    private final Map<Long, CachedCount> countCache = new ConcurrentHashMap<>();
+
+    @Value("${jpashop.member-orders.count-ttl-ms:60000}")
+    private long countTtlMillis;
+
+    /**
+     * @param memberId
+     * @param cursorDate 직전 페이지의 nextCursorDate, 첫 페이지면 null
+     * @param cursorId 직전 페이지의 nextCursorId, cursorDate 와 함께 넘긴다.
+     * @param limit 1 ~ MAX_PAGE_SIZE 로 맞춘다.
+     * @return
+     */
+    @RouteToShard(RouteToShard.By.MEMBER)
+    public MemberOrderPage findOrders(@ShardKey Long memberId, LocalDateTime cursorDate, Long cursorId, int limit) {
+        if ((cursorDate == null) != (cursorId == null)) {
+            throw new InvalidCursorException("cursorDate 와 cursorId 는 함께 넘겨야 합니다");
+        }
+        limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // 다음 페이지가 있는지 알기 위해 하나 더 읽는다.
+        List<OrderQueryDto> orders = orderQueryRepository.findMemberOrders(memberId, cursorDate, cursorId, limit + 1);
+        boolean hasNext = orders.size() > limit;
+        if (hasNext) {
+            orders = orders.subList(0, limit);
+        }
+        OrderQueryDto last = hasNext ? orders.get(orders.size() - 1) : null;
+        return new MemberOrderPage(countOrders(memberId), orders,
+                last == null ? null : last.getOrderDate(),
+                last == null ? null : last.getOrderId());
+    }
+
+    @RouteToShard(RouteToShard.By.MEMBER)
+    public long countOrders(@ShardKey Long memberId) {
+        long now = System.currentTimeMillis();
+        CachedCount cached = countCache.get(memberId);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.count;
+        }
+        long count = orderQueryRepository.countMemberOrders(memberId);
+        if (countCache.size() >= MAX_CACHED_MEMBERS) {
+            countCache.clear();
+        }
+        // 세는 동안 evictCount 가 항목을 바꿨으면, 이 값은 이미 오래된 값이므로 캐시하지 않는다.
+        CachedCount counted = new CachedCount(count, now + countTtlMillis);
+        if (cached == null) {
+            countCache.putIfAbsent(memberId, counted);
+        } else {
+            countCache.replace(memberId, cached, counted);
+        }
+        return count;
+    }
+
+    /**
+     * 회원의 주문 수가 바뀌었을 때 캐시를 지운다.
+     * 트랜잭션 안이면 커밋된 뒤에 지운다. (커밋 전에 지우면 다른 요청이 이전 수를 다시 캐시한다)
+     * 만료된 항목으로 바꿔두어서, 그 전에 세기 시작한 요청이 이전 수를 캐시하지 못하게 한다.
+     */
+    public void evictCount(Long memberId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    countCache.put(memberId, CachedCount.evicted());
+                }
+            });
+        } else {
+            countCache.put(memberId, CachedCount.evicted());
+        }
+    }
+
+    private static class CachedCount {
+        private final long count;
+        private final long expiresAt;
+
+        CachedCount(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * 만료된 항목, 지울 때마다 새로 만들어서 인스턴스로 비교한다.
+         */
+        static CachedCount evicted() {
+            return new CachedCount(0, 0);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class MemberOrderPage {
+        private final long totalCount;
+        private final List<OrderQueryDto> orders;
+        private final LocalDateTime nextCursorDate; // 다음 페이지가 없으면 null
+        private final Long nextCursorId;
+    }
+}
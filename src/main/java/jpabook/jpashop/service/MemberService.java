@@ -3,8 +3,10 @@ package jpabook.jpashop.service;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.repository.MemberRepository;
 import jpabook.jpashop.repository.MemberRepositoryOld;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -37,6 +39,7 @@ public class MemberService {
 
     private final MemberRepositoryOld memberRepositoryOld; // 변경될 일 없기에, final 로 지정
     private final MemberRepository memberRepository;
+    private final CoalescedReads coalescedReads;
     // == 비즈니스 로직 == //
 
     /**
@@ -44,9 +47,11 @@ public class MemberService {
      * @param member
      * @return
      */
+    @Timed("jpashop.service")
     public Long join(Member member) {
         validateDuplicateMember(member);
         memberRepository.save(member);
+        coalescedReads.membersChanged();
         return member.getId();
     }
 
@@ -68,13 +73,15 @@ public class MemberService {
 
     /**
      * Repository 에 회원 정보를 모두 가져오라고 명령하는 메서드
+     * 동시 조회는 하나로 합치고, 준영속 엔티티를 돌려준다. (CoalescedReads)
+     * 합친 조회는 전용 커넥션으로 읽으므로, 트랜잭션을 따로 열지 않는다. (커넥션을 두 개 잡지 않도록)
      * @return members
      */
-    @Transactional(readOnly = true) // jpa의 모든 데이터 변경 및 로직은 transaction 안에서 실행 & 최적화 이점
-    // readOnly 는 읽기 전용.
+    @Timed("jpashop.service")
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Member> findMembers() {
 
-        return memberRepository.findAll();
+        return coalescedReads.findMembers(memberRepository::findAll);
     }
 
     /**
@@ -82,6 +89,7 @@ public class MemberService {
      * @param memberId
      * @return member
      */
+    @Timed("jpashop.service")
     @Transactional(readOnly = true) // jpa의 모든 데이터 변경 및 로직은 transaction 안에서 실행 & 최적화 이점
     // readOnly 는 읽기 전용.
     public Member findOne(Long memberId) {
@@ -91,9 +99,11 @@ public class MemberService {
         return memberRepository.findById(memberId).get();
     }
 
+    @Timed("jpashop.service")
     @Transactional
     public void update(Long id, String name) {
         Member member = memberRepositoryOld.findOne(id);
         member.setName(name);
+        coalescedReads.membersChanged();
     }
 }
\ No newline at end of file
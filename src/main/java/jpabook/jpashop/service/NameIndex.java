@@ -0,0 +1,94 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.NameMatch;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 이름 접두사 색인
+ * (정규화한 이름 + id) 를 키로 정렬해 두고, 접두사로 시작하는 구간의 앞에서부터 limit 개를 읽는다. O(log n + limit)
+ * 같은 이름이 여러 개여도 id 로 구분되고, 짧은 이름(정확히 일치하는 이름) 이 먼저 나온다.
+ * 이름이 바뀌면 이전 키를 지우고 새 키를 넣는다. 조회와 변경 모두 락이 없다.
+ */
+public class NameIndex {
+    private static final char ID_SEPARATOR = '\u0000';
+
+    private final ConcurrentSkipListMap<String, NameMatch> entries = new ConcurrentSkipListMap<>();
+    private final Map<Long, String> keysById = new ConcurrentHashMap<>();
+
+    /**
+     * 추가하거나 이름을 바꾼다.
+     */
+    public void put(Long id, String name) {
+        String key = key(id, name);
+        String previous = keysById.put(id, key);
+        entries.put(key, new NameMatch(id, name));
+        if (previous != null && !previous.equals(key)) {
+            entries.remove(previous);
+        }
+    }
+
+    /**
+     * 아직 없는 id 만 추가한다. (전체 적재 도중에 커밋된 변경을 덮어쓰지 않기 위해)
+     */
+    public void putIfAbsent(Long id, String name) {
+        String key = key(id, name);
+        if (keysById.putIfAbsent(id, key) == null) {
+            entries.put(key, new NameMatch(id, name));
+        }
+    }
+
+    public void remove(Long id) {
+        String previous = keysById.remove(id);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+    }
+
+    /**
+     * @param prefix 정규화 전 입력
+     * @param limit
+     * @return 정규화한 이름 순서
+     */
+    public List<NameMatch> search(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        List<NameMatch> result = new ArrayList<>(Math.min(limit, 64));
+        if (normalized.isEmpty() || limit <= 0) {
+            return result;
+        }
+        for (NameMatch match : entries.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+            result.add(match);
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return keysById.size();
+    }
+
+    /**
+     * 호환 문자 통일(NFKC), 소문자, 앞뒤 공백 제거, 연속 공백은 하나로
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        return Normalizer.normalize(name, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .trim()
+                .replaceAll("\\s+", " ");
+    }
+
+    private static String key(Long id, String name) {
+        return normalize(name) + ID_SEPARATOR + id;
+    }
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Item;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Member, Item 의 엔티티 리스너, 저장/수정/삭제를 커밋된 뒤에 자동완성 색인에 반영한다.
+ * 서비스를 거치지 않는 저장(InitDB 등) 도 반영된다.
+ * 스프링이 만들어서 주입해준다. (Hibernate 의 SpringBeanContainer)
+ */
+public class NameIndexListener {
+    private final AutocompleteIndex autocompleteIndex;
+
+    public NameIndexListener(AutocompleteIndex autocompleteIndex) {
+        this.autocompleteIndex = autocompleteIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            afterCommit(() -> autocompleteIndex.members().put(member.getId(), member.getName()));
+        } else if (entity instanceof Item) {
+            Item item = (Item) entity;
+            afterCommit(() -> autocompleteIndex.items().put(item.getId(), item.getName()));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Member) {
+            Long id = ((Member) entity).getId();
+            afterCommit(() -> autocompleteIndex.members().remove(id));
+        } else if (entity instanceof Item) {
+            Long id = ((Item) entity).getId();
+            afterCommit(() -> autocompleteIndex.items().remove(id));
+        }
+    }
+
+    private static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+}
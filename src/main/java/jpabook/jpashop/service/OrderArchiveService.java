@@ -0,0 +1,91 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSimpleQueryDto;
+import jpabook.jpashop.repository.order.archive.OrderArchiveRepository;
+import jpabook.jpashop.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 아카이브 서비스
+ * 보관 기간(jpashop.archive.max-age-days) 이 지난, 취소 또는 배송 완료된 주문을 청크 단위로 아카이브 테이블에 옮기고,
+ * 검색 시 날짜 범위가 보관 기간을 넘어갈 때만 아카이브 테이블을 함께 조회한다.
+ * 샤딩을 켜면 아카이브 테이블도 샤드마다 있고, 옮기기(OrderArchiveJob) 와 검색을 샤드마다 한다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderArchiveService {
+    private static final int MAX_RESULTS = 1000;
+
+    private final OrderRepository orderRepository;
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final Shards shards;
+
+    @Value("${jpashop.archive.max-age-days:365}")
+    private int maxAgeDays;
+
+    @Value("${jpashop.archive.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 보관 기간이 지난 끝난 주문을 최대 chunkSize 개 옮긴다.
+     * 청크마다 트랜잭션을 따로 가져가서, 락과 undo 로그가 길게 잡히지 않도록 한다.
+     * @return 옮긴 주문 수, 더 옮길 주문이 없으면 0
+     */
+    @Transactional
+    public int archiveChunk() {
+        List<Long> orderIds = orderArchiveRepository.findArchivableOrderIds(archiveCutoff(), chunkSize);
+        return orderArchiveRepository.moveToArchive(orderIds);
+    }
+
+    /**
+     * 이 시각 이전의 주문은 아카이브 테이블에 있을 수 있다.
+     */
+    public LocalDateTime archiveCutoff() {
+        return LocalDateTime.now().minusDays(maxAgeDays);
+    }
+
+    /**
+     * 검색 범위의 시작이 없거나 아카이브 기준 시각보다 이전이면 아카이브를 함께 조회해야 한다.
+     * @param orderSearch
+     * @return
+     */
+    public boolean requiresArchive(OrderSearch orderSearch) {
+        LocalDateTime from = orderSearch.getOrderDateFrom();
+        return from == null || from.isBefore(archiveCutoff());
+    }
+
+    /**
+     * 운영 테이블과, 필요한 경우 아카이브 테이블을 검색해서 orderSearch.sort 순서(주문 일시, 주문 금액 등) 로 합친다.
+     * 샤딩을 켜면 샤드마다 합친 결과를 같은 순서로 다시 합친다.
+     * @param orderSearch
+     * @return
+     */
+    public List<OrderSimpleQueryDto> findOrderDtos(OrderSearch orderSearch) {
+        return shards.scatter(() -> findOrderDtosOnShard(orderSearch), orderSearch.getSort().getComparator(), MAX_RESULTS);
+    }
+
+    private List<OrderSimpleQueryDto> findOrderDtosOnShard(OrderSearch orderSearch) {
+        List<OrderSimpleQueryDto> result = orderRepository.findOrderDtos(orderSearch);
+        if (!requiresArchive(orderSearch)) {
+            return result;
+        }
+
+        List<OrderSimpleQueryDto> merged = new ArrayList<>(result);
+        merged.addAll(orderArchiveRepository.findOrderDtos(orderSearch));
+        return merged.stream()
+                .sorted(orderSearch.getSort().getComparator())
+                .limit(MAX_RESULTS)
+                .collect(Collectors.toList());
+    }
+}
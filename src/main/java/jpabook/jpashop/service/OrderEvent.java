@@ -0,0 +1,32 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderEventType;
+import jpabook.jpashop.domain.OrderOutboxEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * OrderEventSubscriber 에게 넘기는 주문 이벤트
+ * 같은 이벤트가 두 번 이상 전달될 수 있으므로, 구독자는 eventId 로 중복을 걸러야 한다.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderEvent {
+    private final Long eventId;
+    private final OrderEventType type;
+    private final Long orderId;
+    private final Long memberId;
+    private final int totalPrice;
+    private final int itemCount;
+    private final LocalDateTime occurredAt;
+    private final int attempts;
+
+    public static OrderEvent from(OrderOutboxEvent event) {
+        return new OrderEvent(event.getId(), event.getType(), event.getOrderId(), event.getMemberId(),
+                event.getTotalPrice(), event.getItemCount(), event.getCreatedAt(), event.getAttempts());
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.service;
+
+/**
+ * 주문 이벤트 구독자, 빈으로 등록하면 OrderOutboxRelayJob 이 이벤트를 전달한다.
+ * 같은 주문의 이벤트는 저장된 순서대로 전달된다.
+ * 예외를 던지면 그 이벤트와 같은 주문의 뒤 이벤트는 다음 주기에 다시 전달된다. (다른 구독자에게도 다시 전달된다.)
+ */
+public interface OrderEventSubscriber {
+
+    String name();
+
+    void onEvent(OrderEvent event);
+}
@@ -0,0 +1,120 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderIdempotencyKey;
+import jpabook.jpashop.exception.IdempotencyKeyConflictException;
+import jpabook.jpashop.exception.InvalidIdempotencyKeyException;
+import jpabook.jpashop.repository.OrderIdempotencyKeyRepository;
+import jpabook.jpashop.shard.RouteToShard;
+import jpabook.jpashop.shard.ShardKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Idempotency-Key 가 붙은 주문 요청 처리
+ *
+ * 재전송된 요청은 메모리 캐시 -> order_idempotency_key 테이블 순서로 찾아서,
+ * 쓰기 트랜잭션에 들어가지 않고 처음 만든 주문 id 를 돌려준다.
+ * 이 클래스는 트랜잭션을 열지 않는다. 중복 키로 주문 트랜잭션이 롤백된 뒤에 기존 결과를 다시 읽어야 하기 때문이다.
+ * 샤딩을 켜면 키는 주문과 함께 회원의 샤드에 저장되므로, 키의 유일성도 샤드 안에서만 보장된다.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderIdempotencyService {
+    private static final int MAX_CACHED_KEYS = 10_000;
+
+    private final OrderService orderService;
+    private final OrderIdempotencyKeyRepository orderIdempotencyKeyRepository;
+    private final Map<String, CachedOrder> cache = new ConcurrentHashMap<>();
+
+    @Value("${jpashop.idempotency.cache-ttl-ms:600000}")
+    private long cacheTtlMillis;
+
+    @Value("${jpashop.idempotency.retention-hours:24}")
+    private long retentionHours;
+
+    /**
+     * @param idempotencyKey
+     * @param memberId
+     * @param itemId
+     * @param count
+     * @return 주문 id, 같은 키로 이미 주문했으면 그 주문의 id
+     */
+    @RouteToShard(RouteToShard.By.MEMBER)
+    public Long order(String idempotencyKey, @ShardKey Long memberId, Long itemId, int count) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > OrderIdempotencyKey.MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key 는 1~" + OrderIdempotencyKey.MAX_KEY_LENGTH + "자여야 합니다.");
+        }
+        String fingerprint = memberId + ":" + itemId + ":" + count;
+
+        Long orderId = findOrderId(idempotencyKey, fingerprint);
+        if (orderId != null) {
+            return orderId;
+        }
+
+        try {
+            orderId = orderService.order(memberId, itemId, count, idempotencyKey, fingerprint);
+        } catch (DataIntegrityViolationException e) {
+            // 같은 키의 다른 요청이 먼저 커밋했다.
+            orderId = findOrderId(idempotencyKey, fingerprint);
+            if (orderId == null) {
+                throw e;
+            }
+            return orderId;
+        }
+        cache(idempotencyKey, orderId, fingerprint);
+        return orderId;
+    }
+
+    /**
+     * 보관 기간이 지난 키를 삭제
+     * @return 삭제된 키 수
+     */
+    @Transactional
+    public int purgeExpired() {
+        return orderIdempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minusHours(retentionHours));
+    }
+
+    private Long findOrderId(String idempotencyKey, String fingerprint) {
+        long now = System.currentTimeMillis();
+        CachedOrder cached = cache.get(idempotencyKey);
+        if (cached == null || cached.expiresAt <= now) {
+            OrderIdempotencyKey saved = orderIdempotencyKeyRepository.findOne(idempotencyKey);
+            if (saved == null || saved.getOrderId() == null) {
+                return null;
+            }
+            cached = cache(idempotencyKey, saved.getOrderId(), saved.getFingerprint());
+        }
+        if (!cached.fingerprint.equals(fingerprint)) {
+            throw new IdempotencyKeyConflictException("이미 다른 주문에 사용된 Idempotency-Key 입니다: " + idempotencyKey);
+        }
+        return cached.orderId;
+    }
+
+    private CachedOrder cache(String idempotencyKey, Long orderId, String fingerprint) {
+        if (cache.size() >= MAX_CACHED_KEYS) {
+            cache.clear();
+        }
+        CachedOrder cached = new CachedOrder(orderId, fingerprint, System.currentTimeMillis() + cacheTtlMillis);
+        cache.put(idempotencyKey, cached);
+        return cached;
+    }
+
+    private static class CachedOrder {
+        private final Long orderId;
+        private final String fingerprint;
+        private final long expiresAt;
+
+        CachedOrder(Long orderId, String fingerprint, long expiresAt) {
+            this.orderId = orderId;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.OrderOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderOutboxService {
+    private final OrderOutboxRepository orderOutboxRepository;
+
+    /**
+     * 전달할 이벤트를 저장 순서대로 afterId 다음부터 조회, parked 이벤트는 제외
+     * @param afterId
+     * @param limit
+     * @return
+     */
+    public List<OrderEvent> findPending(long afterId, int limit) {
+        return orderOutboxRepository.findPending(afterId, limit).stream()
+                .map(OrderEvent::from)
+                .collect(Collectors.toList());
+    }
+
+    public long countPending() {
+        return orderOutboxRepository.countPending();
+    }
+
+    /**
+     * 전달 결과 반영, 전달된 이벤트는 삭제하고 실패한 이벤트는 실패 횟수를 올린다.
+     * 실패 횟수가 maxAttempts 가 된 이벤트는 parked 로 바꾼다.
+     * @param deliveredIds
+     * @param failedIds
+     * @param maxAttempts
+     * @return parked 로 바뀐 이벤트 수
+     */
+    @Transactional
+    public int complete(Collection<Long> deliveredIds, Collection<Long> failedIds, int maxAttempts) {
+        orderOutboxRepository.delete(deliveredIds);
+        orderOutboxRepository.increaseAttempts(failedIds);
+        return orderOutboxRepository.park(failedIds, maxAttempts);
+    }
+}
@@ -1,20 +1,45 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderIdempotencyKey;
+import jpabook.jpashop.domain.OrderEventType;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderOutboxEvent;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.SalesRollupId;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.monitoring.HotItemTracker;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepositoryOld;
+import jpabook.jpashop.repository.OrderCancelLine;
+import jpabook.jpashop.repository.OrderFetchPlan;
+import jpabook.jpashop.repository.OrderIdempotencyKeyRepository;
+import jpabook.jpashop.repository.OrderOutboxRepository;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.sales.SalesDelta;
+import jpabook.jpashop.shard.RouteToShard;
+import jpabook.jpashop.shard.ShardKey;
+import io.micrometer.core.annotation.Timed;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
+/**
+ * 샤딩을 켜면 주문은 회원의 샤드에서, 취소/단건 조회는 주문 id 의 샤드에서 실행한다. (@RouteToShard)
+ */
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
@@ -22,6 +47,15 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final MemberRepositoryOld memberRepositoryOld;
     private final ItemRepository itemRepository;
+    private final SalesRollupAccumulator salesRollupAccumulator;
+    private final MemberOrderHistoryService memberOrderHistoryService;
+    private final OrderIdempotencyKeyRepository orderIdempotencyKeyRepository;
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final StockCounters stockCounters;
+    private final HotItemTracker hotItemTracker;
+
+    @Value("${jpashop.order.bulk-cancel-chunk-size:1000}")
+    private int bulkCancelChunkSize;
 
     /**
      * Id 를 바탕으로 각 member, item 을 찾아온다.
@@ -34,44 +68,189 @@ public class OrderService {
      * @param count
      * @return
      */
+    @Timed("jpashop.service")
+    @RouteToShard(RouteToShard.By.MEMBER)
     @Transactional
-    public Long order(Long memberId, Long itemId, int count) {
+    public Long order(@ShardKey Long memberId, Long itemId, int count) {
         // 엔티티 조회
         Member member = memberRepositoryOld.findOne(memberId);
-        Item item = itemRepository.findOne(itemId);
+        // 재고를 바꾸므로 상품은 잠금과 함께 읽는다. write-behind 재고면 카운터에서 차감하므로 잠그지 않는다.
+        Item item = stockCounters.isEnabled() ? itemRepository.findOne(itemId) : itemRepository.findOneForUpdate(itemId);
 
         // 배송 정보 생성
 
         Delivery delivery = new Delivery();
         delivery.setAddress(member.getAddress());
+        delivery.setStatus(DeliveryStatus.READY);
         // 원래는 Delivery repository 가 있어서, save 및 할당해줘여 함.
         // 그러나, cascade 옵션이 있어서, order에 퍼시스트 하면 orderitem 에도 퍼시스트를 날려주고, delivery 엔티티도 persist 됨.
         // Order -> OrderItem, Order -> Delivery 같이, 확실하게 연관관계가 정해지는 경우에만 CASCADE 옵션을 사용할 것
         // 즉, delivery 는 order 에서만 참조한다. orderItem 또한 order 에서만 참조한다.
 
         // 주문 상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem;
+        if (stockCounters.isEnabled()) {
+            stockCounters.reserve(itemId, count);
+            orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), count);
+        } else {
+            orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        }
 
         // 주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
 
         // 주문 저장
         orderRepository.save(order);
+
+        // 주문 이벤트, 같은 트랜잭션에서 저장해야 주문과 이벤트가 함께 커밋/롤백된다.
+        orderOutboxRepository.save(OrderOutboxEvent.of(OrderEventType.ORDERED, order));
+
+        // 판매 집계 증감분 기록, 커밋 후에 반영된다.
+        salesRollupAccumulator.recordOrder(order);
+        hotItemTracker.recordOrder(itemId, count);
+
+        // 회원 주문 수 캐시 무효화, 커밋 후에 지운다.
+        memberOrderHistoryService.evictCount(memberId);
         return order.getId();
     }
 
+    /**
+     * Idempotency-Key 와 함께 주문한다.
+     * 키를 먼저 저장(flush)해서 선점하고, 주문과 같은 트랜잭션에서 주문 id 를 기록한다.
+     * 같은 키로 동시에 들어온 요청은 키 저장에서 DataIntegrityViolationException 으로 실패하고 롤백된다.
+     * @param memberId
+     * @param itemId
+     * @param count
+     * @param idempotencyKey
+     * @param fingerprint
+     * @return
+     */
+    @RouteToShard(RouteToShard.By.MEMBER)
+    @Transactional
+    public Long order(@ShardKey Long memberId, Long itemId, int count, String idempotencyKey, String fingerprint) {
+        OrderIdempotencyKey key = OrderIdempotencyKey.create(idempotencyKey, fingerprint);
+        orderIdempotencyKeyRepository.save(key);
+
+        Long orderId = order(memberId, itemId, count);
+        key.complete(orderId);
+        return orderId;
+    }
+
     /**
      * 해당 주문을 DB 에서 찾아오는 메서드
      * 실제 cancel 에 해당하는 메서드는 Order 클래스에 정의되어 있음.
      * @param orderId
      */
+    @Timed("jpashop.service")
+    @RouteToShard(RouteToShard.By.ORDER)
     @Transactional
-    public void cancelOrder(Long orderId) {
-        // 주문 조회
-        Order order = orderRepository.findOne(orderId);
+    public void cancelOrder(@ShardKey Long orderId) {
+        // 주문 조회, 같은 주문의 동시 취소를 막기 위해 잠금
+        Order order = orderRepository.findOneForUpdate(orderId);
+
+        if (stockCounters.isEnabled()) {
+            // 주문 취소, 재고는 카운터로 원복
+            order.cancelWithoutRestock();
+            for (OrderItem orderItem : order.getOrderItems()) {
+                stockCounters.release(orderItem.getItem().getId(), orderItem.getCount());
+            }
+        } else {
+            // 재고를 원복할 상품 잠금
+            itemRepository.findAllForUpdate(order.getOrderItems().stream()
+                    .map(orderItem -> orderItem.getItem().getId())
+                    .collect(Collectors.toSet()));
 
-        // 주문 취소
-        order.cancel();
+            // 주문 취소
+            order.cancel();
+        }
+        orderOutboxRepository.save(OrderOutboxEvent.of(OrderEventType.CANCELLED, order));
+
+        // 판매 집계 증감분 기록, 커밋 후에 반영된다.
+        salesRollupAccumulator.recordCancel(order);
+    }
+
+    /**
+     * 주문 일괄 취소 (운영용, 실패한 배치의 주문을 한 번에 취소하는 경우 등)
+     * 엔티티를 하나씩 로딩해서 Order.cancel 을 부르지 않고, 청크 단위로
+     *  - 주문 row 잠금 1번, 주문상품 조회 1번, 주문 상태 UPDATE 1번
+     * 을 하고, 원복할 재고는 상품별로 합쳐서 마지막에 상품당 UPDATE 1번으로 반영한다.
+     * 이미 취소된 주문, 배송 완료된 주문, 없는 주문은 건너뛴다.
+     * 샤딩을 켜면 한 샤드의 주문만 넘겨야 한다. 다른 샤드의 주문은 없는 주문으로 건너뛴다. (OrderCancelApiController)
+     * @param orderIds
+     * @return
+     */
+    @Timed("jpashop.service")
+    @Transactional
+    public BulkCancelResult cancelOrders(List<Long> orderIds) {
+        Map<Long, Integer> restock = new TreeMap<>(); // 상품 id 순서로 UPDATE 해서 교착을 피한다.
+        Map<SalesRollupId, SalesDelta> salesDeltas = new HashMap<>();
+        int cancelled = 0;
+
+        List<Long> distinctIds = orderIds.stream().distinct().collect(Collectors.toList());
+        for (int from = 0; from < distinctIds.size(); from += bulkCancelChunkSize) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + bulkCancelChunkSize, distinctIds.size()));
+            List<Long> lockedIds = orderRepository.lockOrderedIds(chunk);
+            if (lockedIds.isEmpty()) {
+                continue;
+            }
+
+            List<OrderCancelLine> lines = orderRepository.findCancelLines(lockedIds);
+            Set<Long> delivered = lines.stream()
+                    .filter(line -> line.getDeliveryStatus() == DeliveryStatus.COMP)
+                    .map(OrderCancelLine::getOrderId)
+                    .collect(Collectors.toSet());
+            List<Long> targetIds = lockedIds.stream()
+                    .filter(id -> !delivered.contains(id))
+                    .collect(Collectors.toList());
+
+            for (OrderCancelLine line : lines) {
+                if (delivered.contains(line.getOrderId())) {
+                    continue;
+                }
+                restock.merge(line.getItemId(), line.getCount(), Integer::sum);
+                salesDeltas.merge(new SalesRollupId(line.getItemId(), line.getOrderDate().toLocalDate()),
+                        new SalesDelta(-line.getCount(), -line.getOrderPrice() * line.getCount(), line.getCount()),
+                        SalesDelta::plus);
+            }
+            cancelled += orderRepository.updateStatus(targetIds, OrderStatus.CANCEL);
+            saveCancelEvents(lines, delivered);
+        }
+
+        int restockedUnits = 0;
+        for (Map.Entry<Long, Integer> entry : restock.entrySet()) {
+            if (stockCounters.isEnabled()) {
+                stockCounters.release(entry.getKey(), entry.getValue());
+            } else {
+                itemRepository.increaseStock(entry.getKey(), entry.getValue());
+            }
+            restockedUnits += entry.getValue();
+        }
+        salesRollupAccumulator.record(salesDeltas);
+        return new BulkCancelResult(distinctIds.size(), cancelled, distinctIds.size() - cancelled, restock.size(), restockedUnits);
+    }
+
+    /**
+     * 일괄 취소된 주문마다 취소 이벤트를 저장, 주문상품 여러 줄 중 첫 줄의 주문 값을 쓴다.
+     */
+    private void saveCancelEvents(List<OrderCancelLine> lines, Set<Long> delivered) {
+        Map<Long, OrderCancelLine> byOrder = new TreeMap<>();
+        for (OrderCancelLine line : lines) {
+            if (!delivered.contains(line.getOrderId())) {
+                byOrder.putIfAbsent(line.getOrderId(), line);
+            }
+        }
+        for (OrderCancelLine line : byOrder.values()) {
+            orderOutboxRepository.save(OrderOutboxEvent.create(OrderEventType.CANCELLED,
+                    line.getOrderId(), line.getMemberId(), line.getTotalPrice(), line.getItemCount()));
+        }
+    }
+
+    /**
+     * 주문 단건, 회원/배송/주문상품/상품까지 함께 읽는다.
+     */
+    @RouteToShard(RouteToShard.By.ORDER)
+    public Order findOne(@ShardKey Long orderId) {
+        return orderRepository.findOne(orderId, OrderFetchPlan.FULL);
     }
 
     // 검색
@@ -81,8 +260,24 @@ public class OrderService {
      * @param orderSearch
      * @return
      */
+     @Timed("jpashop.service")
      public List<Order> findOrders(OrderSearch orderSearch){
          return orderRepository.findAllByString(orderSearch);
      }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class BulkCancelResult {
+        private final int requested;
+        private final int cancelled;
+        private final int skipped; // 이미 취소, 배송 완료, 없는 주문
+        private final int restockedItems; // 재고 UPDATE 한 상품 수
+        private final int restockedUnits;
+
+        public BulkCancelResult plus(BulkCancelResult other) {
+            return new BulkCancelResult(requested + other.requested, cancelled + other.cancelled, skipped + other.skipped,
+                    restockedItems + other.restockedItems, restockedUnits + other.restockedUnits);
+        }
+    }
 }
 
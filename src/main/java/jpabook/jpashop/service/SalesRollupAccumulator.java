@@ -0,0 +1,92 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.SalesRollupId;
+import jpabook.jpashop.repository.sales.SalesDelta;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 주문/취소로 생긴 판매 집계 증감분을 메모리에 모아두는 컴포넌트
+ *
+ * 주문 트랜잭션이 커밋된 뒤에만 증감분을 더하므로, 롤백된 주문은 집계에 들어가지 않는다.
+ * 주문 요청은 map 에 더하기만 하고, sales_rollup 테이블 반영은 SalesRollupFlushJob.flush 가 모아서 한다.
+ * 반영 전에 프로세스가 죽으면 증감분이 유실되므로, SalesRollupFlushJob.rebuild 로 주문상품에서 다시 만든다.
+ * 같은 (상품, 일자) 의 주문이 몰려도 row 락 경합 없이 한 번의 upsert 로 합쳐진다.
+ */
+@Component
+public class SalesRollupAccumulator {
+
+    private final ConcurrentHashMap<SalesRollupId, SalesDelta> pending = new ConcurrentHashMap<>();
+
+    public void recordOrder(Order order) {
+        record(order, false);
+    }
+
+    public void recordCancel(Order order) {
+        record(order, true);
+    }
+
+    private void record(Order order, boolean cancel) {
+        LocalDate salesDate = order.getOrderDate().toLocalDate();
+        Map<SalesRollupId, SalesDelta> deltas = new HashMap<>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            int units = cancel ? -orderItem.getCount() : orderItem.getCount();
+            int revenue = cancel ? -orderItem.getTotalPrice() : orderItem.getTotalPrice();
+            int cancelledUnits = cancel ? orderItem.getCount() : 0;
+            deltas.merge(new SalesRollupId(orderItem.getItem().getId(), salesDate),
+                    new SalesDelta(units, revenue, cancelledUnits), SalesDelta::plus);
+        }
+        record(deltas);
+    }
+
+    /**
+     * 미리 합친 증감분을 기록, 엔티티를 로딩하지 않는 일괄 처리에서 사용한다.
+     * 트랜잭션 안이면 커밋된 뒤에 더한다.
+     */
+    public void record(Map<SalesRollupId, SalesDelta> deltas) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addAll(deltas);
+                }
+            });
+        } else {
+            addAll(deltas);
+        }
+    }
+
+    /**
+     * 증감분을 더한다. flush 에 실패한 증감분을 되돌려 놓을 때도 사용한다.
+     */
+    public void addAll(Map<SalesRollupId, SalesDelta> deltas) {
+        deltas.forEach((id, delta) -> pending.merge(id, delta, SalesDelta::plus));
+    }
+
+    /**
+     * 쌓인 증감분을 꺼내고 비운다.
+     * 키 단위로 remove 하므로, 꺼내는 도중에 들어온 증감분은 유실되지 않고 다음 번에 꺼내진다.
+     */
+    public Map<SalesRollupId, SalesDelta> drain() {
+        Map<SalesRollupId, SalesDelta> drained = new HashMap<>();
+        for (SalesRollupId id : pending.keySet()) {
+            SalesDelta delta = pending.remove(id);
+            if (delta != null) {
+                drained.put(id, delta);
+            }
+        }
+        return drained;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+}
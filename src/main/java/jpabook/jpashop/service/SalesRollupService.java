@@ -0,0 +1,71 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.SalesRollupId;
+import jpabook.jpashop.repository.sales.DailySalesDto;
+import jpabook.jpashop.repository.sales.ItemSalesDto;
+import jpabook.jpashop.repository.sales.SalesDelta;
+import jpabook.jpashop.repository.sales.SalesRollupRepository;
+import jpabook.jpashop.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 판매 집계 서비스
+ * 쌓인 증감분을 sales_rollup 에 반영하고, 기간 매출 / 베스트셀러를 집계 테이블에서만 조회한다.
+ * 샤딩을 켜도 sales_rollup 은 0 번 샤드에만 있다.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class SalesRollupService {
+    private final SalesRollupRepository salesRollupRepository;
+    private final Shards shards;
+
+    /**
+     * 증감분을 (상품, 일자) 별로 한 번씩 upsert
+     * @param deltas
+     */
+    @Transactional
+    public void apply(Map<SalesRollupId, SalesDelta> deltas) {
+        deltas.forEach(salesRollupRepository::upsert);
+    }
+
+    /**
+     * 기간 [from, to] 의 집계를 주문상품에서 다시 만든다.
+     * 샤딩을 켜면 샤드마다 주문상품을 합친 결과를 다시 합쳐서 0 번 샤드에 쓴다.
+     * @return 만들어진 (상품, 일자) row 수
+     */
+    @Transactional
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (!shards.isSharded()) {
+            return salesRollupRepository.rebuild(from, to);
+        }
+        Map<SalesRollupId, SalesDelta> sums = new HashMap<>();
+        for (List<Map<SalesRollupId, SalesDelta>> shard : shards.gather(() ->
+                Collections.singletonList(salesRollupRepository.sumOrderLines(from, to)))) {
+            shard.get(0).forEach((id, delta) -> sums.merge(id, delta, SalesDelta::plus));
+        }
+        return salesRollupRepository.replace(from, to, sums);
+    }
+
+    /**
+     * 기간 [from, to] 의 일자별 매출
+     */
+    public List<DailySalesDto> findDailySales(LocalDate from, LocalDate to) {
+        return salesRollupRepository.findDailySales(from, to);
+    }
+
+    /**
+     * 기간 [from, to] 의 판매 수량 상위 상품
+     */
+    public List<ItemSalesDto> findTopSellers(LocalDate from, LocalDate to, int limit) {
+        return salesRollupRepository.findTopSellers(from, to, limit);
+    }
+}
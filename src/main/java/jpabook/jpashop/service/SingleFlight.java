@@ -0,0 +1,134 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키의 동시 조회를 하나로 합친다. (single-flight)
+ * 키마다 처음 들어온 호출만 loader 를 실행하고, 그동안 들어온 호출은 그 결과(또는 예외) 를 같이 받는다.
+ * staleness 가 0 보다 크면 끝난 결과를 그 시간 동안 더 돌려준다. 0 이면 진행 중인 조회만 합친다.
+ * 지난 결과는 staleness 마다 한 번, 호출하는 스레드가 훑어서 지우므로 맵에는 최근 staleness 동안 조회한 키만 남는다.
+ * 실패한 조회는 남겨두지 않는다.
+ *
+ * 메트릭: jpashop.singleflight.calls{name, result=executed|coalesced}
+ */
+public class SingleFlight<K, V> {
+    private final long stalenessNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+    private final Counter executed;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, Duration staleness, MeterRegistry meterRegistry) {
+        this(name, staleness, meterRegistry, System::nanoTime);
+    }
+
+    SingleFlight(String name, Duration staleness, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.stalenessNanos = staleness.toNanos();
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+        this.executed = Counter.builder("jpashop.singleflight.calls")
+                .description("single-flight 호출 수, coalesced 는 다른 호출의 조회 결과를 받은 수")
+                .tag("name", name)
+                .tag("result", "executed")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("jpashop.singleflight.calls")
+                .description("single-flight 호출 수, coalesced 는 다른 호출의 조회 결과를 받은 수")
+                .tag("name", name)
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        sweepIfDue();
+        while (true) {
+            Flight<V> current = flights.get(key);
+            if (current != null && !current.isStale(nanoClock.getAsLong(), stalenessNanos)) {
+                coalesced.increment();
+                return current.await();
+            }
+
+            Flight<V> mine = new Flight<>();
+            boolean leader = current == null ? flights.putIfAbsent(key, mine) == null : flights.replace(key, current, mine);
+            if (!leader) {
+                continue; // 다른 호출이 먼저 자리를 잡았으면 그 조회에 합류한다.
+            }
+            executed.increment();
+            V value;
+            try {
+                value = loader.get();
+            } catch (RuntimeException | Error e) {
+                flights.remove(key, mine);
+                mine.future.completeExceptionally(e);
+                throw e;
+            }
+            mine.completedAt = nanoClock.getAsLong();
+            mine.future.complete(value);
+            if (stalenessNanos <= 0) {
+                flights.remove(key, mine);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 끝난 결과를 버린다. 진행 중인 조회에 이미 합류한 호출은 그 결과를 받는다.
+     */
+    public void invalidate(K key) {
+        flights.remove(key);
+    }
+
+    public void invalidateAll() {
+        flights.clear();
+    }
+
+    int size() {
+        return flights.size();
+    }
+
+    /**
+     * 마지막으로 훑은 지 staleness 가 지났으면, 한 스레드만 지난 결과를 지운다. (진행 중인 조회는 남긴다)
+     */
+    private void sweepIfDue() {
+        if (stalenessNanos <= 0) {
+            return; // 끝나는 즉시 지운다.
+        }
+        long now = nanoClock.getAsLong();
+        long last = lastSweep.get();
+        if (now - last > stalenessNanos && lastSweep.compareAndSet(last, now)) {
+            flights.entrySet().removeIf(entry -> entry.getValue().isStale(now, stalenessNanos));
+        }
+    }
+
+    private static class Flight<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        volatile long completedAt;
+
+        boolean isStale(long now, long stalenessNanos) {
+            return future.isDone() && now - completedAt > stalenessNanos;
+        }
+
+        V await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
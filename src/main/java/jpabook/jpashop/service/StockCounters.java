@@ -0,0 +1,219 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * write-behind 재고 (jpashop.stock.write-behind.enabled)
+ *
+ * 켜져 있으면 주문/취소의 재고 변경은 item row 를 UPDATE 하지 않고
+ *  1. 메모리의 상품별 카운터를 CAS 로 바꾸고
+ *  2. 증감분을 journal 에 fsync 한 뒤
+ *  3. 상품별 증감분에 더해둔다.
+ * StockWriteBehindFlushJob 이 주기적으로 증감분을 꺼내서 상품당 UPDATE 한 번으로 반영한다.
+ * 기동 시에는 반영되지 않은 journal 을 먼저 반영하고 나서 카운터를 쓴다. (웹 서버가 요청을 받기 전)
+ *
+ * 트랜잭션이 롤백되면 반대 증감분을 기록해서 카운터를 되돌린다.
+ * 트랜잭션 도중에 프로세스가 죽으면 차감분이 남을 수 있다. (재고가 덜 팔리는 쪽으로만 틀린다)
+ * 카운터는 처음 쓸 때 item 테이블에서 읽고, 이후에는 카운터가 기준이다. 여러 인스턴스에서 같은 상품을 팔 때는 쓰면 안 된다.
+ */
+@Component
+@Slf4j
+public class StockCounters implements SmartInitializingSingleton {
+    private final StockWriteBehindService stockWriteBehindService;
+    private final boolean enabled;
+    private final Path journalDirectory;
+
+    private final ConcurrentHashMap<Long, AtomicInteger> counters = new ConcurrentHashMap<>();
+    // journal 세그먼트를 넘기는 동안에는 기록을 막아서, 증감분과 세그먼트가 어긋나지 않게 한다.
+    private final ReadWriteLock rotateLock = new ReentrantReadWriteLock();
+    private volatile ConcurrentHashMap<Long, AtomicInteger> deltas = new ConcurrentHashMap<>();
+    private StockJournal journal;
+
+    public StockCounters(StockWriteBehindService stockWriteBehindService,
+                         @Value("${jpashop.stock.write-behind.enabled:false}") boolean enabled,
+                         @Value("${jpashop.stock.write-behind.journal-dir:./data/stock-journal}") String journalDirectory) {
+        this.stockWriteBehindService = stockWriteBehindService;
+        this.enabled = enabled;
+        this.journalDirectory = Paths.get(journalDirectory);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 기동 시 journal 복구, 체크포인트 이후의 세그먼트를 합쳐서 한 번에 반영하고 새 세그먼트를 연다.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        long lastApplied = stockWriteBehindService.findLastSegment();
+        List<Long> segments = StockJournal.segments(journalDirectory);
+
+        Map<Long, Integer> replay = new TreeMap<>();
+        long replayedUpTo = lastApplied;
+        for (long segment : segments) {
+            if (segment > lastApplied) {
+                StockJournal.read(journalDirectory, segment).forEach((itemId, delta) -> replay.merge(itemId, delta, Integer::sum));
+                replayedUpTo = segment;
+            }
+        }
+        if (replayedUpTo > lastApplied) {
+            stockWriteBehindService.apply(replay, replayedUpTo);
+            log.info("stock journal: replayed segments {}..{}, {} items", lastApplied + 1, replayedUpTo, replay.size());
+        }
+
+        long lastSegment = segments.isEmpty() ? lastApplied : Math.max(lastApplied, segments.get(segments.size() - 1));
+        journal = new StockJournal(journalDirectory, lastSegment + 1);
+        journal.deleteUpTo(lastSegment);
+    }
+
+    /**
+     * 재고 차감, 재고가 부족하면 NotEnoughStockException
+     * @param itemId
+     * @param quantity
+     */
+    public void reserve(Long itemId, int quantity) {
+        AtomicInteger counter = counter(itemId);
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) {
+                throw new NotEnoughStockException("need more stock");
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                break;
+            }
+        }
+        record(itemId, counter, -quantity);
+    }
+
+    /**
+     * 재고 원복 (주문 취소)
+     */
+    public void release(Long itemId, int quantity) {
+        AtomicInteger counter = counter(itemId);
+        counter.addAndGet(quantity);
+        record(itemId, counter, quantity);
+    }
+
+    /**
+     * 재고를 stockQuantity 로 맞춘다. (상품 수정) 차이만큼을 증감분으로 기록한다.
+     */
+    public void adjustTo(Long itemId, int stockQuantity) {
+        AtomicInteger counter = counter(itemId);
+        int previous = counter.getAndSet(stockQuantity);
+        if (previous != stockQuantity) {
+            record(itemId, counter, stockQuantity - previous);
+        }
+    }
+
+    public int available(Long itemId) {
+        return counter(itemId).get();
+    }
+
+    /**
+     * 쌓인 증감분을 item 테이블에 반영하고, 반영된 journal 세그먼트를 지운다.
+     * 반영에 실패하면 증감분을 되돌려 놓는다. (세그먼트 파일은 남아 있으므로 다음 flush 나 재기동 때 반영된다)
+     * @return 반영된 상품 수
+     */
+    public synchronized int flush() {
+        if (!enabled || deltas.isEmpty()) {
+            return 0;
+        }
+        ConcurrentHashMap<Long, AtomicInteger> drained;
+        long segment;
+        rotateLock.writeLock().lock();
+        try {
+            drained = deltas;
+            deltas = new ConcurrentHashMap<>();
+            segment = journal.rotate();
+        } finally {
+            rotateLock.writeLock().unlock();
+        }
+
+        Map<Long, Integer> coalesced = new TreeMap<>(); // 상품 id 순서로 UPDATE 해서 교착을 피한다.
+        drained.forEach((itemId, delta) -> {
+            if (delta.get() != 0) {
+                coalesced.put(itemId, delta.get());
+            }
+        });
+        try {
+            if (!coalesced.isEmpty()) {
+                stockWriteBehindService.apply(coalesced, segment);
+            }
+        } catch (RuntimeException e) {
+            log.warn("stock write-behind flush failed, {} items will be retried", coalesced.size(), e);
+            coalesced.forEach((itemId, delta) -> deltas.computeIfAbsent(itemId, id -> new AtomicInteger()).addAndGet(delta));
+            return 0;
+        }
+        journal.deleteUpTo(segment);
+        return coalesced.size();
+    }
+
+    public int pendingCount() {
+        return deltas.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private AtomicInteger counter(Long itemId) {
+        return counters.computeIfAbsent(itemId, id -> new AtomicInteger(stockWriteBehindService.loadStock(id)));
+    }
+
+    /**
+     * 증감분을 journal 과 증감분 map 에 기록하고, 트랜잭션이 롤백되면 되돌리도록 등록한다.
+     * 기록에 실패하면 이미 바꾼 카운터를 되돌린다.
+     */
+    private void record(Long itemId, AtomicInteger counter, int delta) {
+        append(itemId, counter, delta);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        counter.addAndGet(-delta);
+                        append(itemId, counter, -delta);
+                    }
+                }
+            });
+        }
+    }
+
+    private void append(Long itemId, AtomicInteger counter, int delta) {
+        rotateLock.readLock().lock();
+        try {
+            journal.append(itemId, delta);
+            deltas.computeIfAbsent(itemId, id -> new AtomicInteger()).addAndGet(delta);
+        } catch (RuntimeException e) {
+            counter.addAndGet(-delta);
+            throw e;
+        } finally {
+            rotateLock.readLock().unlock();
+        }
+    }
+}
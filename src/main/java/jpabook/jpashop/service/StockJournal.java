@@ -0,0 +1,204 @@
+package jpabook.jpashop.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * write-behind 재고 증감분 journal
+ * 증감분 한 건을 (상품 id 8바이트, 증감 4바이트) 레코드로 현재 세그먼트 파일(stock-{번호}.journal) 에 붙이고, fsync 된 뒤에 돌려준다.
+ * fsync 는 묶어서 한다. (group commit) 한 스레드가 fsync 하는 동안 붙은 레코드는 다음 fsync 한 번에 같이 반영된다.
+ * flush 할 때 세그먼트를 넘기고(rotate), DB 반영이 커밋되면 그 번호까지의 세그먼트를 지운다.
+ * 기록 도중 죽어서 마지막 레코드가 잘린 경우, 잘린 부분은 버린다.
+ */
+public class StockJournal implements AutoCloseable {
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+    private static final String PREFIX = "stock-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    // rotate/close 는 forceLock -> this 순서로 잡는다.
+    private final Object forceLock = new Object();
+    private long segment;
+    private FileChannel channel;
+    private long written; // this
+    private long forced; // forceLock
+    private long forces; // forceLock
+
+    /**
+     * @param directory
+     * @param segment 새로 쓸 세그먼트 번호, 남아 있는 세그먼트보다 커야 한다.
+     */
+    public StockJournal(Path directory, long segment) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        open(segment);
+    }
+
+    public void append(long itemId, int delta) {
+        long mine;
+        synchronized (this) {
+            buffer.clear();
+            buffer.putLong(itemId).putInt(delta).flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            mine = ++written;
+        }
+        synchronized (forceLock) {
+            if (forced >= mine) {
+                return; // 앞선 fsync 에 같이 반영됨
+            }
+            long upTo;
+            FileChannel target;
+            synchronized (this) {
+                upTo = written;
+                target = channel;
+            }
+            // 기록은 막지 않고 fsync 한다. 그동안 붙은 레코드는 다음 fsync 가 가져간다.
+            force(target);
+            forced = upTo;
+        }
+    }
+
+    /**
+     * 현재 세그먼트를 닫고 다음 번호의 세그먼트로 넘긴다.
+     * @return 닫은 세그먼트 번호
+     */
+    public long rotate() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                long closed = segment;
+                closeChannel();
+                open(closed + 1);
+                return closed;
+            }
+        }
+    }
+
+    /**
+     * 번호가 segment 이하인 (DB 에 반영된) 세그먼트 파일 삭제
+     */
+    public void deleteUpTo(long segment) {
+        for (long number : segments(directory)) {
+            if (number <= segment) {
+                try {
+                    Files.deleteIfExists(path(directory, number));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (forceLock) {
+            synchronized (this) {
+                closeChannel();
+            }
+        }
+    }
+
+    /**
+     * 지금까지 fsync 횟수
+     */
+    long forces() {
+        synchronized (forceLock) {
+            return forces;
+        }
+    }
+
+    /**
+     * 디렉터리에 남은 세그먼트 번호, 오름차순
+     */
+    public static List<Long> segments(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 세그먼트의 증감분을 상품별로 합쳐서 읽는다. 끝에 잘린 레코드는 무시한다.
+     */
+    public static Map<Long, Integer> read(Path directory, long segment) {
+        Map<Long, Integer> deltas = new TreeMap<>();
+        try {
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(path(directory, segment)));
+            while (records.remaining() >= RECORD_SIZE) {
+                deltas.merge(records.getLong(), records.getInt(), Integer::sum);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return deltas;
+    }
+
+    private void open(long segment) {
+        try {
+            this.channel = FileChannel.open(path(directory, segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.segment = segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 닫기 전에 fsync 를 기다리는 레코드까지 반영한다. forceLock, this 를 잡고 부른다.
+     */
+    private void closeChannel() {
+        force(channel);
+        forced = written;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void force(FileChannel target) {
+        try {
+            forceChannel(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        forces++;
+    }
+
+    /**
+     * 테스트에서 느린 fsync 를 흉내 낼 수 있도록 분리
+     */
+    void forceChannel(FileChannel target) throws IOException {
+        target.force(false);
+    }
+
+    private static Path path(Path directory, long segment) {
+        return directory.resolve(PREFIX + segment + SUFFIX);
+    }
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.StockJournalCheckpoint;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.StockJournalCheckpointRepository;
+import jpabook.jpashop.shard.Shards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+/**
+ * write-behind 재고의 DB 쪽 작업
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class StockWriteBehindService {
+    private final ItemRepository itemRepository;
+    private final StockJournalCheckpointRepository stockJournalCheckpointRepository;
+    private final Shards shards;
+
+    /**
+     * 카운터 초기값으로 쓸 item 테이블의 재고
+     * 샤딩을 켜면 주문 트랜잭션이 회원의 샤드에 있어도 원본(0 번 샤드) 에서 읽는다. 재고 반영(apply) 은 복제되지 않는다.
+     * @param itemId
+     * @return
+     */
+    public int loadStock(Long itemId) {
+        return shards.onPrimary(() -> itemRepository.findStockQuantity(itemId));
+    }
+
+    public long findLastSegment() {
+        return stockJournalCheckpointRepository.findLastSegment();
+    }
+
+    /**
+     * 합쳐진 증감분을 상품당 UPDATE 한 번으로 반영하고, 같은 트랜잭션에서 체크포인트를 segment 로 올린다.
+     * 이미 반영된 세그먼트면 아무것도 하지 않는다.
+     * @param deltas 상품 id 순서 (교착 방지)
+     * @param segment 이 증감분이 기록된 마지막 세그먼트 번호
+     * @return 반영했으면 true
+     */
+    @Transactional
+    public boolean apply(Map<Long, Integer> deltas, long segment) {
+        StockJournalCheckpoint checkpoint = stockJournalCheckpointRepository.findForUpdate();
+        if (checkpoint.getLastSegment() >= segment) {
+            return false;
+        }
+        deltas.forEach((itemId, delta) -> {
+            if (delta != 0) {
+                itemRepository.increaseStock(itemId, delta);
+            }
+        });
+        checkpoint.advance(segment);
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 메서드를 @ShardKey 파라미터가 가리키는 샤드에서 실행한다. (ShardRoutingAspect)
+ * 트랜잭션보다 먼저 적용되므로, 메서드의 @Transactional 은 그 샤드의 커넥션으로 시작한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RouteToShard {
+    By value();
+
+    enum By {
+        MEMBER, // member_id
+        ORDER   // 주문 id
+    }
+}
@@ -0,0 +1,41 @@
+package jpabook.jpashop.shard;
+
+/**
+ * 현재 스레드가 사용할 샤드 번호
+ * ShardRoutingDataSource 가 커넥션을 얻을 때 읽는다. 지정하지 않으면(null) 0 번 샤드를 쓴다.
+ * 트랜잭션은 시작할 때 커넥션을 잡으므로, 트랜잭션 밖에서 정해야 한다. (Shards.enter, @RouteToShard)
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return 지정된 샤드 번호, 지정하지 않았으면 null
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+
+    /**
+     * 트랜잭션, 영속성 컨텍스트와 상관없이 JDBC 작업만 할 때 (스키마 생성 등)
+     */
+    static void run(int shard, Runnable work) {
+        Integer previous = current();
+        set(shard);
+        try {
+            work.run();
+        } finally {
+            set(previous);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package jpabook.jpashop.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 샤드별 커넥션 풀
+ * DataSource 빈으로 등록하지 않는다. (spring.datasource 자리는 ShardRoutingDataSource 가 차지한다)
+ * 스프링 트랜잭션에 묶인 커넥션을 거치지 않고 샤드에 직접 쓸 때(복제, 시퀀스 설정) 사용한다.
+ */
+public class ShardDataSources implements Closeable {
+    private final List<HikariDataSource> pools;
+
+    public ShardDataSources(List<HikariDataSource> pools) {
+        this.pools = pools;
+    }
+
+    public List<DataSource> getPools() {
+        return new ArrayList<>(pools);
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
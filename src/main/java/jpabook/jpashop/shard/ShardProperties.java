@@ -0,0 +1,32 @@
+package jpabook.jpashop.shard;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * jpashop.sharding.*
+ * 주문 데이터를 member_id 로 나눠 저장할 샤드(DB) 목록
+ * enabled 가 false 면 spring.datasource 하나만 쓴다.
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.sharding")
+@Getter @Setter
+public class ShardProperties {
+    private boolean enabled;
+    private List<Shard> shards = new ArrayList<>(); // 0 번 샤드에 회원/상품 원본을 둔다.
+    private int threads;                // scatter 조회 스레드 수, 0 이하면 샤드 수 * 4
+    private long timeoutMs = 5000;      // scatter 조회에서 샤드 하나를 기다리는 최대 시간
+
+    @Getter @Setter
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private int maxPoolSize = 10;
+    }
+}
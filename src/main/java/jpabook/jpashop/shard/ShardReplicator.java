@@ -0,0 +1,134 @@
+package jpabook.jpashop.shard;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 회원/상품을 0 번 샤드에서 나머지 샤드로 복제한다.
+ *
+ * 주문은 회원의 샤드에 저장되고 주문 -> 회원, 주문상품 -> 상품 FK 를 가지므로, 모든 샤드에 회원/상품 row 가 있어야 한다.
+ * 원본은 0 번 샤드이고, 0 번 샤드에서 엔티티로 저장/변경된 row 를 커밋 후에 다른 샤드에 그대로 덮어쓴다. (H2 merge)
+ * 기동 시에는 전체를 한 번 맞춘다.
+ * 벌크 UPDATE (write-behind 재고 반영 등) 는 복제하지 않는다. 샤드의 상품 재고는 쓰지 않는다.
+ *
+ * 스프링 트랜잭션에 묶인 커넥션을 쓰지 않도록 샤드별 커넥션 풀을 직접 사용한다.
+ */
+@Slf4j
+public class ShardReplicator implements PostInsertEventListener, PostUpdateEventListener {
+    static final List<Class<?>> REPLICATED = Arrays.asList(Member.class, Item.class);
+    private static final int SYNC_CHUNK_SIZE = 1000;
+
+    private final List<JdbcTemplate> shards;
+
+    public ShardReplicator(List<DataSource> shards) {
+        this.shards = shards.stream()
+                .map(JdbcTemplate::new)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        replicateAfterCommit(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        replicateAfterCommit(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void replicateAfterCommit(EntityPersister persister, Object id) {
+        Integer shard = ShardContext.current();
+        if (shard != null && shard != 0 || !isReplicated(persister.getMappedClass())) {
+            return;
+        }
+        AbstractEntityPersister table = (AbstractEntityPersister) persister;
+        Runnable copy = () -> copy(table.getTableName(), table.getIdentifierColumnNames()[0], id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    copy.run();
+                }
+            });
+        } else {
+            copy.run();
+        }
+    }
+
+    private void copy(String table, String idColumn, Object id) {
+        try {
+            upsert(table, idColumn, shards.get(0).queryForList(
+                    "select * from " + table + " where " + idColumn + " = ?", id));
+        } catch (RuntimeException e) {
+            // 커밋은 이미 끝났다. 다음 기동 시 sync 에서 다시 맞춘다.
+            log.error("shard replication failed: {} {}", table, id, e);
+        }
+    }
+
+    /**
+     * 복제 대상 테이블 전체를 id 순서로 청크 단위로 덮어쓴다.
+     */
+    void sync(SessionFactoryImplementor sessionFactory) {
+        for (Class<?> entity : REPLICATED) {
+            AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(entity);
+            String table = persister.getTableName();
+            String idColumn = persister.getIdentifierColumnNames()[0];
+            long lastId = Long.MIN_VALUE;
+            int total = 0;
+            while (true) {
+                List<Map<String, Object>> rows = shards.get(0).queryForList(
+                        "select * from " + table + " where " + idColumn + " > ? order by " + idColumn + " limit " + SYNC_CHUNK_SIZE, lastId);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                upsert(table, idColumn, rows);
+                total += rows.size();
+                lastId = ((Number) rows.get(rows.size() - 1).get(idColumn)).longValue();
+            }
+            log.info("shard replication: synced {} {} rows to {} shards", total, table, shards.size() - 1);
+        }
+    }
+
+    private void upsert(String table, String idColumn, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = "merge into " + table + " (" + String.join(", ", columns) + ") key (" + idColumn + ")" +
+                " values (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        List<Object[]> values = rows.stream()
+                .map(row -> columns.stream().map(row::get).toArray())
+                .collect(Collectors.toList());
+        for (JdbcTemplate shard : shards.subList(1, shards.size())) {
+            shard.batchUpdate(sql, values);
+        }
+    }
+
+    private static boolean isReplicated(Class<?> mappedClass) {
+        return REPLICATED.stream().anyMatch(type -> type.isAssignableFrom(mappedClass));
+    }
+}
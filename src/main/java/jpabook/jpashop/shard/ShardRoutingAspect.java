@@ -0,0 +1,51 @@
+package jpabook.jpashop.shard;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * @RouteToShard 메서드를 해당 샤드로 보낸다.
+ * 트랜잭션 advice 보다 바깥에서 실행되어야 하므로 가장 높은 우선순위를 준다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class ShardRoutingAspect {
+    private final Shards shards;
+
+    @Around("@annotation(routeToShard)")
+    public Object route(ProceedingJoinPoint joinPoint, RouteToShard routeToShard) throws Throwable {
+        if (!shards.isSharded()) {
+            return joinPoint.proceed();
+        }
+        Long key = shardKey(joinPoint);
+        if (key == null) {
+            return joinPoint.proceed();
+        }
+        int shard = routeToShard.value() == RouteToShard.By.MEMBER ? shards.shardForMember(key) : shards.shardForOrder(key);
+        try (Shards.Scope ignored = shards.enter(shard)) {
+            return joinPoint.proceed();
+        }
+    }
+
+    private static Long shardKey(ProceedingJoinPoint joinPoint) {
+        Annotation[][] annotations = ((MethodSignature) joinPoint.getSignature()).getMethod().getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    return (Long) joinPoint.getArgs()[i];
+                }
+            }
+        }
+        throw new IllegalStateException("@ShardKey 파라미터가 없습니다: " + joinPoint.getSignature());
+    }
+}
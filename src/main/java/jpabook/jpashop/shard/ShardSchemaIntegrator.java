@@ -0,0 +1,90 @@
+package jpabook.jpashop.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.schema.TargetType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * EntityManagerFactory 가 만들어질 때 샤드를 준비한다.
+ *  - ddl-auto 가 create 면, Hibernate 가 0 번 샤드에 만든 스키마를 나머지 샤드에도 만든다.
+ *  - 시퀀스를 샤드마다 (샤드 번호 + 1) 부터 샤드 수 간격으로 발급하게 바꾼다. 주문 id 만 보고 샤드를 알 수 있다. (Shards.shardForOrder)
+ *  - 회원/상품 복제(ShardReplicator) 를 엔티티 이벤트에 등록하고, 기존 row 를 한 번 맞춘다.
+ * 스키마를 Hibernate 가 만들지 않으면(validate, none) 시퀀스도 운영에서 같은 규칙으로 만들어 두어야 한다.
+ */
+@Slf4j
+class ShardSchemaIntegrator implements Integrator, SessionFactoryObserver {
+    private final List<DataSource> shards;
+    private final ShardReplicator replicator;
+    private Metadata metadata;
+
+    ShardSchemaIntegrator(List<DataSource> shards, ShardReplicator replicator) {
+        this.shards = shards;
+        this.replicator = replicator;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = metadata;
+        sessionFactory.addObserver(this);
+        EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_INSERT, replicator);
+        listeners.appendListeners(EventType.POST_UPDATE, replicator);
+    }
+
+    /**
+     * Hibernate 의 스키마 생성(0 번 샤드) 이 끝난 뒤에 불린다.
+     */
+    @Override
+    public void sessionFactoryCreated(SessionFactory factory) {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) factory;
+        Object ddlAuto = sessionFactory.getProperties().get(AvailableSettings.HBM2DDL_AUTO);
+        if ("create".equals(ddlAuto) || "create-drop".equals(ddlAuto)) {
+            for (int shard = 1; shard < shards.size(); shard++) {
+                createSchema(shard);
+            }
+            for (int shard = 0; shard < shards.size(); shard++) {
+                offsetSequences(shard);
+            }
+        }
+        replicator.sync(sessionFactory);
+    }
+
+    private void createSchema(int shard) {
+        SchemaExport export = new SchemaExport();
+        ShardContext.run(shard, () -> export.create(EnumSet.of(TargetType.DATABASE), metadata));
+        // 처음 만드는 DB 에서는 drop 이 실패할 수 있다. 실제로 테이블이 없으면 이후 쿼리에서 드러난다.
+        if (!export.getExceptions().isEmpty()) {
+            log.warn("shard {}: {} schema export errors", shard, export.getExceptions().size());
+        }
+    }
+
+    private void offsetSequences(int shard) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(shards.get(shard));
+        for (Namespace namespace : metadata.getDatabase().getNamespaces()) {
+            for (Sequence sequence : namespace.getSequences()) {
+                jdbcTemplate.execute("alter sequence " + sequence.getName().getSequenceName().render() +
+                        " restart with " + (shard + 1) + " increment by " + shards.size());
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 주문 샤딩 설정 (jpashop.sharding.enabled=true)
+ *
+ * 주문(orders, order_item, delivery) 과 주문에 딸린 데이터(주문 이벤트, Idempotency-Key, 아카이브) 는 회원의 샤드에 저장한다.
+ * 회원/상품은 0 번 샤드가 원본이고 나머지 샤드에 복제한다. (ShardReplicator)
+ * 샤드가 둘 이상이면
+ *  - 재고는 write-behind 카운터(jpashop.stock.write-behind) 로만 바꾼다. 주문 트랜잭션이 0 번 샤드의 상품 row 를 잠글 수 없기 때문이다.
+ *  - init-db 는 쓸 수 없다. 회원/상품/주문을 한 트랜잭션에서 만들기 때문이다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardDataSources shardDataSources(ShardProperties properties, Environment environment, MeterRegistry meterRegistry) {
+        List<ShardProperties.Shard> shards = properties.getShards();
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("jpashop.sharding.shards 가 비어 있습니다.");
+        }
+        if (shards.size() > 1 && !environment.getProperty("jpashop.stock.write-behind.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("샤드가 둘 이상이면 jpashop.stock.write-behind.enabled=true 여야 합니다.");
+        }
+        if (!"none".equals(environment.getProperty("jpashop.init-db.mode", "startup"))) {
+            throw new IllegalStateException("샤딩을 켜면 jpashop.init-db.mode=none 이어야 합니다.");
+        }
+
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            ShardProperties.Shard shard = shards.get(i);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+            pool.setPoolName("shard-" + i);
+            pool.setMaximumPoolSize(shard.getMaxPoolSize());
+            pool.setMetricRegistry(meterRegistry);
+            pools.add(pool);
+        }
+        return new ShardDataSources(pools);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources shardDataSources) {
+        return new ShardRoutingDataSource(shardDataSources.getPools());
+    }
+
+    @Bean
+    public ShardReplicator shardReplicator(ShardDataSources shardDataSources) {
+        return new ShardReplicator(shardDataSources.getPools());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(ShardDataSources shardDataSources, ShardReplicator replicator) {
+        ShardSchemaIntegrator integrator = new ShardSchemaIntegrator(shardDataSources.getPools(), replicator);
+        return hibernateProperties -> hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(integrator));
+    }
+}
@@ -0,0 +1,271 @@
+package jpabook.jpashop.shard;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 샤드 선택과 샤드 간 조회
+ *
+ * 샤딩을 끄면 샤드는 하나이고, 모든 메서드가 호출한 스레드에서 그대로 실행된다.
+ *
+ * 샤드 선택
+ *  - 회원: member_id 를 섞어서 샤드 수로 나눈다.
+ *  - 주문: 주문 id 는 샤드마다 (샤드 번호 + 1) 부터 샤드 수 간격으로 발급된다. (ShardSchemaIntegrator)
+ *    배송 등 같은 시퀀스로 발급한 다른 id 도 같은 규칙으로 샤드를 알 수 있다.
+ *
+ * scatter 조회
+ *  - 샤드마다 같은 조회를 전용 스레드 풀에서 읽기 전용 트랜잭션으로 병렬 실행하고, 정렬 순서대로 k-way merge 해서 limit 건만 꺼낸다.
+ *  - 각 샤드의 조회는 같은 정렬로 최대 (offset + limit) 건을 돌려줘야 한다. 합친 결과의 앞 (offset + limit) 건은 반드시 이 안에 있다.
+ *  - 다른 스레드의 트랜잭션이므로 결과는 준영속 엔티티이고, 호출한 쪽 트랜잭션에서 아직 커밋하지 않은 변경은 보이지 않는다.
+ *  - 이미 샤드가 정해진 스레드(샤드 트랜잭션 안) 에서 부르면 그 샤드만 조회한다.
+ */
+@Component
+public class Shards {
+    private final int count;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    public Shards(ShardProperties properties, EntityManagerFactory entityManagerFactory, PlatformTransactionManager transactionManager) {
+        this.count = properties.isEnabled() ? properties.getShards().size() : 1;
+        this.entityManagerFactory = entityManagerFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.timeoutMillis = properties.getTimeoutMs();
+        if (count > 1) {
+            AtomicInteger sequence = new AtomicInteger();
+            int threads = properties.getThreads() > 0 ? properties.getThreads() : count * 4;
+            this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int shardForMember(Long memberId) {
+        // 회원 id 도 샤드 수 간격으로 발급되므로 그대로 나누면 한 샤드에 몰린다.
+        long hash = memberId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) count);
+    }
+
+    public int shardForOrder(Long orderId) {
+        return (int) Math.floorMod(orderId - 1, (long) count);
+    }
+
+    /**
+     * 현재 스레드를 shard 로 보낸다. 트랜잭션을 시작하기 전에 불러야 한다. (@RouteToShard)
+     * 다른 샤드의 트랜잭션 안에서 부르면 IllegalStateException
+     * 트랜잭션 밖이면 요청에 묶인 영속성 컨텍스트(OSIV) 를 잠시 떼어 놓는다. 그 영속성 컨텍스트가 이미 다른 샤드의 커넥션을 잡고 있을 수 있기 때문이다.
+     * @return close 하면 이전 샤드와 영속성 컨텍스트로 돌아간다.
+     */
+    public Scope enter(int shard) {
+        Integer previous = ShardContext.current();
+        if (!isSharded() || previous != null && previous == shard) {
+            return () -> {
+            };
+        }
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        int current = previous == null ? 0 : previous;
+        if (inTransaction && current != shard) {
+            throw new IllegalStateException("샤드 " + current + " 의 트랜잭션 안에서 샤드 " + shard + " 로 바꿀 수 없습니다.");
+        }
+        Object suspended = inTransaction ? null : TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        ShardContext.set(shard);
+        return () -> {
+            ShardContext.set(previous);
+            if (suspended != null) {
+                TransactionSynchronizationManager.bindResource(entityManagerFactory, suspended);
+            }
+        };
+    }
+
+    public <T> T on(int shard, Supplier<T> work) {
+        try (Scope ignored = enter(shard)) {
+            return work.get();
+        }
+    }
+
+    /**
+     * 샤드마다 차례로 실행한다. (백그라운드 작업)
+     * 샤딩을 끄면 한 번만 실행한다.
+     */
+    public void forEachShard(Runnable work) {
+        sumOverShards(() -> {
+            work.run();
+            return 0;
+        });
+    }
+
+    public int sumOverShards(IntSupplier work) {
+        if (!isSharded() || ShardContext.current() != null) {
+            return work.getAsInt();
+        }
+        int sum = 0;
+        for (int shard = 0; shard < count; shard++) {
+            sum += on(shard, work::getAsInt);
+        }
+        return sum;
+    }
+
+    /**
+     * @param query 샤드 하나에서 order 순서로 최대 limit 건
+     * @return order 순서로 최대 limit 건
+     */
+    public <T> List<T> scatter(Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        if (!isSharded() || ShardContext.current() != null) {
+            return query.get();
+        }
+        return merge(gather(query), order, 0, limit);
+    }
+
+    /**
+     * 페이징 조회, 샤드마다 앞에서부터 (offset + limit) 건을 읽어서 합친 뒤 offset 만큼 건너뛴다.
+     * @param query (offset, limit) 으로 샤드 하나에서 order 순서로 조회
+     */
+    public <T> List<T> scatter(PageQuery<T> query, Comparator<? super T> order, int offset, int limit) {
+        if (!isSharded() || ShardContext.current() != null) {
+            return query.find(offset, limit);
+        }
+        int perShard = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        return merge(gather(() -> query.find(0, perShard)), order, offset, limit);
+    }
+
+    /**
+     * 0 번 샤드(회원/상품 원본) 에서 읽는다. 다른 샤드의 트랜잭션 안에서도 쓸 수 있다.
+     * 복제하지 않는 값(벌크 UPDATE 한 재고 등) 을 읽을 때 쓴다.
+     */
+    public <T> T onPrimary(Supplier<T> query) {
+        Integer current = ShardContext.current();
+        if (!isSharded() || current == null || current == 0) {
+            return query.get();
+        }
+        return await(Collections.singletonList(submit(0, query))).get(0);
+    }
+
+    /**
+     * 샤드마다 조회해서 샤드 순서대로 돌려준다.
+     */
+    public <T> List<List<T>> gather(Supplier<List<T>> query) {
+        if (!isSharded() || ShardContext.current() != null) {
+            List<List<T>> results = new ArrayList<>();
+            results.add(query.get());
+            return results;
+        }
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            futures.add(submit(shard, query));
+        }
+        return await(futures);
+    }
+
+    private <T> Future<T> submit(int shard, Supplier<T> query) {
+        return executor.submit(() -> on(shard, () -> readOnlyTransaction.execute(status -> query.get())));
+    }
+
+    /**
+     * 모두 timeoutMillis 안에 끝나야 한다.
+     */
+    private <T> List<T> await(List<Future<T>> futures) {
+        List<T> results = new ArrayList<>();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("shard scatter interrupted", e);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("shard " + results.size() + " did not answer in " + timeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    /**
+     * 각각 정렬된 목록을 합쳐서 offset 을 건너뛰고 limit 건
+     */
+    static <T> List<T> merge(List<List<T>> sortedParts, Comparator<? super T> order, int offset, int limit) {
+        // {part 번호, 위치}
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                order.compare(sortedParts.get(a[0]).get(a[1]), sortedParts.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < sortedParts.size(); i++) {
+            if (!sortedParts.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+                total += sortedParts.get(i).size();
+            }
+        }
+
+        List<T> merged = new ArrayList<>(Math.max(0, Math.min(limit, total - offset)));
+        int skipped = 0;
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> part = sortedParts.get(head[0]);
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(part.get(head[1]));
+            }
+            if (head[1] + 1 < part.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    public interface PageQuery<T> {
+        List<T> find(int offset, int limit);
+    }
+}
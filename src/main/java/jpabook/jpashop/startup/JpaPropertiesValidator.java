@@ -0,0 +1,98 @@
+package jpabook.jpashop.startup;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * spring.jpa.properties.* 검증
+ *
+ * Hibernate 는 모르는 설정 키를 조용히 무시한다.
+ * 그래서 "hibernte.default_batch_fetch_size" 처럼 오타가 난 키는 아무 경고 없이 적용되지 않는다.
+ * 기동 시점에 Hibernate 가 아는 키(AvailableSettings) 인지 확인하고, 모르는 키가 있으면 기동을 실패시킨다.
+ */
+@Component
+public class JpaPropertiesValidator {
+    private static final Set<String> KNOWN_KEYS = knownKeys();
+
+    // 이름의 일부가 가변인 설정
+    private static final List<String> ALLOWED_PREFIXES = Arrays.asList(
+            "javax.persistence.", "hibernate.ejb.", "hibernate.event.", "hibernate.javax.cache.", "hibernate.integration.");
+
+    private final JpaProperties jpaProperties;
+
+    public JpaPropertiesValidator(JpaProperties jpaProperties) {
+        this.jpaProperties = jpaProperties;
+    }
+
+    @PostConstruct
+    public void validate() {
+        List<String> errors = jpaProperties.getProperties().keySet().stream()
+                .filter(key -> !isKnown(key))
+                .sorted()
+                .map(key -> "spring.jpa.properties." + key + suggestion(key))
+                .collect(Collectors.toList());
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("알 수 없는 JPA 설정 키가 있습니다: " + errors);
+        }
+    }
+
+    static boolean isKnown(String key) {
+        return KNOWN_KEYS.contains(key) || ALLOWED_PREFIXES.stream().anyMatch(key::startsWith);
+    }
+
+    /**
+     * 가장 비슷한 키를 찾아서 제안
+     */
+    private static String suggestion(String key) {
+        String closest = null;
+        int best = Integer.MAX_VALUE;
+        for (String known : KNOWN_KEYS) {
+            int distance = distance(key, known);
+            if (distance < best) {
+                best = distance;
+                closest = known;
+            }
+        }
+        return closest != null && best <= 3 ? " (did you mean spring.jpa.properties." + closest + "?)" : "";
+    }
+
+    private static int distance(String a, String b) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return prev[b.length()];
+    }
+
+    private static Set<String> knownKeys() {
+        Set<String> keys = new HashSet<>();
+        for (Field field : AvailableSettings.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    keys.add((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,29 @@
+package jpabook.jpashop.startup;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Arrays;
+
+/**
+ * 빠른 기동 관련 설정
+ *
+ * fast 프로파일은 spring.main.lazy-initialization 으로 빈을 처음 쓰일 때 만든다.
+ * 다만 @Scheduled 메서드를 가진 빈은 아무도 주입받지 않아서, lazy 로 두면 작업이 영영 등록되지 않는다.
+ * 이런 빈은 lazy 초기화 대상에서 제외한다.
+ * 기동 시 검사만 하는 빈(JpaPropertiesValidator) 도 아무도 주입받지 않으므로 제외한다.
+ * SmartInitializingSingleton 은 lazy 로 만들어진 빈에서는 불리지 않으므로, 기동 시 적재/복구하는 빈(자동완성 인덱스, 재고 카운터 등) 도 제외한다.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> JpaPropertiesValidator.class.isAssignableFrom(beanType)
+                || SmartInitializingSingleton.class.isAssignableFrom(beanType)
+                || Arrays.stream(beanType.getDeclaredMethods()).anyMatch(method -> method.isAnnotationPresent(Scheduled.class));
+    }
+}
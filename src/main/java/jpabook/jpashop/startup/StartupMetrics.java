@@ -0,0 +1,71 @@
+package jpabook.jpashop.startup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 기동 시간 측정
+ * JVM 시작부터 ApplicationReady 까지, 그리고 첫 요청 응답까지 걸린 시간을 남긴다.
+ *  - jpashop.startup.ready (ms)
+ *  - jpashop.startup.first-request (ms)
+ *
+ * jpashop.startup.exit-after-ready=true 면 기동이 끝나자마자 종료한다. (AppCDS 아카이브를 만드는 학습 실행용)
+ */
+@Component
+@Slf4j
+public class StartupMetrics extends OncePerRequestFilter {
+    private final long jvmStartTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicLong readyMillis = new AtomicLong(-1);
+    private final AtomicLong firstRequestMillis = new AtomicLong(-1);
+
+    @Value("${jpashop.startup.exit-after-ready:false}")
+    private boolean exitAfterReady;
+
+    public StartupMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("jpashop.startup.ready", readyMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("jpashop.startup.first-request", firstRequestMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        readyMillis.set(System.currentTimeMillis() - jvmStartTime);
+        log.info("startup: ready in {} ms since JVM start", readyMillis.get());
+
+        if (exitAfterReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (firstRequestMillis.get() < 0
+                    && firstRequestMillis.compareAndSet(-1, System.currentTimeMillis() - jvmStartTime)) {
+                log.info("startup: first request {} served {} ms since JVM start",
+                        request.getRequestURI(), firstRequestMillis.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jpabook.jpashop.startup;
+
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 기동 후 백그라운드 warmup
+ * 자주 쓰는 서비스를 한 번씩 호출해서, lazy 빈 생성 / Hibernate 쿼리 계획 캐시 / JIT 를 첫 사용자 요청 전에 데워둔다.
+ * 기동 경로에서는 아무것도 하지 않으므로 ready 시간에는 영향이 없다.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "jpashop.warmup.enabled", havingValue = "true")
+public class StartupWarmup {
+    private final MemberService memberService;
+    private final ItemService itemService;
+    private final OrderService orderService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        CompletableFuture.runAsync(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                memberService.findMembers();
+                itemService.findItems();
+                orderService.findOrders(new OrderSearch());
+                log.info("startup: warmup finished in {} ms", System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                log.warn("startup: warmup failed", e);
+            }
+        });
+    }
+}
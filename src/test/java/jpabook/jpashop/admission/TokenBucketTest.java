@@ -0,0 +1,43 @@
+package jpabook.jpashop.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    @Test
+    public void 버킷_크기만큼_허용_후_충전() throws Exception {
+        // given: 초당 10개, 버킷 2개
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+
+        // when, then
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        long wait = bucket.tryAcquire();
+        assertEquals("다음 토큰까지 100ms", 100_000_000L, wait);
+
+        now.addAndGet(100_000_000L);
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    @Test
+    public void 오래_쉬어도_버킷_크기까지만_충전() throws Exception {
+        // given
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        bucket.tryAcquire();
+        bucket.tryAcquire();
+
+        // when
+        now.addAndGet(60_000_000_000L);
+
+        // then
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+}
@@ -0,0 +1,82 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.OrderStatus;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OrderLineColumnsTest {
+
+    private static final LocalDateTime DAY1 = LocalDateTime.of(2021, 1, 1, 10, 0);
+    private static final LocalDateTime DAY2 = DAY1.plusDays(1);
+
+    @Test
+    public void 기간_상태별_집계() throws Exception {
+        // given
+        OrderLineColumns columns = new OrderLineColumns.Builder(1)
+                .add(1L, 10L, 1000, 2, DAY1, OrderStatus.ORDER)
+                .add(1L, 20L, 500, 1, DAY1, OrderStatus.ORDER)
+                .add(2L, 10L, 1000, 3, DAY2, OrderStatus.CANCEL)
+                .add(3L, 10L, 1000, 1, DAY2, OrderStatus.ORDER)
+                .build();
+        int day1 = (int) DAY1.toLocalDate().toEpochDay();
+        int day2 = (int) DAY2.toLocalDate().toEpochDay();
+
+        // then
+        assertEquals(4, columns.size());
+        assertEquals(4L * OrderLineColumns.BYTES_PER_LINE, columns.memoryBytes());
+        assertEquals(2500, columns.sumRevenue(day1, day1, null));
+        assertEquals(3500, columns.sumRevenue(day1, day2, OrderStatus.ORDER));
+        assertEquals(7, columns.sumUnits(day1, day2, null));
+        assertEquals(2, columns.countOrders(day1, day2, OrderStatus.ORDER));
+
+        Map<Long, long[]> byItem = columns.sumByItem(day1, day2, OrderStatus.ORDER);
+        assertArrayEquals(new long[]{3, 3000}, byItem.get(10L));
+        assertArrayEquals(new long[]{1, 500}, byItem.get(20L));
+    }
+
+    @Test
+    public void 배열_용량으로_메모리_측정() throws Exception {
+        // given: 용량 16 에서 17번째 라인을 넣으면 24 로 늘어난다.
+        OrderLineColumns.Builder builder = new OrderLineColumns.Builder(16);
+        for (int i = 0; i < 17; i++) {
+            builder.add(i, 10L, 1000, 1, DAY1, OrderStatus.ORDER);
+        }
+
+        // when
+        OrderLineColumns columns = builder.build();
+
+        // then: 늘리는 동안 16 + 24, 잘라내는 동안 24 + 17 라인분이 같이 있었다.
+        assertEquals(17L * OrderLineColumns.BYTES_PER_LINE, columns.memoryBytes());
+        assertEquals(41L * OrderLineColumns.BYTES_PER_LINE, builder.peakBytes());
+    }
+
+    @Test
+    public void 남는_용량이_적으면_자르지_않음() throws Exception {
+        // given
+        OrderLineColumns.Builder builder = new OrderLineColumns.Builder(100);
+        for (int i = 0; i < 99; i++) {
+            builder.add(i, 10L, 1000, 1, DAY1, OrderStatus.ORDER);
+        }
+
+        // when
+        OrderLineColumns columns = builder.build();
+
+        // then
+        assertEquals(99, columns.size());
+        assertEquals(100L * OrderLineColumns.BYTES_PER_LINE, columns.memoryBytes());
+        assertEquals(100L * OrderLineColumns.BYTES_PER_LINE, builder.peakBytes());
+    }
+
+    @Test
+    public void 빈_스냅샷() throws Exception {
+        OrderLineColumns columns = OrderLineColumns.empty();
+        int today = (int) LocalDate.now().toEpochDay();
+        assertEquals(0, columns.sumRevenue(today, today, null));
+        assertTrue(columns.sumByItem(today, today, null).isEmpty());
+    }
+}
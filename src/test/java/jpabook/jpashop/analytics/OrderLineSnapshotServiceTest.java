@@ -0,0 +1,76 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.OrderService;
+import jpabook.jpashop.shard.Shards;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderLineSnapshotServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired DataSource dataSource;
+    @Autowired Shards shards;
+    @Autowired OrderService orderService;
+
+    @Before
+    public void setUp() {
+        Member member = new Member();
+        member.setName("스냅샷회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+
+        Book book = new Book();
+        book.setName("스냅샷책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+
+        orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+    }
+
+    @Test
+    public void 제한을_넘으면_배열을_잡기_전에_거절() throws Exception {
+        // given: 한 라인도 담을 수 없는 제한
+        OrderLineSnapshotService service = new OrderLineSnapshotService(dataSource, shards, OrderLineColumns.BYTES_PER_LINE - 1);
+
+        // when
+        boolean refreshed = service.refresh();
+
+        // then
+        assertFalse(refreshed);
+        assertNotNull(service.getLastRejectedAt());
+        assertEquals(0, service.getSnapshot().getColumns().size());
+        assertEquals("새 배열을 만들지 않았으므로 기록된 최대 크기도 없다", 0, service.getSnapshot().getRefreshPeakBytes());
+    }
+
+    @Test
+    public void 제한_안이면_새_스냅샷() throws Exception {
+        // given
+        OrderLineSnapshotService service = new OrderLineSnapshotService(dataSource, shards, 0);
+
+        // when
+        boolean refreshed = service.refresh();
+
+        // then
+        assertTrue(refreshed);
+        assertNull(service.getLastRejectedAt());
+        assertTrue(service.getSnapshot().getColumns().size() >= 1);
+    }
+}
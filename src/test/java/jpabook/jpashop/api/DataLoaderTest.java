@@ -0,0 +1,117 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.OrderService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class DataLoaderTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+
+    @Test
+    public void 페이지_크기와_상관없이_쿼리수_고정() throws Exception {
+        // given
+        List<Long> orderIds = createOrders(20);
+
+        // when
+        long small = countQueries(orderIds.subList(0, 2));
+        long large = countQueries(orderIds);
+
+        // then
+        assertEquals("member, delivery, orderItems, item 한 번씩", 4, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    public void 지연로딩_결과와_같은_DTO() throws Exception {
+        // given
+        List<Long> orderIds = createOrders(3);
+
+        // when
+        List<OrderApiController.OrderDto> loaded = new DataLoader(em).map(findOrders(orderIds), OrderApiController.OrderDto::new);
+        em.clear();
+        List<OrderApiController.OrderDto> lazy = new ArrayList<>();
+        for (Order order : findOrders(orderIds)) {
+            lazy.add(new OrderApiController.OrderDto(order));
+        }
+
+        // then
+        assertEquals(lazy.size(), loaded.size());
+        for (int i = 0; i < lazy.size(); i++) {
+            assertEquals(lazy.get(i).getOrderId(), loaded.get(i).getOrderId());
+            assertEquals(lazy.get(i).getName(), loaded.get(i).getName());
+            assertEquals(lazy.get(i).getAddress().getStreet(), loaded.get(i).getAddress().getStreet());
+            assertEquals(lazy.get(i).getOrderItems(), loaded.get(i).getOrderItems());
+        }
+        assertEquals("로더회원-0", loaded.get(0).getName());
+        assertEquals("로더책-0", loaded.get(0).getOrderItems().get(0).getItemName());
+    }
+
+    /**
+     * 주문을 읽은 뒤 DTO 로 바꾸는 동안 나간 쿼리 수
+     */
+    private long countQueries(List<Long> orderIds) {
+        em.clear();
+        List<Order> orders = findOrders(orderIds);
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long before = statistics.getPrepareStatementCount();
+        List<OrderApiController.OrderDto> result = new DataLoader(em).map(orders, OrderApiController.OrderDto::new);
+        long queries = statistics.getPrepareStatementCount() - before;
+
+        assertEquals(orderIds.size(), result.size());
+        result.forEach(dto -> {
+            assertNotNull(dto.getName());
+            assertNotNull(dto.getAddress());
+            assertNotNull(dto.getOrderItems().get(0).getItemName());
+        });
+        return queries;
+    }
+
+    private List<Order> findOrders(List<Long> orderIds) {
+        return em.createQuery("select o from Order o where o.id in :ids order by o.id", Order.class)
+                .setParameter("ids", orderIds)
+                .getResultList();
+    }
+
+    private List<Long> createOrders(int count) {
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Member member = new Member();
+            member.setName("로더회원-" + i);
+            member.setAddress(new Address("서울", "거리" + i, "123-123"));
+            em.persist(member);
+
+            Book book = new Book();
+            book.setName("로더책-" + i);
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+
+            orderIds.add(orderService.order(member.getId(), book.getId(), 1));
+        }
+        em.flush();
+        em.clear();
+        return orderIds;
+    }
+}
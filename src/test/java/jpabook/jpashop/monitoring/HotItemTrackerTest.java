@@ -0,0 +1,84 @@
+package jpabook.jpashop.monitoring;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class HotItemTrackerTest {
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000 * MINUTE);
+    private final HotItemTracker tracker = new HotItemTracker(1024, 4, 8, now::get);
+
+    @Test
+    public void 구간별_top() throws Exception {
+        // given: 10분 전에는 1번, 지금은 2번 상품이 많이 주문됨
+        now.addAndGet(-10 * MINUTE);
+        tracker.record(1L, 100);
+        now.addAndGet(10 * MINUTE);
+        tracker.record(2L, 30);
+        tracker.record(3L, 5);
+
+        // when
+        List<HotItem> lastMinute = tracker.top(1, 2);
+        List<HotItem> lastHour = tracker.top(60, 2);
+
+        // then
+        assertEquals(2, lastMinute.size());
+        assertEquals(Long.valueOf(2L), lastMinute.get(0).getItemId());
+        assertEquals(30, lastMinute.get(0).getUnits());
+        assertEquals(Long.valueOf(1L), lastHour.get(0).getItemId());
+        assertEquals(100, lastHour.get(0).getUnits());
+    }
+
+    @Test
+    public void 한시간_지난_버킷은_빠짐() throws Exception {
+        // given
+        tracker.record(1L, 100);
+
+        // when
+        now.addAndGet(60 * MINUTE);
+        tracker.record(2L, 1);
+
+        // then
+        List<Long> ids = tracker.top(60, 10).stream().map(HotItem::getItemId).collect(Collectors.toList());
+        assertFalse(ids.contains(1L));
+        assertTrue(ids.contains(2L));
+    }
+
+    @Test
+    public void 후보가_넘쳐도_많이_주문된_상품은_남음() throws Exception {
+        // given: 후보 8개를 넘는 상품이 한 번씩 주문되고, 99번 상품은 뒤늦게 많이 주문됨
+        for (long itemId = 1; itemId <= 200; itemId++) {
+            tracker.record(itemId, 1);
+        }
+        for (int i = 0; i < 50; i++) {
+            tracker.record(99L, 1);
+        }
+
+        // when
+        List<HotItem> top = tracker.top(1, 1);
+
+        // then
+        assertEquals(Long.valueOf(99L), top.get(0).getItemId());
+        assertTrue("추정치는 실제보다 작지 않다.", top.get(0).getUnits() >= 51);
+    }
+
+    @Test
+    public void sketch_추정치는_실제보다_작지_않음() throws Exception {
+        // given
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (long key = 0; key < 1000; key++) {
+            sketch.add(key, key % 7);
+        }
+
+        // then
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 7);
+        }
+    }
+}
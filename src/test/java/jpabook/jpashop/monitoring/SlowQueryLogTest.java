@@ -0,0 +1,39 @@
+package jpabook.jpashop.monitoring;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SlowQueryLogTest {
+
+    @Test
+    public void 링버퍼는_최근_N건만_최신순으로_보관() throws Exception {
+        // given
+        SlowQueryLog slowQueryLog = new SlowQueryLog(null, 3, false);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            slowQueryLog.add(new SlowQuery(LocalDateTime.now(), i, "select ?", "select ?", "OrderRepository.findOne", null), "select " + i);
+        }
+
+        // then
+        List<SlowQuery> recent = slowQueryLog.recent();
+        assertEquals(5, slowQueryLog.totalCount());
+        assertEquals(3, recent.size());
+        assertEquals(4, recent.get(0).getElapsedMillis());
+        assertEquals(2, recent.get(2).getElapsedMillis());
+    }
+
+    @Test
+    public void 실행계획의_문자열_리터럴은_가림() throws Exception {
+        // when
+        String plan = SlowQueryLog.maskLiterals(
+                "SELECT M.NAME FROM PUBLIC.MEMBER M WHERE (M.NAME = 'O''Brien') AND (M.CITY = '서울') AND (M.MEMBER_ID = 1)");
+
+        // then
+        assertEquals("SELECT M.NAME FROM PUBLIC.MEMBER M WHERE (M.NAME = ?) AND (M.CITY = ?) AND (M.MEMBER_ID = 1)", plan);
+    }
+}
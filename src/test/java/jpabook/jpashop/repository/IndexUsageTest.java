@@ -0,0 +1,290 @@
+package jpabook.jpashop.repository;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.common.Value;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 시드 데이터를 넣고, 레포지토리 쿼리가 실제로 실행한 SQL 을 EXPLAIN 해서 테이블 풀 스캔(tableScan) 이 있으면 실패한다.
+ * 조건 없이 전체를 읽는 메서드 (findAll, findAllWithItem, findOrderQueryDtos 등) 는 풀 스캔이 정상이므로 대상이 아니다.
+ * 커밋된 데이터로 ANALYZE 해야 하므로 테스트 트랜잭션을 쓰지 않고, 끝나면 컨텍스트(메모리 DB) 를 버린다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:index-usage",
+        "logging.level.org.hibernate.SQL=warn",
+        "logging.level.org.hibernate.type=warn",
+        "jpashop.init-db.mode=none"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class IndexUsageTest {
+    private static final int MEMBERS = 500;
+    private static final int ITEMS = 50;
+    private static final int ORDERS = 5000;
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final String TABLE_SCAN = ".tableScan";
+
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired DataSource dataSource;
+    @Autowired StatementCapture statementCapture;
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderQueryRepository orderQueryRepository;
+    @Autowired ItemRepository itemRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberRepositoryOld memberRepositoryOld;
+
+    private static boolean seeded;
+    private static List<Long> memberIds;
+    private static List<Long> itemIds;
+    private static List<Long> orderIds;
+
+    @Before
+    public void setUp() throws Exception {
+        if (seeded) {
+            return;
+        }
+        transactionTemplate.execute(status -> {
+            seed();
+            return null;
+        });
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+        seeded = true;
+    }
+
+    @Test
+    public void 주문_검색_인덱스() throws Exception {
+        OrderSearch byName = new OrderSearch();
+        byName.setMemberName(memberName(7));
+        assertIndexed("findOrderDtos 회원이름", () -> orderRepository.findOrderDtos(byName));
+
+        OrderSearch byStatus = new OrderSearch();
+        byStatus.setOrderStatus(OrderStatus.CANCEL);
+        byStatus.setOrderDateFrom(BASE_DATE.plusDays(100));
+        byStatus.setOrderDateTo(BASE_DATE.plusDays(110));
+        assertIndexed("findOrderDtos 상태+기간", () -> orderRepository.findOrderDtos(byStatus));
+
+        OrderSearch byDate = new OrderSearch();
+        byDate.setOrderDateFrom(BASE_DATE.plusDays(10));
+        byDate.setOrderDateTo(BASE_DATE.plusDays(12));
+        assertIndexed("findOrderDtos 기간", () -> orderRepository.findOrderDtos(byDate));
+        assertIndexed("findAllByString 기간", () -> orderRepository.findAllByString(byDate));
+
+        OrderSearch byPrice = new OrderSearch();
+        byPrice.setMinTotalPrice(95_000);
+        byPrice.setSort(OrderSort.TOTAL_PRICE);
+        assertIndexed("findOrderDtos 금액순", () -> orderRepository.findOrderDtos(byPrice));
+
+        assertIndexed("findAll FULL", () -> orderRepository.findAll(byName, OrderFetchPlan.FULL, 0, 20));
+        assertIndexed("findAll WITH_MEMBER", () -> orderRepository.findAll(byDate, OrderFetchPlan.WITH_MEMBER, 0, 20));
+    }
+
+    @Test
+    public void 주문_단건_일괄처리_인덱스() throws Exception {
+        List<Long> ids = orderIds.subList(100, 150);
+        assertIndexed("findOne", () -> orderRepository.findOne(ids.get(0)));
+        assertIndexed("findOneForUpdate", () -> orderRepository.findOneForUpdate(ids.get(0)));
+        assertIndexed("lockOrderedIds", () -> orderRepository.lockOrderedIds(ids));
+        assertIndexed("findCancelLines", () -> orderRepository.findCancelLines(ids));
+    }
+
+    @Test
+    public void 회원_주문내역_인덱스() throws Exception {
+        Long memberId = memberIds.get(3);
+        assertIndexed("findMemberOrders 첫 페이지", () -> orderQueryRepository.findMemberOrders(memberId, null, null, 5));
+        assertIndexed("findMemberOrders 다음 페이지",
+                () -> orderQueryRepository.findMemberOrders(memberId, BASE_DATE.plusDays(300), Long.MAX_VALUE, 5));
+        assertIndexed("countMemberOrders", () -> orderQueryRepository.countMemberOrders(memberId));
+    }
+
+    @Test
+    public void 회원_상품_인덱스() throws Exception {
+        assertIndexed("MemberRepository.findByName", () -> memberRepository.findByName(memberName(42)));
+        assertIndexed("MemberRepositoryOld.findByName", () -> memberRepositoryOld.findByName(memberName(42)));
+        assertIndexed("MemberRepositoryOld.findOne", () -> memberRepositoryOld.findOne(memberIds.get(0)));
+        assertIndexed("ItemRepository.findOne", () -> itemRepository.findOne(itemIds.get(0)));
+        assertIndexed("ItemRepository.findAllForUpdate", () -> itemRepository.findAllForUpdate(itemIds.subList(0, 10)));
+    }
+
+    /**
+     * 트랜잭션 안에서 query 를 실행하고, 그동안 나간 select 문을 모두 EXPLAIN 한다.
+     * 영속성 컨텍스트에 남은 엔티티 때문에 쿼리가 생략되지 않도록 매번 새 트랜잭션에서 실행한다.
+     */
+    private void assertIndexed(String name, Runnable query) throws SQLException {
+        statementCapture.start();
+        try {
+            transactionTemplate.execute(status -> {
+                query.run();
+                return null;
+            });
+        } finally {
+            statementCapture.stop();
+        }
+
+        List<CapturedStatement> statements = statementCapture.drain();
+        assertFalse(name + ": 실행된 select 가 없음", statements.isEmpty());
+        for (CapturedStatement statement : statements) {
+            String plan = explain(statement);
+            assertFalse(name + " 가 테이블 풀 스캔을 함\n" + statement.sql + "\n" + plan, plan.contains(TABLE_SCAN));
+        }
+    }
+
+    /**
+     * 바인딩 값을 그대로 다시 바인딩해서 EXPLAIN 한다. 실행 계획은 잠금과 무관하므로 for update 는 뗀다.
+     */
+    private String explain(CapturedStatement statement) throws SQLException {
+        String sql = statement.sql.replaceAll("(?i)\\s+for update\\s*$", "");
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : statement.parameters.entrySet()) {
+                explain.setObject(parameter.getKey(), parameter.getValue());
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = explain.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        }
+    }
+
+    private void seed() {
+        memberIds = new ArrayList<>();
+        itemIds = new ArrayList<>();
+        orderIds = new ArrayList<>();
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            Member member = new Member();
+            member.setName(memberName(i));
+            member.setAddress(new Address("서울", "거리" + i, String.valueOf(10000 + i)));
+            em.persist(member);
+            members.add(member);
+        }
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Book book = new Book();
+            book.setName("색인책-" + i);
+            book.setPrice(1000 * (i + 1));
+            book.setStockQuantity(Integer.MAX_VALUE / 2);
+            em.persist(book);
+            books.add(book);
+        }
+
+        Random random = new Random(43);
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            Member member = members.get(random.nextInt(MEMBERS));
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            delivery.setStatus(DeliveryStatus.READY);
+
+            Book book = books.get(random.nextInt(ITEMS));
+            Order order = Order.createOrder(member, delivery,
+                    OrderItem.createOrderItem(book, book.getPrice(), 1 + random.nextInt(3)));
+            order.setOrderDate(BASE_DATE.plusDays(i % 500).plusMinutes(i));
+            if (random.nextInt(10) == 0) {
+                order.setStatus(OrderStatus.CANCEL);
+            }
+            em.persist(order);
+            orders.add(order);
+        }
+        em.flush();
+
+        members.forEach(m -> memberIds.add(m.getId()));
+        books.forEach(b -> itemIds.add(b.getId()));
+        orders.forEach(o -> orderIds.add(o.getId()));
+        em.clear();
+    }
+
+    private static String memberName(int i) {
+        return "색인회원-" + i;
+    }
+
+    private static class CapturedStatement {
+        final String sql;
+        final Map<Integer, Object> parameters;
+
+        CapturedStatement(String sql, Map<Integer, Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * 켜져 있는 동안 start() 를 부른 스레드에서 실행된 select 문과 바인딩 값을 모은다.
+     * 같은 컨텍스트의 스케줄 작업(배송 상태 작업, 주문 라인 스냅샷 등) 이 실행하는 쿼리는 모으지 않는다.
+     * p6spy-spring-boot-starter 가 JdbcEventListener 빈을 데이터소스에 등록해준다.
+     */
+    static class StatementCapture extends SimpleJdbcEventListener {
+        private volatile Thread recordingThread;
+        private final List<CapturedStatement> statements = Collections.synchronizedList(new ArrayList<>());
+
+        void start() {
+            statements.clear();
+            recordingThread = Thread.currentThread();
+        }
+
+        void stop() {
+            recordingThread = null;
+        }
+
+        List<CapturedStatement> drain() {
+            synchronized (statements) {
+                List<CapturedStatement> result = new ArrayList<>(statements);
+                statements.clear();
+                return result;
+            }
+        }
+
+        @Override
+        public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+            String sql = statementInformation.getSql();
+            if (Thread.currentThread() != recordingThread || sql == null || !sql.trim().regionMatches(true, 0, "select", 0, 6)) {
+                return;
+            }
+            Map<Integer, Object> parameters = new TreeMap<>();
+            if (statementInformation instanceof PreparedStatementInformation) {
+                for (Map.Entry<Integer, Value> parameter : ((PreparedStatementInformation) statementInformation).getParameterValues().entrySet()) {
+                    // p6spy 는 0 부터, JDBC 는 1 부터 센다.
+                    parameters.put(parameter.getKey() + 1, parameter.getValue().getValue());
+                }
+            }
+            statements.add(new CapturedStatement(sql, parameters));
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureConfig {
+        @Bean
+        StatementCapture statementCapture() {
+            return new StatementCapture();
+        }
+    }
+}
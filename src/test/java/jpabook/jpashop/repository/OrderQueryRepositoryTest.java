@@ -0,0 +1,54 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.exception.UnknownFieldException;
+import jpabook.jpashop.repository.order.query.OrderField;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderQueryRepositoryTest {
+
+    @Autowired OrderQueryRepository orderQueryRepository;
+
+    @Test
+    public void sparse_fieldset_요청한_필드만_조회() throws Exception {
+        // when
+        List<Map<String, Object>> orders =
+                orderQueryRepository.findAllByDto_fields(OrderField.parse("orderStatus,orderDate"));
+
+        // then: InitDB 의 주문 2건
+        assertFalse(orders.isEmpty());
+        Map<String, Object> order = orders.get(0);
+        assertEquals("orderId 는 항상 포함", 3, order.size());
+        assertTrue(order.containsKey("orderId"));
+        assertTrue(order.containsKey("orderStatus"));
+        assertFalse(order.containsKey("orderItems"));
+    }
+
+    @Test
+    public void sparse_fieldset_orderItems() throws Exception {
+        List<Map<String, Object>> orders =
+                orderQueryRepository.findAllByDto_fields(OrderField.parse("name,orderItems"));
+
+        Map<String, Object> order = orders.get(0);
+        assertNotNull(order.get("name"));
+        assertFalse(((List<?>) order.get("orderItems")).isEmpty());
+    }
+
+    @Test(expected = UnknownFieldException.class)
+    public void sparse_fieldset_알수없는_필드() throws Exception {
+        OrderField.parse("orderId,password");
+    }
+}
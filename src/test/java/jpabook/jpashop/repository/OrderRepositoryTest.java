@@ -0,0 +1,124 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+
+    @Test
+    public void fetchPlan_컬렉션_페이징() throws Exception {
+        // given
+        Member member = createMember("그래프회원");
+        Book book = createBook("그래프책");
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId3 = orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("그래프회원");
+
+        // when
+        List<Order> orders = orderRepository.findAll(orderSearch, OrderFetchPlan.FULL, 1, 2);
+
+        // then
+        assertEquals(2, orders.size());
+        assertEquals("주문 일시 역순으로 두 번째부터", orderId2, orders.get(0).getId());
+        assertEquals(orderId1, orders.get(1).getId());
+
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertTrue(util.isLoaded(orders.get(0), "member"));
+        assertTrue(util.isLoaded(orders.get(0), "orderItems"));
+        assertTrue(util.isLoaded(orders.get(0).getOrderItems().get(0), "item"));
+    }
+
+    @Test
+    public void fetchPlan_summary() throws Exception {
+        // given
+        Member member = createMember("요약회원");
+        Book book = createBook("요약책");
+        orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("요약회원");
+
+        // when
+        List<Order> orders = orderRepository.findAll(orderSearch, OrderFetchPlan.SUMMARY, 0, 10);
+
+        // then
+        PersistenceUnitUtil util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertEquals(1, orders.size());
+        assertFalse(util.isLoaded(orders.get(0), "orderItems"));
+    }
+
+    @Test
+    public void 주문금액_범위검색_금액순정렬() throws Exception {
+        // given: 10000원짜리 책을 1, 3, 5권 주문
+        Member member = createMember("금액회원");
+        Book book = createBook("금액책");
+        Long small = orderService.order(member.getId(), book.getId(), 1);
+        Long medium = orderService.order(member.getId(), book.getId(), 3);
+        Long large = orderService.order(member.getId(), book.getId(), 5);
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("금액회원");
+        orderSearch.setMinTotalPrice(30000);
+        orderSearch.setSort(OrderSort.TOTAL_PRICE);
+
+        // when
+        List<OrderSimpleQueryDto> orders = orderRepository.findOrderDtos(orderSearch);
+
+        // then
+        assertEquals(2, orders.size());
+        assertEquals("금액 큰 순서", large, orders.get(0).getOrderId());
+        assertEquals(50000, orders.get(0).getTotalPrice());
+        assertEquals(5, orders.get(0).getItemCount());
+        assertEquals(medium, orders.get(1).getOrderId());
+        assertEquals(30000, orderRepository.findOne(medium).getTotalPrice());
+        assertNotEquals(small, orders.get(1).getOrderId());
+    }
+
+    private Book createBook(String name) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
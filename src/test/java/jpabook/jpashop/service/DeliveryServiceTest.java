@@ -0,0 +1,121 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.DeliverySearch;
+import jpabook.jpashop.repository.OrderRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class DeliveryServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired DeliveryService deliveryService;
+
+    @Test
+    public void 배송상태_일괄변경() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook("배송책", 10000, 10);
+        Order order1 = orderRepository.findOne(orderService.order(member.getId(), book.getId(), 1));
+        Order order2 = orderRepository.findOne(orderService.order(member.getId(), book.getId(), 1));
+        Order canceled = orderRepository.findOne(orderService.order(member.getId(), book.getId(), 1));
+        orderService.cancelOrder(canceled.getId());
+        em.flush();
+
+        // when
+        int updated = deliveryService.updateStatus(Arrays.asList(
+                order1.getDelivery().getId(), order2.getDelivery().getId(), canceled.getDelivery().getId()),
+                DeliveryStatus.COMP);
+        em.clear();
+
+        // then
+        assertEquals("취소된 주문의 배송은 변경하지 않는다", 2, updated);
+        assertEquals(DeliveryStatus.COMP, orderRepository.findOne(order1.getId()).getDelivery().getStatus());
+        assertEquals(DeliveryStatus.READY, orderRepository.findOne(canceled.getId()).getDelivery().getStatus());
+    }
+
+    @Test
+    public void 배송상태_변경작업_청크처리() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook("배송책", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        LocalDateTime manifestDate = LocalDateTime.of(2000, 1, 1, 0, 0);
+        orderRepository.findOne(orderId).setOrderDate(manifestDate.plusHours(1));
+        em.flush();
+
+        DeliverySearch search = new DeliverySearch();
+        search.setTargetStatus(DeliveryStatus.COMP);
+        search.setOrderDateFrom(manifestDate);
+        search.setOrderDateTo(manifestDate.plusDays(1));
+        Long jobId = deliveryService.submitJob(search);
+
+        // when
+        while (deliveryService.runChunk(jobId)) {
+        }
+        em.clear();
+
+        // then
+        DeliveryStatusJob job = deliveryService.findJob(jobId);
+        assertEquals(DeliveryJobStatus.COMPLETED, job.getStatus());
+        assertEquals(1, job.getProcessedCount());
+        assertEquals(DeliveryStatus.COMP, orderRepository.findOne(orderId).getDelivery().getStatus());
+    }
+
+    @Test
+    public void 긴_실패_메시지는_잘라서_기록() throws Exception {
+        // given
+        DeliverySearch search = new DeliverySearch();
+        search.setTargetStatus(DeliveryStatus.COMP);
+        search.setOrderDateFrom(LocalDateTime.of(2000, 1, 1, 0, 0));
+        search.setOrderDateTo(LocalDateTime.of(2000, 1, 2, 0, 0));
+        Long jobId = deliveryService.submitJob(search);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            message.append("constraint violation; ");
+        }
+
+        // when
+        deliveryService.failJob(jobId, message.toString());
+        em.flush();
+        em.clear();
+
+        // then
+        DeliveryStatusJob job = deliveryService.findJob(jobId);
+        assertEquals(DeliveryJobStatus.FAILED, job.getStatus());
+        assertEquals(message.substring(0, 1000), job.getFailureMessage());
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("배송회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,105 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.InvalidCursorException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class MemberOrderHistoryServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired MemberOrderHistoryService memberOrderHistoryService;
+
+    @Test
+    public void 회원_주문내역_keyset_페이징() throws Exception {
+        // given
+        Member member = new Member();
+        member.setName("내주문회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        Book book = new Book();
+        book.setName("내주문책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId3 = orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+
+        // when
+        MemberOrderHistoryService.MemberOrderPage page1 =
+                memberOrderHistoryService.findOrders(member.getId(), null, null, 2);
+        MemberOrderHistoryService.MemberOrderPage page2 =
+                memberOrderHistoryService.findOrders(member.getId(), page1.getNextCursorDate(), page1.getNextCursorId(), 2);
+
+        // then
+        assertEquals(3, page1.getTotalCount());
+        assertEquals(2, page1.getOrders().size());
+        assertEquals(orderId3, page1.getOrders().get(0).getOrderId());
+        assertEquals(1, page1.getOrders().get(0).getOrderItems().size());
+
+        assertEquals(1, page2.getOrders().size());
+        assertEquals(orderId1, page2.getOrders().get(0).getOrderId());
+        assertNull("마지막 페이지는 다음 커서가 없다", page2.getNextCursorId());
+    }
+
+    @Test
+    public void 페이지_크기_범위_보정() throws Exception {
+        // given
+        Member member = new Member();
+        member.setName("페이지회원");
+        em.persist(member);
+        Book book = new Book();
+        book.setName("페이지책");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        orderService.order(member.getId(), book.getId(), 1);
+        orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+
+        // when
+        MemberOrderHistoryService.MemberOrderPage zero = memberOrderHistoryService.findOrders(member.getId(), null, null, 0);
+        MemberOrderHistoryService.MemberOrderPage negative = memberOrderHistoryService.findOrders(member.getId(), null, null, -5);
+
+        // then
+        assertEquals("1건으로 맞춘다", 1, zero.getOrders().size());
+        assertNotNull(zero.getNextCursorId());
+        assertEquals(1, negative.getOrders().size());
+    }
+
+    @Test(expected = InvalidCursorException.class)
+    public void 커서_하나만_넘기면_잘못된_요청() throws Exception {
+        // when
+        memberOrderHistoryService.findOrders(1L, LocalDateTime.now(), null, 20);
+
+        // then
+        fail("예외가 발생해야 한다.");
+    }
+
+    @Test(expected = InvalidCursorException.class)
+    public void 커서_id_만_넘기면_잘못된_요청() throws Exception {
+        // when
+        memberOrderHistoryService.findOrders(1L, null, 10L, 20);
+
+        // then
+        fail("예외가 발생해야 한다.");
+    }
+}
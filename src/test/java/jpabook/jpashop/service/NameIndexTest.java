@@ -0,0 +1,75 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.NameMatch;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class NameIndexTest {
+
+    @Test
+    public void 접두사_검색() throws Exception {
+        // given
+        NameIndex index = new NameIndex();
+        index.put(1L, "JPA BOOK 2");
+        index.put(2L, "JPA BOOK 1");
+        index.put(3L, "Spring BOOK");
+        index.put(4L, "jpa");
+
+        // when
+        List<Long> ids = ids(index.search(" jpa ", 10));
+
+        // then: 대소문자, 앞뒤 공백 무시, 짧은 이름 먼저
+        assertEquals(Arrays.asList(4L, 2L, 1L), ids);
+        assertEquals(Arrays.asList(4L, 2L), ids(index.search("JPA", 2)));
+        assertTrue(index.search("book", 10).isEmpty());
+    }
+
+    @Test
+    public void 이름_변경과_동명이인() throws Exception {
+        // given
+        NameIndex index = new NameIndex();
+        index.put(1L, "김철수");
+        index.put(2L, "김철수");
+
+        // when
+        index.put(1L, "박영희");
+
+        // then
+        assertEquals(Arrays.asList(2L), ids(index.search("김", 10)));
+        assertEquals(Arrays.asList(1L), ids(index.search("박영", 10)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void 적재는_최신_값을_덮어쓰지_않음() throws Exception {
+        // given
+        NameIndex index = new NameIndex();
+        index.put(1L, "새이름");
+
+        // when
+        index.putIfAbsent(1L, "옛이름");
+
+        // then
+        assertTrue(index.search("옛", 10).isEmpty());
+        assertEquals("새이름", index.search("새", 10).get(0).getName());
+    }
+
+    @Test
+    public void 전각_문자_정규화() throws Exception {
+        // given
+        NameIndex index = new NameIndex();
+        index.put(1L, "ＪＰＡ　입문");
+
+        // then
+        assertEquals(Arrays.asList(1L), ids(index.search("jpa 입", 10)));
+    }
+
+    private static List<Long> ids(List<NameMatch> matches) {
+        return matches.stream().map(NameMatch::getId).collect(Collectors.toList());
+    }
+}
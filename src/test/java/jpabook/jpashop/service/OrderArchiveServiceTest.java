@@ -0,0 +1,112 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSimpleQueryDto;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderArchiveServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderArchiveService orderArchiveService;
+
+    @Test
+    public void 오래된_주문_아카이브() throws Exception {
+        // given
+        Member member = createMember("아카이브회원");
+        Book book = createBook("아카이브책", 10000, 10);
+        Long oldOrderId = orderService.order(member.getId(), book.getId(), 1);
+        Long newOrderId = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(oldOrderId);
+        orderRepository.findOne(oldOrderId).setOrderDate(LocalDateTime.now().minusYears(3));
+        em.flush();
+
+        // when
+        int moved = orderArchiveService.archiveChunk();
+
+        // then
+        assertEquals("보관 기간이 지난 주문만 옮겨져야 한다", 1, moved);
+        assertNull("운영 테이블에서는 삭제되어야 한다", orderRepository.findOne(oldOrderId));
+        assertNotNull(orderRepository.findOne(newOrderId));
+
+        OrderSearch all = new OrderSearch();
+        all.setMemberName("아카이브회원");
+        List<OrderSimpleQueryDto> result = orderArchiveService.findOrderDtos(all);
+        assertEquals("범위가 없으면 아카이브까지 조회해야 한다", 2, result.size());
+        assertEquals("주문 일시 역순이어야 한다", newOrderId, result.get(0).getOrderId());
+    }
+
+    @Test
+    public void 진행_중인_주문은_아카이브하지_않음() throws Exception {
+        // given: 오래되었지만 취소/배송 완료되지 않은 주문과, 배송 완료된 주문
+        Member member = createMember("진행회원");
+        Book book = createBook("진행책", 10000, 10);
+        Long activeOrderId = orderService.order(member.getId(), book.getId(), 1);
+        Long deliveredOrderId = orderService.order(member.getId(), book.getId(), 1);
+        orderRepository.findOne(activeOrderId).setOrderDate(LocalDateTime.now().minusYears(3));
+        Order delivered = orderRepository.findOne(deliveredOrderId);
+        delivered.setOrderDate(LocalDateTime.now().minusYears(3));
+        delivered.getDelivery().setStatus(DeliveryStatus.COMP);
+        em.flush();
+
+        // when
+        int moved = orderArchiveService.archiveChunk();
+
+        // then
+        assertEquals(1, moved);
+        assertNull(orderRepository.findOne(deliveredOrderId));
+        assertNotNull("진행 중인 주문은 운영 테이블에 남아야 한다", orderRepository.findOne(activeOrderId));
+        orderService.cancelOrder(activeOrderId);
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(activeOrderId).getStatus());
+    }
+
+    @Test
+    public void 최근_범위는_아카이브를_조회하지_않음() throws Exception {
+        OrderSearch recent = new OrderSearch();
+        recent.setOrderDateFrom(LocalDateTime.now().minusDays(1));
+        assertFalse(orderArchiveService.requiresArchive(recent));
+
+        OrderSearch old = new OrderSearch();
+        old.setOrderDateFrom(LocalDateTime.now().minusYears(5));
+        assertTrue(orderArchiveService.requiresArchive(old));
+    }
+
+    private Book createBook(String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
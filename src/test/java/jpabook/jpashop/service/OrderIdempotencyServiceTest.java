@@ -0,0 +1,88 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.IdempotencyKeyConflictException;
+import jpabook.jpashop.exception.InvalidIdempotencyKeyException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderIdempotencyServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderIdempotencyService orderIdempotencyService;
+
+    @Test
+    public void 같은_키로_재전송하면_같은_주문() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+
+        // when
+        Long first = orderIdempotencyService.order(key, member.getId(), book.getId(), 2);
+        Long replay = orderIdempotencyService.order(key, member.getId(), book.getId(), 2);
+
+        // then
+        assertEquals(first, replay);
+        assertEquals("재고는 한 번만 줄어야 한다.", 8, book.getStockQuantity());
+    }
+
+    @Test(expected = IdempotencyKeyConflictException.class)
+    public void 같은_키로_다른_주문() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+        String key = UUID.randomUUID().toString();
+        orderIdempotencyService.order(key, member.getId(), book.getId(), 2);
+
+        // when
+        orderIdempotencyService.order(key, member.getId(), book.getId(), 3);
+
+        // then
+        fail("같은 키로 다른 내용의 주문을 하면 예외가 발생해야 한다.");
+    }
+
+    @Test(expected = InvalidIdempotencyKeyException.class)
+    public void 빈_키는_잘못된_요청() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+
+        // when
+        orderIdempotencyService.order("", member.getId(), book.getId(), 1);
+
+        // then
+        fail("예외가 발생해야 한다.");
+    }
+
+    private Book createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("멱등책");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+}
@@ -0,0 +1,251 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderEventType;
+import jpabook.jpashop.domain.OrderOutboxEvent;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.job.OrderOutboxRelayJob;
+import jpabook.jpashop.repository.OrderOutboxRepository;
+import jpabook.jpashop.shard.Shards;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderOutboxTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderOutboxRepository orderOutboxRepository;
+    @Autowired OrderOutboxRelayJob orderOutboxRelayJob;
+    @Autowired OrderOutboxService orderOutboxService;
+    @Autowired Shards shards;
+    @Autowired RecordingSubscriber subscriber;
+
+    @Before
+    public void setUp() {
+        subscriber.reset();
+    }
+
+    @Test
+    public void 주문_취소_이벤트_저장() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+
+        // when
+        Long orderId = orderService.order(member.getId(), book.getId(), 3);
+        orderService.cancelOrder(orderId);
+
+        // then
+        List<OrderOutboxEvent> events = orderOutboxRepository.findByOrderId(orderId);
+        assertEquals(Arrays.asList(OrderEventType.ORDERED, OrderEventType.CANCELLED),
+                events.stream().map(OrderOutboxEvent::getType).collect(Collectors.toList()));
+        assertEquals(member.getId(), events.get(0).getMemberId());
+        assertEquals(3000, events.get(0).getTotalPrice());
+        assertEquals(3, events.get(1).getItemCount());
+    }
+
+    @Test
+    public void 일괄취소_이벤트_저장() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 2);
+
+        // when
+        orderService.cancelOrders(Arrays.asList(orderId1, orderId2));
+
+        // then
+        assertEquals(OrderEventType.CANCELLED, orderOutboxRepository.findByOrderId(orderId1).get(1).getType());
+        assertEquals(2000, orderOutboxRepository.findByOrderId(orderId2).get(1).getTotalPrice());
+    }
+
+    @Test
+    public void relay_전달후_삭제() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(orderId);
+
+        // when
+        orderOutboxRelayJob.relay();
+
+        // then
+        assertEquals(Arrays.asList(OrderEventType.ORDERED, OrderEventType.CANCELLED), subscriber.typesOf(orderId));
+        assertTrue(orderOutboxRepository.findByOrderId(orderId).isEmpty());
+    }
+
+    @Test
+    public void 구독자_실패시_같은_주문은_순서대로_재전달() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+        Long failingOrderId = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(failingOrderId);
+        Long otherOrderId = orderService.order(member.getId(), book.getId(), 1);
+        subscriber.failOnce(failingOrderId);
+
+        // when
+        orderOutboxRelayJob.relay();
+
+        // then: 실패한 주문의 이벤트는 취소 이벤트까지 남고, 다른 주문은 전달된다.
+        assertTrue(subscriber.typesOf(failingOrderId).isEmpty());
+        assertEquals(Collections.singletonList(OrderEventType.ORDERED), subscriber.typesOf(otherOrderId));
+        List<OrderOutboxEvent> remaining = orderOutboxRepository.findByOrderId(failingOrderId);
+        assertEquals(2, remaining.size());
+        em.refresh(remaining.get(0));
+        assertEquals(1, remaining.get(0).getAttempts());
+
+        // when: 다음 주기
+        orderOutboxRelayJob.relay();
+
+        // then
+        assertEquals(Arrays.asList(OrderEventType.ORDERED, OrderEventType.CANCELLED), subscriber.typesOf(failingOrderId));
+        assertTrue(orderOutboxRepository.findByOrderId(failingOrderId).isEmpty());
+    }
+
+    @Test
+    public void 구독자가_없으면_전달하지_않고_남겨둠() throws Exception {
+        // given
+        Member member = createMember();
+        Book book = createBook(10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        OrderOutboxRelayJob noSubscribers = new OrderOutboxRelayJob(orderOutboxService, shards,
+                new StaticListableBeanFactory().getBeanProvider(OrderEventSubscriber.class),
+                new SimpleMeterRegistry(), 500, 10, true);
+
+        // when
+        int delivered = noSubscribers.relay();
+
+        // then
+        assertEquals(0, delivered);
+        assertEquals(1, orderOutboxRepository.findByOrderId(orderId).size());
+    }
+
+    @Test
+    public void 계속_실패하는_이벤트는_parked_로_남기고_다른_주문은_전달() throws Exception {
+        // given: 배치 크기 1, 두 번 실패하면 parked
+        Member member = createMember();
+        Book book = createBook(10);
+        Long failingOrderId = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(failingOrderId);
+        Long otherOrderId = orderService.order(member.getId(), book.getId(), 1);
+        subscriber.failAlways(failingOrderId);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("recording", subscriber);
+        OrderOutboxRelayJob relayJob = new OrderOutboxRelayJob(orderOutboxService, shards,
+                beanFactory.getBeanProvider(OrderEventSubscriber.class), new SimpleMeterRegistry(), 1, 2, true);
+
+        // when: 첫 주기, 실패한 이벤트 뒤의 다른 주문 이벤트까지 넘어간다.
+        relayJob.relay();
+
+        // then
+        assertEquals(Collections.singletonList(OrderEventType.ORDERED), subscriber.typesOf(otherOrderId));
+
+        // when: 두 번째 실패
+        relayJob.relay();
+
+        // then: 실패한 이벤트는 parked, 같은 주문의 뒤 이벤트는 남지만 더 조회되지 않는다.
+        List<OrderOutboxEvent> remaining = orderOutboxRepository.findByOrderId(failingOrderId);
+        assertEquals(2, remaining.size());
+        em.refresh(remaining.get(0));
+        em.refresh(remaining.get(1));
+        assertTrue(remaining.get(0).isParked());
+        assertEquals(2, remaining.get(0).getAttempts());
+        assertFalse(remaining.get(1).isParked());
+        assertTrue(orderOutboxService.findPending(0, 10).stream()
+                .noneMatch(event -> event.getOrderId().equals(failingOrderId)));
+        relayJob.relay();
+        assertTrue(subscriber.typesOf(failingOrderId).isEmpty());
+        em.refresh(remaining.get(0));
+        assertEquals("parked 이벤트는 다시 시도하지 않는다", 2, remaining.get(0).getAttempts());
+    }
+
+    private Book createBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("이벤트책");
+        book.setPrice(1000);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    private Member createMember() {
+        Member member = new Member();
+        member.setName("이벤트회원");
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        em.persist(member);
+        return member;
+    }
+
+    /**
+     * 받은 이벤트를 기록하는 구독자, failOnce 로 지정한 주문의 첫 이벤트는 한 번 실패하고, failAlways 로 지정한 주문은 계속 실패한다.
+     */
+    static class RecordingSubscriber implements OrderEventSubscriber {
+        private final List<OrderEvent> received = new ArrayList<>();
+        private final Set<Long> failOnce = new HashSet<>();
+        private final Set<Long> failAlways = new HashSet<>();
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public synchronized void onEvent(OrderEvent event) {
+            if (failOnce.remove(event.getOrderId()) || failAlways.contains(event.getOrderId())) {
+                throw new IllegalStateException("구독자 장애");
+            }
+            received.add(event);
+        }
+
+        synchronized void failOnce(Long orderId) {
+            failOnce.add(orderId);
+        }
+
+        synchronized void failAlways(Long orderId) {
+            failAlways.add(orderId);
+        }
+
+        synchronized List<OrderEventType> typesOf(Long orderId) {
+            return received.stream()
+                    .filter(e -> e.getOrderId().equals(orderId))
+                    .map(OrderEvent::getType)
+                    .collect(Collectors.toList());
+        }
+
+        synchronized void reset() {
+            received.clear();
+            failOnce.clear();
+            failAlways.clear();
+        }
+    }
+
+    @TestConfiguration
+    static class SubscriberConfig {
+        @Bean
+        RecordingSubscriber recordingSubscriber() {
+            return new RecordingSubscriber();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
@@ -17,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -74,6 +76,38 @@ public class OrderServiceTest {
 
     }
 
+    @Test
+    public void 주문_일괄취소() throws Exception {
+        // given
+        Member member = createMember();
+        Book book1 = createBook("일괄취소책1", 10000, 10);
+        Book book2 = createBook("일괄취소책2", 20000, 10);
+        Long order1 = orderService.order(member.getId(), book1.getId(), 2);
+        Long order2 = orderService.order(member.getId(), book1.getId(), 3);
+        Long order3 = orderService.order(member.getId(), book2.getId(), 1);
+        Long alreadyCancelled = orderService.order(member.getId(), book2.getId(), 4);
+        orderService.cancelOrder(alreadyCancelled);
+        Long delivered = orderService.order(member.getId(), book2.getId(), 5);
+        orderRepository.findOne(delivered).getDelivery().setStatus(DeliveryStatus.COMP);
+
+        // when
+        OrderService.BulkCancelResult result = orderService.cancelOrders(
+                Arrays.asList(order1, order2, order3, alreadyCancelled, delivered, -1L));
+        em.clear(); // bulk UPDATE 결과를 다시 읽는다.
+
+        // then
+        assertEquals(6, result.getRequested());
+        assertEquals(3, result.getCancelled());
+        assertEquals(3, result.getSkipped());
+        assertEquals("상품별로 한 번씩 재고 UPDATE", 2, result.getRestockedItems());
+        assertEquals(6, result.getRestockedUnits());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(order1).getStatus());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(order3).getStatus());
+        assertEquals("배송 완료된 주문은 취소하지 않는다", OrderStatus.ORDER, orderRepository.findOne(delivered).getStatus());
+        assertEquals(10, em.find(Book.class, book1.getId()).getStockQuantity());
+        assertEquals("배송 완료된 5개만 빠져 있어야 한다", 5, em.find(Book.class, book2.getId()).getStockQuantity());
+    }
+
     @Test(expected = NotEnoughStockException.class)
     public void 상품주문_재고수량초과() throws Exception {
         // given
@@ -0,0 +1,94 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.SalesRollup;
+import jpabook.jpashop.domain.SalesRollupId;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.sales.DailySalesDto;
+import jpabook.jpashop.repository.sales.ItemSalesDto;
+import jpabook.jpashop.repository.sales.SalesDelta;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class SalesRollupServiceTest {
+
+    @Autowired EntityManager em;
+    @Autowired SalesRollupService salesRollupService;
+    @Autowired OrderService orderService;
+
+    @Test
+    public void 증감분_누적_반영() throws Exception {
+        // given
+        Book book1 = createBook("집계책1", 10000);
+        Book book2 = createBook("집계책2", 20000);
+        LocalDate day = LocalDate.of(2000, 1, 1);
+
+        // when: book1 3권 주문 후 1권 취소, book2 1권 주문
+        salesRollupService.apply(Collections.singletonMap(
+                new SalesRollupId(book1.getId(), day), new SalesDelta(3, 30000, 0)));
+        salesRollupService.apply(Collections.singletonMap(
+                new SalesRollupId(book1.getId(), day), new SalesDelta(-1, -10000, 1)));
+        salesRollupService.apply(Collections.singletonMap(
+                new SalesRollupId(book2.getId(), day.plusDays(1)), new SalesDelta(1, 20000, 0)));
+
+        // then
+        List<DailySalesDto> daily = salesRollupService.findDailySales(day, day.plusDays(1));
+        assertEquals(2, daily.size());
+        assertEquals(2, daily.get(0).getUnits());
+        assertEquals(20000, daily.get(0).getRevenue());
+        assertEquals(1, daily.get(0).getCancelledUnits());
+
+        List<ItemSalesDto> topSellers = salesRollupService.findTopSellers(day, day.plusDays(1), 1);
+        assertEquals(1, topSellers.size());
+        assertEquals("판매 수량이 가장 많은 상품이 먼저 나와야 한다", book1.getId(), topSellers.get(0).getItemId());
+    }
+
+    @Test
+    public void 주문상품에서_집계_다시_만들기() throws Exception {
+        // given: 2권 주문, 1권 주문 후 취소, 집계는 틀어져 있음
+        Book book = createBook("재집계책", 10000);
+        Member member = new Member();
+        member.setName("재집계회원");
+        em.persist(member);
+        orderService.order(member.getId(), book.getId(), 2);
+        Long cancelled = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(cancelled);
+        LocalDate today = LocalDate.now();
+        salesRollupService.apply(Collections.singletonMap(
+                new SalesRollupId(book.getId(), today), new SalesDelta(100, 1, 0)));
+        em.flush();
+
+        // when
+        salesRollupService.rebuild(today, today);
+        em.clear();
+
+        // then
+        SalesRollup rollup = em.find(SalesRollup.class, new SalesRollupId(book.getId(), today));
+        assertEquals(2, rollup.getUnits());
+        assertEquals(20000, rollup.getRevenue());
+        assertEquals(1, rollup.getCancelledUnits());
+    }
+
+    private Book createBook(String name, int price) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(100);
+        em.persist(book);
+        return book;
+    }
+}
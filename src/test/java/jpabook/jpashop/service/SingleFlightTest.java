@@ -0,0 +1,137 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    private static final long MILLIS = 1_000_000L;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void 동시_조회는_한번만_실행() throws Exception {
+        // given
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", Duration.ZERO, meterRegistry, now::get);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when: 첫 호출이 조회 중일 때 7개가 더 들어옴
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.get(1L, () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "상품1";
+        })));
+        started.await();
+        for (int i = 0; i < 7; i++) {
+            results.add(executor.submit(() -> flight.get(1L, () -> {
+                executions.incrementAndGet();
+                return "다시 조회";
+            })));
+        }
+        while (coalesced("test") < 7) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        // then
+        for (Future<String> result : results) {
+            assertEquals("상품1", result.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(1, (long) meterRegistry.get("jpashop.singleflight.calls").tag("result", "executed").counter().count());
+    }
+
+    @Test
+    public void staleness_동안_결과_재사용() throws Exception {
+        // given
+        SingleFlight<Long, Integer> flight = new SingleFlight<>("test", Duration.ofMillis(100), meterRegistry, now::get);
+        AtomicInteger executions = new AtomicInteger();
+
+        // when
+        int first = flight.get(1L, executions::incrementAndGet);
+        now.addAndGet(100 * MILLIS);
+        int withinStaleness = flight.get(1L, executions::incrementAndGet);
+        now.addAndGet(1 * MILLIS);
+        int afterStaleness = flight.get(1L, executions::incrementAndGet);
+        flight.invalidate(1L);
+        int afterInvalidate = flight.get(1L, executions::incrementAndGet);
+
+        // then
+        assertEquals(1, first);
+        assertEquals(1, withinStaleness);
+        assertEquals(2, afterStaleness);
+        assertEquals(3, afterInvalidate);
+        assertEquals(1, coalesced("test"));
+    }
+
+    @Test
+    public void 실패한_조회는_남기지_않음() throws Exception {
+        // given
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", Duration.ofMillis(100), meterRegistry, now::get);
+
+        // when
+        try {
+            flight.get(1L, () -> {
+                throw new IllegalStateException("조회 실패");
+            });
+            fail("예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // then
+        assertEquals("상품1", flight.get(1L, () -> "상품1"));
+    }
+
+    @Test
+    public void staleness_가_지나면_맵에서_지움() throws Exception {
+        // given
+        SingleFlight<Long, Long> flight = new SingleFlight<>("test", Duration.ofMillis(100), meterRegistry, now::get);
+        for (long id = 1; id <= 100; id++) {
+            long itemId = id;
+            flight.get(itemId, () -> itemId);
+        }
+        assertEquals(100, flight.size());
+
+        // when: staleness 가 지난 뒤 다른 키를 조회
+        now.addAndGet(101 * MILLIS);
+        flight.get(200L, () -> 200L);
+
+        // then
+        assertEquals("최근에 조회한 키만 남는다", 1, flight.size());
+    }
+
+    private long coalesced(String name) {
+        return (long) meterRegistry.get("jpashop.singleflight.calls").tag("name", name).tag("result", "coalesced").counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 여러 스레드가 같은 상품을 동시에 주문/취소할 때 재고가 맞는지 확인
+ * 커밋된 결과를 봐야 하므로 테스트 트랜잭션을 쓰지 않고, 끝나면 컨텍스트(메모리 DB) 를 버린다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock-concurrency;LOCK_TIMEOUT=10000",
+        "spring.datasource.hikari.maximum-pool-size=16",
+        "logging.level.org.hibernate.SQL=warn",
+        "logging.level.org.hibernate.type=warn",
+        "jpashop.init-db.mode=none"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class StockConcurrencyTest {
+    private static final int THREADS = 64;
+    private static final int STOCK = 1000;
+
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired OrderService orderService;
+
+    private Long memberId;
+    private Long itemId;
+
+    @Before
+    public void setUp() {
+        transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("동시성회원");
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+
+            Book book = new Book();
+            book.setName("동시성책");
+            book.setPrice(1000);
+            book.setStockQuantity(STOCK);
+            em.persist(book);
+
+            memberId = member.getId();
+            itemId = book.getId();
+            return null;
+        });
+    }
+
+    @Test
+    public void 주문_취소_폭주() throws Exception {
+        // given
+        AtomicInteger orderedUnits = new AtomicInteger();
+        AtomicInteger cancelledUnits = new AtomicInteger();
+        AtomicInteger notEnoughStock = new AtomicInteger();
+
+        // when: 스레드마다 주문 40번, 그 중 일부는 바로 자기 주문을 취소한다. 재고보다 많이 주문하게 된다.
+        runConcurrently(thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<long[]> myOrders = new ArrayList<>(); // {orderId, count}
+            for (int i = 0; i < 40; i++) {
+                int count = 1 + random.nextInt(3);
+                try {
+                    Long orderId = orderService.order(memberId, itemId, count);
+                    orderedUnits.addAndGet(count);
+                    myOrders.add(new long[]{orderId, count});
+                } catch (NotEnoughStockException e) {
+                    notEnoughStock.incrementAndGet();
+                }
+                if (!myOrders.isEmpty() && random.nextInt(3) == 0) {
+                    long[] order = myOrders.remove(random.nextInt(myOrders.size()));
+                    orderService.cancelOrder(order[0]);
+                    cancelledUnits.addAndGet((int) order[1]);
+                }
+            }
+        });
+
+        // then
+        int stock = stockQuantity();
+        assertTrue("재고는 음수가 될 수 없다.", stock >= 0);
+        assertTrue("재고보다 많이 주문했으므로 재고 부족이 발생해야 한다.", notEnoughStock.get() > 0);
+        assertEquals("재고 = 초기 재고 - 주문 수량 + 취소 수량", STOCK - orderedUnits.get() + cancelledUnits.get(), stock);
+        assertEquals("주문 상태인 주문 수량의 합 = 줄어든 재고", STOCK - stock, activeOrderedUnits());
+    }
+
+    @Test
+    public void 같은_주문_동시_취소() throws Exception {
+        // given
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            orderIds.add(orderService.order(memberId, itemId, 2));
+        }
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        // when: 모든 스레드가 같은 주문 50개를 순서를 섞어서 취소한다.
+        runConcurrently(thread -> {
+            List<Long> shuffled = new ArrayList<>(orderIds);
+            Collections.shuffle(shuffled);
+            for (Long orderId : shuffled) {
+                try {
+                    orderService.cancelOrder(orderId);
+                    cancelled.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        // then
+        assertEquals("주문마다 한 번만 취소되어야 한다.", 50, cancelled.get());
+        assertEquals(50 * (THREADS - 1), rejected.get());
+        assertEquals("재고는 두 번 원복되면 안 된다.", STOCK, stockQuantity());
+    }
+
+    private void runConcurrently(IntConsumerWithException task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.accept(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int stockQuantity() {
+        return transactionTemplate.execute(status -> em.find(Book.class, itemId).getStockQuantity());
+    }
+
+    private long activeOrderedUnits() {
+        return transactionTemplate.execute(status -> em.createQuery(
+                "select coalesce(sum(oi.count), 0) from OrderItem oi join oi.order o" +
+                        " where oi.item.id = :itemId and o.status = :status", Long.class)
+                .setParameter("itemId", itemId)
+                .setParameter("status", OrderStatus.ORDER)
+                .getSingleResult());
+    }
+
+    private interface IntConsumerWithException {
+        void accept(int value) throws Exception;
+    }
+}
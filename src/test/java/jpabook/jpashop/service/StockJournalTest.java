@@ -0,0 +1,164 @@
+package jpabook.jpashop.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class StockJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void 세그먼트별로_합쳐서_읽기() throws Exception {
+        // given
+        Path directory = folder.getRoot().toPath();
+        StockJournal journal = new StockJournal(directory, 1);
+        journal.append(10L, -3);
+        journal.append(20L, -1);
+        journal.append(10L, 2);
+
+        // when
+        long closed = journal.rotate();
+        journal.append(10L, -5);
+        journal.close();
+
+        // then
+        assertEquals(1, closed);
+        assertEquals(Arrays.asList(1L, 2L), StockJournal.segments(directory));
+        Map<Long, Integer> first = StockJournal.read(directory, 1);
+        assertEquals(Integer.valueOf(-1), first.get(10L));
+        assertEquals(Integer.valueOf(-1), first.get(20L));
+        assertEquals(Integer.valueOf(-5), StockJournal.read(directory, 2).get(10L));
+    }
+
+    @Test
+    public void 잘린_레코드는_무시() throws Exception {
+        // given: 기록 도중 죽어서 마지막 레코드가 일부만 써진 경우
+        Path directory = folder.getRoot().toPath();
+        StockJournal journal = new StockJournal(directory, 7);
+        journal.append(10L, -3);
+        journal.close();
+        Files.write(directory.resolve("stock-7.journal"), new byte[]{0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        // when
+        Map<Long, Integer> deltas = StockJournal.read(directory, 7);
+
+        // then
+        assertEquals(1, deltas.size());
+        assertEquals(Integer.valueOf(-3), deltas.get(10L));
+    }
+
+    @Test
+    public void 반영된_세그먼트_삭제() throws Exception {
+        // given
+        Path directory = folder.getRoot().toPath();
+        StockJournal journal = new StockJournal(directory, 1);
+        journal.rotate();
+        journal.rotate();
+
+        // when
+        journal.deleteUpTo(2);
+        journal.close();
+
+        // then
+        assertEquals(Arrays.asList(3L), StockJournal.segments(directory));
+    }
+
+    @Test
+    public void 동시_기록과_rotate_에도_레코드가_빠지지_않음() throws Exception {
+        // given
+        Path directory = folder.getRoot().toPath();
+        StockJournal journal = new StockJournal(directory, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // when: 8 스레드가 상품별로 200건씩 기록, 중간에 세그먼트를 넘김
+        List<Future<?>> results = new ArrayList<>();
+        for (long itemId = 1; itemId <= 8; itemId++) {
+            long id = itemId;
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    journal.append(id, -1);
+                }
+            }));
+        }
+        long closed = journal.rotate();
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        journal.close();
+
+        // then: 빠진 레코드 없음
+        for (long itemId = 1; itemId <= 8; itemId++) {
+            int total = StockJournal.read(directory, closed).getOrDefault(itemId, 0)
+                    + StockJournal.read(directory, closed + 1).getOrDefault(itemId, 0);
+            assertEquals(-200, total);
+        }
+    }
+
+    @Test
+    public void fsync_중에_붙은_레코드는_다음_fsync_한_번에_반영() throws Exception {
+        // given: 첫 fsync 를 release 까지 막는 journal
+        Path directory = folder.getRoot().toPath();
+        CountDownLatch forcing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        StockJournal journal = new StockJournal(directory, 1) {
+            @Override
+            void forceChannel(FileChannel target) throws IOException {
+                if (first.compareAndSet(true, false)) {
+                    forcing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.forceChannel(target);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // when: 첫 레코드가 fsync 하는 동안 7 스레드가 레코드를 붙인다.
+        List<Future<?>> results = new ArrayList<>();
+        results.add(executor.submit(() -> journal.append(1L, -1)));
+        forcing.await();
+        for (long itemId = 2; itemId <= 8; itemId++) {
+            long id = itemId;
+            results.add(executor.submit(() -> journal.append(id, -1)));
+        }
+        Path segment = directory.resolve("stock-1.journal");
+        while (Files.size(segment) < 8L * StockJournal.RECORD_SIZE) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // then: 첫 fsync 한 번 + 기다리던 7건을 묶은 fsync 한 번
+        assertEquals(2, journal.forces());
+        journal.close();
+        assertEquals(8, StockJournal.read(directory, 1).size());
+    }
+}
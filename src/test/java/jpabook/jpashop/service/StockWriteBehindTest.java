@@ -0,0 +1,159 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * write-behind 재고, flush 와 journal 복구는 커밋된 데이터로 확인해야 하므로 테스트 트랜잭션을 쓰지 않는다.
+ * 주기적인 flush 는 사실상 끄고, 테스트에서 직접 flush 한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock-write-behind",
+        "jpashop.stock.write-behind.enabled=true",
+        "jpashop.stock.write-behind.flush-delay-ms=3600000",
+        "jpashop.init-db.mode=none"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class StockWriteBehindTest {
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws Exception {
+        Path directory = Files.createTempDirectory("stock-journal");
+        registry.add("jpashop.stock.write-behind.journal-dir", directory::toString);
+    }
+
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired OrderService orderService;
+    @Autowired ItemRepository itemRepository;
+    @Autowired StockCounters stockCounters;
+    @Autowired StockWriteBehindService stockWriteBehindService;
+
+    private Long memberId;
+    private Long itemId;
+
+    @Before
+    public void setUp() {
+        transactionTemplate.execute(status -> {
+            Member member = new Member();
+            member.setName("재고회원");
+            member.setAddress(new Address("서울", "강가", "123-123"));
+            em.persist(member);
+
+            Book book = new Book();
+            book.setName("재고책");
+            book.setPrice(1000);
+            book.setStockQuantity(10);
+            em.persist(book);
+
+            memberId = member.getId();
+            itemId = book.getId();
+            return null;
+        });
+    }
+
+    @Test
+    public void 주문은_카운터만_바꾸고_flush_에서_반영() throws Exception {
+        // when
+        Long orderId = orderService.order(memberId, itemId, 3);
+        orderService.order(memberId, itemId, 2);
+        orderService.cancelOrder(orderId);
+
+        // then
+        assertEquals(8, stockCounters.available(itemId));
+        assertEquals("flush 전에는 item 테이블이 그대로다.", 10, stockInTable());
+
+        stockCounters.flush();
+        assertEquals(8, stockInTable());
+        assertEquals(0, stockCounters.pendingCount());
+    }
+
+    @Test
+    public void 롤백되면_카운터_원복() throws Exception {
+        // when
+        transactionTemplate.execute(status -> {
+            orderService.order(memberId, itemId, 4);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        // then
+        assertEquals(10, stockCounters.available(itemId));
+        stockCounters.flush();
+        assertEquals(10, stockInTable());
+    }
+
+    @Test
+    public void 상품_수정이_flush_된_재고를_덮어쓰지_않음() throws Exception {
+        // given
+        orderService.order(memberId, itemId, 3);
+
+        // when: 상품을 읽은 뒤, 커밋 전에 다른 스레드의 flush 가 재고를 반영
+        transactionTemplate.execute(status -> {
+            Item item = itemRepository.findOne(itemId);
+            CompletableFuture.runAsync(stockCounters::flush).join();
+            item.setName("재고책-수정");
+            item.setPrice(2000);
+            return null;
+        });
+
+        // then
+        assertEquals(7, stockInTable());
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 재고_부족() throws Exception {
+        // when
+        orderService.order(memberId, itemId, 11);
+
+        // then
+        fail("재고보다 많이 주문하면 예외가 발생해야 한다.");
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    public void 기동시_journal_재반영() throws Exception {
+        // given: flush 되지 않고 남은 세그먼트
+        Path directory = Files.createTempDirectory("stock-journal-replay");
+        StockJournal journal = new StockJournal(directory, 5);
+        journal.append(itemId, -4);
+        journal.append(itemId, 1);
+        journal.close();
+
+        // when
+        StockCounters restarted = new StockCounters(stockWriteBehindService, true, directory.toString());
+        restarted.afterSingletonsInstantiated();
+        restarted.close();
+
+        // then
+        assertEquals(7, stockInTable());
+        assertEquals(5, stockWriteBehindService.findLastSegment());
+        assertFalse(StockJournal.segments(directory).contains(5L));
+    }
+
+    private int stockInTable() {
+        return transactionTemplate.execute(status -> itemRepository.findStockQuantity(itemId));
+    }
+}
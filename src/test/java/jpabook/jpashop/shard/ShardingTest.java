@@ -0,0 +1,195 @@
+package jpabook.jpashop.shard;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderFetchPlan;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSort;
+import jpabook.jpashop.service.MemberOrderHistoryService;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * in-memory H2 세 개를 샤드로 쓴다.
+ * 샤드 트랜잭션과 scatter 조회는 커밋된 데이터를 보므로 테스트 트랜잭션을 쓰지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "jpashop.sharding.enabled=true",
+        "jpashop.sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "jpashop.sharding.shards[0].username=sa",
+        "jpashop.sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "jpashop.sharding.shards[1].username=sa",
+        "jpashop.sharding.shards[2].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "jpashop.sharding.shards[2].username=sa",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "jpashop.stock.write-behind.enabled=true",
+        "jpashop.stock.write-behind.flush-delay-ms=3600000",
+        "jpashop.init-db.mode=none"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class ShardingTest {
+    private static final int MEMBERS = 12;
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws Exception {
+        Path directory = Files.createTempDirectory("stock-journal");
+        registry.add("jpashop.stock.write-behind.journal-dir", directory::toString);
+    }
+
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired Shards shards;
+    @Autowired ShardDataSources shardDataSources;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired MemberOrderHistoryService memberOrderHistoryService;
+
+    private List<Long> memberIds;
+    private Long itemId;
+
+    @Before
+    public void setUp() {
+        memberIds = new ArrayList<>();
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < MEMBERS; i++) {
+                Member member = new Member();
+                member.setName("샤드회원" + i);
+                member.setAddress(new Address("서울", "강가", "123-123"));
+                em.persist(member);
+                memberIds.add(member.getId());
+            }
+
+            Book book = new Book();
+            book.setName("샤드책");
+            book.setPrice(1000);
+            book.setStockQuantity(1000);
+            em.persist(book);
+            itemId = book.getId();
+            return null;
+        });
+    }
+
+    @Test
+    public void 회원_상품은_모든_샤드에_복제() throws Exception {
+        // then
+        for (int shard = 0; shard < shards.count(); shard++) {
+            assertEquals(1, count(shard, "item", "item_id", itemId));
+            for (Long memberId : memberIds) {
+                assertEquals(1, count(shard, "member", "member_id", memberId));
+            }
+        }
+    }
+
+    @Test
+    public void 주문은_회원의_샤드에만_저장() throws Exception {
+        // when
+        Set<Integer> used = new HashSet<>();
+        for (Long memberId : memberIds) {
+            Long orderId = orderService.order(memberId, itemId, 1);
+
+            // then
+            int shard = shards.shardForMember(memberId);
+            used.add(shard);
+            assertEquals("주문 id 로 샤드를 알 수 있다.", shard, shards.shardForOrder(orderId));
+            for (int other = 0; other < shards.count(); other++) {
+                assertEquals(other == shard ? 1 : 0, count(other, "orders", "order_id", orderId));
+            }
+
+            Order order = orderService.findOne(orderId);
+            assertEquals(memberId, order.getMember().getId());
+            assertEquals("샤드책", order.getOrderItems().get(0).getItem().getName());
+        }
+        assertTrue("회원이 여러 샤드에 나뉜다.", used.size() > 1);
+    }
+
+    @Test
+    public void 회원_주문_내역은_회원의_샤드에서_조회() throws Exception {
+        // given
+        Long memberId = memberIds.get(0);
+        Long orderId = orderService.order(memberId, itemId, 2);
+
+        // when
+        MemberOrderHistoryService.MemberOrderPage page = memberOrderHistoryService.findOrders(memberId, null, null, 10);
+
+        // then
+        assertEquals(1, page.getTotalCount());
+        assertEquals(orderId, page.getOrders().get(0).getOrderId());
+    }
+
+    @Test
+    public void 목록_조회는_모든_샤드를_주문_일시_역순으로_합침() throws Exception {
+        // given
+        List<Long> orderIds = new ArrayList<>();
+        for (Long memberId : memberIds) {
+            orderIds.add(orderService.order(memberId, itemId, 1));
+        }
+
+        // when
+        List<Order> all = orderRepository.findAllWithMemberDelivery();
+        List<Order> page = orderRepository.findAllWithMemberDelivery(3, 5);
+        List<Order> searched = orderRepository.findAll(new OrderSearch(), OrderFetchPlan.WITH_MEMBER, 3, 5);
+
+        // then
+        assertTrue(all.stream().map(Order::getId).collect(Collectors.toSet()).containsAll(orderIds));
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(OrderSort.LATEST.getOrderComparator().compare(all.get(i - 1), all.get(i)) < 0);
+        }
+        List<Long> expected = ids(all.subList(3, 8));
+        assertEquals(expected, ids(page));
+        assertEquals(expected, ids(searched));
+        assertNotNull("샤드 트랜잭션 밖에서도 회원을 쓸 수 있다.", page.get(0).getMember().getName());
+    }
+
+    @Test
+    public void 정렬된_목록을_합쳐서_offset_limit() throws Exception {
+        // given
+        List<List<Integer>> parts = Arrays.asList(
+                Arrays.asList(9, 6, 3),
+                Arrays.asList(8, 5, 2),
+                new ArrayList<>(),
+                Arrays.asList(7, 4, 1));
+
+        // when
+        List<Integer> merged = Shards.merge(parts, Comparator.<Integer>reverseOrder(), 2, 4);
+
+        // then
+        assertEquals(Arrays.asList(7, 6, 5, 4), merged);
+        assertEquals(Arrays.asList(2, 1), Shards.merge(parts, Comparator.<Integer>reverseOrder(), 7, 10));
+    }
+
+    private int count(int shard, String table, String idColumn, Long id) {
+        return new JdbcTemplate(shardDataSources.getPools().get(shard))
+                .queryForObject("select count(*) from " + table + " where " + idColumn + " = ?", Integer.class, id);
+    }
+
+    private static List<Long> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+}
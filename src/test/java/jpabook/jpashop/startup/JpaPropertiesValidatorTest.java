@@ -0,0 +1,39 @@
+package jpabook.jpashop.startup;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+
+import static org.junit.Assert.*;
+
+public class JpaPropertiesValidatorTest {
+
+    @Test
+    public void 알려진_키는_통과() throws Exception {
+        // given
+        JpaProperties properties = new JpaProperties();
+        properties.getProperties().put("hibernate.format_sql", "true");
+        properties.getProperties().put("hibernate.default_batch_fetch_size", "100");
+        properties.getProperties().put("hibernate.generate_statistics", "true");
+
+        // when
+        new JpaPropertiesValidator(properties).validate();
+    }
+
+    @Test
+    public void 오타가_난_키는_기동_실패() throws Exception {
+        // given
+        JpaProperties properties = new JpaProperties();
+        properties.getProperties().put("hibernte.default_batch_fetch_size", "100");
+
+        // when
+        try {
+            new JpaPropertiesValidator(properties).validate();
+        } catch (IllegalStateException e) {
+            // then
+            assertTrue(e.getMessage().contains("hibernte.default_batch_fetch_size"));
+            assertTrue(e.getMessage().contains("did you mean spring.jpa.properties.hibernate.default_batch_fetch_size"));
+            return;
+        }
+        fail("알 수 없는 키가 있으면 예외가 발생해야 한다.");
+    }
+}